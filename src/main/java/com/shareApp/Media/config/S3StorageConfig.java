@@ -0,0 +1,78 @@
+package com.shareApp.Media.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client and transfer pool for the S3 storage backend. The endpoint can point at any
+ * S3-compatible service (MinIO, LocalStack, ...), which usually also needs path-style access.
+ */
+@Configuration
+@ConditionalOnProperty(name = "media.storage.backend", havingValue = "s3")
+@Slf4j
+public class S3StorageConfig {
+
+    @Bean(destroyMethod = "close")
+    public S3Client s3Client(
+            @Value("${media.storage.s3.region:us-east-1}") String region,
+            @Value("${media.storage.s3.endpoint:}") String endpoint,
+            @Value("${media.storage.s3.path-style:false}") boolean pathStyle,
+            @Value("${media.storage.s3.access-key:}") String accessKey,
+            @Value("${media.storage.s3.secret-key:}") String secretKey,
+            @Value("${media.storage.s3.max-connections:64}") int maxConnections,
+            @Value("${media.storage.s3.connection-timeout-ms:5000}") long connectionTimeoutMs,
+            @Value("${media.storage.s3.socket-timeout-ms:60000}") long socketTimeoutMs) {
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials(accessKey, secretKey))
+                .forcePathStyle(pathStyle)
+                .httpClientBuilder(ApacheHttpClient.builder()
+                        .maxConnections(maxConnections)
+                        .connectionTimeout(Duration.ofMillis(connectionTimeoutMs))
+                        .connectionAcquisitionTimeout(Duration.ofMillis(connectionTimeoutMs))
+                        .socketTimeout(Duration.ofMillis(socketTimeoutMs))
+                        .tcpKeepAlive(true));
+        if (StringUtils.hasText(endpoint)) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        log.info("S3 storage client configured: region {}, endpoint {}, {} connections",
+                region, StringUtils.hasText(endpoint) ? endpoint : "default", maxConnections);
+        return builder.build();
+    }
+
+    // Shared by all uploads and downloads; keep it no larger than the connection pool
+    @Bean(name = "s3TransferExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService s3TransferExecutor(@Value("${media.storage.s3.transfer-threads:32}") int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "S3Transfer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private AwsCredentialsProvider credentials(String accessKey, String secretKey) {
+        if (StringUtils.hasText(accessKey)) {
+            return StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+        }
+        return DefaultCredentialsProvider.create();
+    }
+}
@@ -0,0 +1,72 @@
+package com.shareApp.Media.controller;
+
+import com.shareApp.Media.dto.UploadSessionDTO;
+import com.shareApp.Media.dto.UploadSessionRequestDTO;
+import com.shareApp.Media.model.Media;
+import com.shareApp.Media.service.ChunkedUploadService;
+import com.shareApp.Utils.security.JWTService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/media/uploads")
+@RequiredArgsConstructor
+public class ChunkedUploadController {
+
+    private final ChunkedUploadService chunkedUploadService;
+    private final JWTService jwtService;
+
+    @PostMapping
+    public ResponseEntity<UploadSessionDTO> createSession(
+            @RequestHeader("Authorization") String authToken,
+            @Valid @RequestBody UploadSessionRequestDTO request
+    ) {
+        String userId = jwtService.validateTokenAndGetUserId(authToken);
+        return ResponseEntity.ok(chunkedUploadService.createSession(userId, request));
+    }
+
+    @PutMapping(value = "/{sessionId}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadSessionDTO> uploadChunk(
+            HttpServletRequest request,
+            @RequestHeader("Authorization") String authToken,
+            @PathVariable String sessionId,
+            @PathVariable int index
+    ) throws IOException {
+        String userId = jwtService.validateTokenAndGetUserId(authToken);
+        return ResponseEntity.ok(chunkedUploadService.writeChunk(userId, sessionId, index, request.getInputStream()));
+    }
+
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<UploadSessionDTO> getSession(
+            @RequestHeader("Authorization") String authToken,
+            @PathVariable String sessionId
+    ) {
+        String userId = jwtService.validateTokenAndGetUserId(authToken);
+        return ResponseEntity.ok(chunkedUploadService.getSession(userId, sessionId));
+    }
+
+    @PostMapping("/{sessionId}/complete")
+    public ResponseEntity<Media> completeSession(
+            @RequestHeader("Authorization") String authToken,
+            @PathVariable String sessionId
+    ) {
+        String userId = jwtService.validateTokenAndGetUserId(authToken);
+        return ResponseEntity.ok(chunkedUploadService.completeSession(userId, sessionId));
+    }
+
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<Void> abortSession(
+            @RequestHeader("Authorization") String authToken,
+            @PathVariable String sessionId
+    ) {
+        String userId = jwtService.validateTokenAndGetUserId(authToken);
+        chunkedUploadService.abortSession(userId, sessionId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,17 +1,41 @@
 package com.shareApp.Media.controller;
 
+import com.shareApp.Media.dto.MediaExportRequestDTO;
+import com.shareApp.Media.dto.MediaPageDTO;
+import com.shareApp.Media.dto.MediaStatsDTO;
 import com.shareApp.Media.model.Media;
+import com.shareApp.Media.model.MediaLibraryVersion;
+import com.shareApp.Media.service.MediaExportService;
 import com.shareApp.Media.service.MediaService;
+import com.shareApp.Media.service.MediaStatsService;
+import com.shareApp.Media.service.ThumbnailService;
+import com.shareApp.Media.web.RangeResponseWriter;
 import com.shareApp.Utils.security.JWTService;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/media")
@@ -20,6 +44,10 @@ public class MediaController {
 
     private final MediaService mediaService;
     private final JWTService jwtService;
+    private final RangeResponseWriter rangeResponseWriter;
+    private final ThumbnailService thumbnailService;
+    private final MediaExportService mediaExportService;
+    private final MediaStatsService mediaStatsService;
 
     @PostMapping("/upload")
     public ResponseEntity<Media> upload(
@@ -31,29 +59,179 @@ public class MediaController {
         return ResponseEntity.ok(media);
     }
 
+    @PostMapping("/upload/batch")
+    public ResponseEntity<List<Media>> uploadBatch(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestHeader("Authorization") String authToken
+    ) {
+        String userId = jwtService.validateTokenAndGetUserId(authToken);
+        return ResponseEntity.ok(mediaService.uploadBatch(userId, files));
+    }
+
+    /**
+     * Raw-body upload: the request stream is written straight into storage, so large files
+     * skip the multipart temp file. The file name may be percent-encoded for non-ASCII names.
+     */
+    @PutMapping(value = "/stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Media> uploadStream(
+            HttpServletRequest request,
+            @RequestHeader("Authorization") String authToken,
+            @RequestHeader("X-File-Name") String fileName,
+            @RequestHeader(value = "X-File-Type", required = false) String fileType
+    ) throws IOException {
+        String userId = jwtService.validateTokenAndGetUserId(authToken);
+        String decodedName = UriUtils.decode(fileName, StandardCharsets.UTF_8);
+        String contentType = fileType != null ? fileType : MediaTypeFactory.getMediaType(decodedName)
+                .map(MediaType::toString)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+
+        Media media = mediaService.upload(userId, decodedName, contentType, request.getInputStream(),
+                request.getContentLengthLong());
+        return ResponseEntity.ok(media);
+    }
+
     @GetMapping
     public ResponseEntity<Page<Media>> list(
-            HttpServletRequest request,
+            WebRequest webRequest,
             @RequestHeader("Authorization") String authToken,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size
     ) {
-        JWTService service = new JWTService();
         String userId = jwtService.validateTokenAndGetUserId(authToken);
-        return ResponseEntity.ok(mediaService.listUserMedia(userId, page, size));
+
+        if (libraryNotModified(webRequest, userId)) {
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(mediaService.listUserMedia(userId, page, size));
+    }
+
+    /**
+     * Cursor-based listing, newest first. Start with an empty {@code cursor} and pass back
+     * {@code nextCursor} until it is null; pages cost the same however deep they are.
+     */
+    @GetMapping(params = "cursor")
+    public ResponseEntity<MediaPageDTO> listByCursor(
+            WebRequest webRequest,
+            @RequestHeader("Authorization") String authToken,
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "50") int limit
+    ) {
+        String userId = jwtService.validateTokenAndGetUserId(authToken);
+
+        if (libraryNotModified(webRequest, userId)) {
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(mediaService.listUserMedia(userId, cursor, limit));
+    }
+
+    /**
+     * Counts and bytes by media type, file type, size bucket and upload month, from pre-aggregated counters.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<MediaStatsDTO> stats(
+            WebRequest webRequest,
+            @RequestHeader("Authorization") String authToken
+    ) {
+        String userId = jwtService.validateTokenAndGetUserId(authToken);
+        if (libraryNotModified(webRequest, userId)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(mediaStatsService.getStats(userId));
     }
 
     @GetMapping("/{id}/download")
-    public ResponseEntity<Resource> download(
+    public void download(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            WebRequest webRequest,
             @RequestHeader("Authorization") String authToken,
             @PathVariable String id
+    ) throws IOException {
+        String userId = jwtService.validateTokenAndGetUserId(authToken);
+        Media media = mediaService.getMedia(userId, id);
+        boolean encoded = mediaService.acceptsStoredEncoding(media, request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (media.getStorageCodec() != null) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+
+        // Validators come from the record alone, so a revalidation never reaches storage
+        String etag = mediaService.entityTag(media, encoded);
+        long lastModified = media.getUploadedAt() != null ? media.getUploadedAt().toEpochMilli() : -1;
+        if (webRequest.checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        Resource resource;
+        if (encoded) {
+            // Compressed at rest and the client can take it that way: send the stored bytes untouched
+            resource = mediaService.downloadStored(media);
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, media.getStorageCodec());
+        } else {
+            resource = mediaService.download(media);
+        }
+        rangeResponseWriter.write(request, response, resource,
+                media.getFileName(), media.getFileType(), etag, media.getUploadedAt());
+    }
+
+    /**
+     * Streams the selected media as one ZIP archive; the body is written as it is produced.
+     */
+    @PostMapping("/export")
+    public void export(
+            HttpServletResponse response,
+            @RequestHeader("Authorization") String authToken,
+            @RequestBody(required = false) MediaExportRequestDTO exportRequest
+    ) throws IOException {
+        String userId = jwtService.validateTokenAndGetUserId(authToken);
+        try (Stream<Media> selection = mediaExportService.selectMedia(userId,
+                exportRequest != null ? exportRequest : new MediaExportRequestDTO())) {
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                    .filename("safeshare-export-" + LocalDate.now(ZoneOffset.UTC) + ".zip").build().toString());
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+            mediaExportService.writeArchive(selection, response.getOutputStream());
+        }
+    }
+
+    @GetMapping("/{id}/thumbnail")
+    public ResponseEntity<Resource> thumbnail(
+            @RequestHeader("Authorization") String authToken,
+            @PathVariable String id,
+            @RequestParam(name = "w", defaultValue = "256") int width
     ) {
         String userId = jwtService.validateTokenAndGetUserId(authToken);
-        Resource resource = mediaService.download(userId, id);
+        Media media = mediaService.getMedia(userId, id);
+        Path variant = thumbnailService.getThumbnail(media, width);
         return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION,
-                        "attachment; filename=\"" + resource.getFilename() + "\"")
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(7)).cachePrivate())
+                .contentType(MediaType.parseMediaType(thumbnailService.contentType(variant)))
+                .body(new FileSystemResource(variant));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(
+            @RequestHeader("Authorization") String authToken,
+            @PathVariable String id
+    ) {
+        String userId = jwtService.validateTokenAndGetUserId(authToken);
+        mediaService.deleteMedia(userId, id);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Answers listing revalidations from the per-user version counter before any page query runs
+    private boolean libraryNotModified(WebRequest webRequest, String userId) {
+        MediaLibraryVersion version = mediaService.getLibraryVersion(userId);
+        String etag = mediaService.libraryEntityTag(userId, version);
+        long lastModified = version.getUpdatedAt() != null ? version.getUpdatedAt().toEpochMilli() : -1;
+        return webRequest.checkNotModified(etag, lastModified);
     }
 }
@@ -0,0 +1,26 @@
+package com.shareApp.Media.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Selects the media to export: either explicit ids, or a filter on type and upload time.
+ * An empty request exports the whole library.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaExportRequestDTO {
+
+    private List<String> mediaIds;
+
+    private String mediaType; // PHOTO or VIDEO
+
+    private Instant uploadedFrom;
+
+    private Instant uploadedTo;
+}
@@ -0,0 +1,19 @@
+package com.shareApp.Media.dto;
+
+import com.shareApp.Media.model.Media;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaPageDTO {
+
+    private List<Media> items;
+
+    // Pass back as ?cursor= to get the next page; null on the last page
+    private String nextCursor;
+}
@@ -0,0 +1,22 @@
+package com.shareApp.Media.dto;
+
+import com.shareApp.Media.model.MediaStats;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaStatsDTO {
+    private long totalCount;
+    private long totalBytes;
+    private Map<String, MediaStats.Bucket> byMediaType;
+    private Map<String, MediaStats.Bucket> byFileType;
+    private Map<String, MediaStats.Bucket> bySizeBucket;
+    private Map<String, MediaStats.Bucket> byMonth;
+}
@@ -0,0 +1,35 @@
+package com.shareApp.Media.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionDTO {
+    private String sessionId;
+    private String fileName;
+    private String status;
+    private long totalSize;
+    private long chunkSize;
+    private int totalChunks;
+    private long receivedBytes;
+    private List<ByteRange> receivedRanges;
+    private List<Integer> missingChunks;
+    private String mediaId;
+    private Instant expiresAt;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ByteRange {
+        private long offset;
+        private long length;
+    }
+}
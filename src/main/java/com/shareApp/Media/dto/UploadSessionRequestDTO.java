@@ -0,0 +1,24 @@
+package com.shareApp.Media.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionRequestDTO {
+
+    @NotBlank(message = "File name is required")
+    private String fileName;
+
+    private String fileType;
+
+    @Positive(message = "Total size must be positive")
+    private long totalSize;
+
+    // Optional; the server default is used when absent
+    private Long chunkSize;
+}
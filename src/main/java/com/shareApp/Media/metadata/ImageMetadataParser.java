@@ -0,0 +1,145 @@
+package com.shareApp.Media.metadata;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+
+/**
+ * Reads dimensions and the EXIF capture time from the leading bytes of an image. Only the
+ * header is decoded, never the pixel data.
+ */
+final class ImageMetadataParser {
+
+    private static final DateTimeFormatter EXIF_DATE_TIME = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+    private static final int TAG_DATE_TIME = 0x0132;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+    private static final int TAG_OFFSET_TIME_ORIGINAL = 0x9011;
+
+    private ImageMetadataParser() {
+    }
+
+    static MediaMetadata parse(byte[] header, int length) {
+        MediaMetadata metadata = new MediaMetadata();
+        metadata.setMediaType("PHOTO");
+        readDimensions(header, length, metadata);
+        if (length > 2 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8) {
+            metadata.setCapturedAt(jpegCaptureTime(header, length));
+        }
+        return metadata;
+    }
+
+    private static void readDimensions(byte[] header, int length, MediaMetadata metadata) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(header, 0, length))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                metadata.setWidth(reader.getWidth(0));
+                metadata.setHeight(reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            // Header did not fit in the captured prefix; dimensions stay unknown
+        }
+    }
+
+    private static Instant jpegCaptureTime(byte[] data, int length) {
+        int position = 2;
+        while (position + 4 <= length) {
+            if ((data[position] & 0xFF) != 0xFF) {
+                return null;
+            }
+            int marker = data[position + 1] & 0xFF;
+            if (marker == 0xFF) {
+                position++;
+                continue;
+            }
+            if (marker == 0xDA || marker == 0xD9) {
+                // Start of scan; metadata segments all precede it
+                return null;
+            }
+            int segmentLength = ((data[position + 2] & 0xFF) << 8) | (data[position + 3] & 0xFF);
+            int start = position + 4;
+            if (marker == 0xE1 && start + 6 <= length
+                    && new String(data, start, 4, StandardCharsets.ISO_8859_1).equals("Exif")) {
+                int end = Math.min(length, position + 2 + segmentLength);
+                return exifCaptureTime(ByteBuffer.wrap(data, start + 6, end - start - 6).slice());
+            }
+            position += 2 + segmentLength;
+        }
+        return null;
+    }
+
+    private static Instant exifCaptureTime(ByteBuffer tiff) {
+        try {
+            tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            int ifd0 = tiff.getInt(4);
+            String dateTime = readAscii(tiff, ifd0, TAG_DATE_TIME);
+            int exifIfd = readLong(tiff, ifd0, TAG_EXIF_IFD);
+
+            String original = exifIfd > 0 ? readAscii(tiff, exifIfd, TAG_DATE_TIME_ORIGINAL) : null;
+            String offset = exifIfd > 0 ? readAscii(tiff, exifIfd, TAG_OFFSET_TIME_ORIGINAL) : null;
+            String value = original != null ? original : dateTime;
+            if (value == null) {
+                return null;
+            }
+
+            LocalDateTime local = LocalDateTime.parse(value.trim(), EXIF_DATE_TIME);
+            // Without an offset tag the camera's local time is all we have; treat it as UTC
+            ZoneOffset zone = offset != null ? ZoneOffset.of(offset.trim()) : ZoneOffset.UTC;
+            return local.toInstant(zone);
+        } catch (IndexOutOfBoundsException | DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static int findEntry(ByteBuffer tiff, int ifdOffset, int tag) {
+        int count = tiff.getShort(ifdOffset) & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int entry = ifdOffset + 2 + i * 12;
+            if ((tiff.getShort(entry) & 0xFFFF) == tag) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private static int readLong(ByteBuffer tiff, int ifdOffset, int tag) {
+        int entry = findEntry(tiff, ifdOffset, tag);
+        return entry < 0 ? -1 : tiff.getInt(entry + 8);
+    }
+
+    private static String readAscii(ByteBuffer tiff, int ifdOffset, int tag) {
+        int entry = findEntry(tiff, ifdOffset, tag);
+        if (entry < 0) {
+            return null;
+        }
+        int count = tiff.getInt(entry + 4);
+        if (count <= 0 || count > 64) {
+            return null;
+        }
+        // Values of up to four bytes are stored inline, longer ones at an offset
+        int valueOffset = count <= 4 ? entry + 8 : tiff.getInt(entry + 8);
+        byte[] bytes = new byte[count];
+        tiff.get(valueOffset, bytes);
+        int end = 0;
+        while (end < count && bytes[end] != 0) {
+            end++;
+        }
+        return end == 0 ? null : new String(bytes, 0, end, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,21 @@
+package com.shareApp.Media.metadata;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaMetadata {
+    private String mediaType; // PHOTO or VIDEO, as detected from the content
+    private Integer width;
+    private Integer height;
+    private Long durationMillis;
+    private String codec; // Sample entry types, e.g. "avc1,mp4a"
+    private Instant capturedAt;
+}
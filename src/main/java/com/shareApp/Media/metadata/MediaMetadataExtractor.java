@@ -0,0 +1,56 @@
+package com.shareApp.Media.metadata;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Extracts {@link MediaMetadata} while an upload is being stored. Streams are observed in
+ * passing with bounded memory; finished files are read by seeking to the relevant headers.
+ * Extraction is best effort and never fails an upload.
+ */
+@Component
+@Slf4j
+public class MediaMetadataExtractor {
+
+    @Value("${media.metadata.image-header-limit:262144}")
+    private int imageHeaderLimit;
+
+    @Value("${media.metadata.moov-limit:16777216}")
+    private int moovLimit;
+
+    /**
+     * Wraps an upload stream; call {@link MetadataCaptureInputStream#getMetadata()} once it has been fully consumed.
+     */
+    public MetadataCaptureInputStream capture(InputStream content) {
+        return new MetadataCaptureInputStream(content, new MetadataSniffer(imageHeaderLimit, moovLimit));
+    }
+
+    public MediaMetadata extract(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer signature = ByteBuffer.allocate(MetadataSniffer.SIGNATURE_LENGTH);
+            channel.read(signature, 0);
+            return switch (MetadataSniffer.detect(signature.array(), signature.position())) {
+                case IMAGE -> {
+                    ByteBuffer header = ByteBuffer.allocate((int) Math.min(imageHeaderLimit, channel.size()));
+                    while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                        // Keep reading until the prefix is full
+                    }
+                    yield ImageMetadataParser.parse(header.array(), header.position());
+                }
+                case MP4 -> Mp4MetadataParser.parse(channel, moovLimit);
+                case UNKNOWN -> null;
+            };
+        } catch (IOException | RuntimeException e) {
+            log.debug("Failed to extract metadata from {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+}
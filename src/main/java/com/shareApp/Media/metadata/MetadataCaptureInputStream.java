@@ -0,0 +1,66 @@
+package com.shareApp.Media.metadata;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Passes an upload through unchanged while feeding every byte to a {@link MetadataSniffer}.
+ * Closing this stream does not close the underlying one.
+ */
+public class MetadataCaptureInputStream extends FilterInputStream {
+
+    private final MetadataSniffer sniffer;
+
+    MetadataCaptureInputStream(InputStream in, MetadataSniffer sniffer) {
+        super(in);
+        this.sniffer = sniffer;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value != -1) {
+            sniffer.accept(new byte[]{(byte) value}, 0, 1);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            sniffer.accept(buffer, offset, read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes must still reach the sniffer
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        // The caller owns the underlying stream
+    }
+
+    public MediaMetadata getMetadata() {
+        return sniffer.result();
+    }
+}
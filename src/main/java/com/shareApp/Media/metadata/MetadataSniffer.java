@@ -0,0 +1,138 @@
+package com.shareApp.Media.metadata;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+
+/**
+ * Watches the leading bytes of an upload, decides from the file signature whether it is an
+ * image or an MP4/QuickTime container, and then keeps only what the matching parser needs:
+ * the header prefix for images, the {@code moov} box for MP4.
+ */
+@Slf4j
+final class MetadataSniffer {
+
+    enum Format { IMAGE, MP4, UNKNOWN }
+
+    static final int SIGNATURE_LENGTH = 12;
+
+    private final int imageHeaderLimit;
+    private final int moovLimit;
+
+    private final byte[] signature = new byte[SIGNATURE_LENGTH];
+    private int signatureFill;
+    private Format format;
+
+    private byte[] imageHeader;
+    private int imageHeaderFill;
+    private Mp4BoxScanner boxScanner;
+
+    MetadataSniffer(int imageHeaderLimit, int moovLimit) {
+        this.imageHeaderLimit = imageHeaderLimit;
+        this.moovLimit = moovLimit;
+    }
+
+    /**
+     * Observes the next bytes of the upload. A parser failure only stops metadata capture; it
+     * never reaches the stream the upload is read from.
+     */
+    void accept(byte[] buffer, int offset, int length) {
+        try {
+            sniff(buffer, offset, length);
+        } catch (RuntimeException e) {
+            log.debug("Stopped capturing media metadata: {}", e.getMessage());
+            format = Format.UNKNOWN;
+        }
+    }
+
+    private void sniff(byte[] buffer, int offset, int length) {
+        if (format == null) {
+            int n = Math.min(SIGNATURE_LENGTH - signatureFill, length);
+            System.arraycopy(buffer, offset, signature, signatureFill, n);
+            signatureFill += n;
+            if (signatureFill < SIGNATURE_LENGTH) {
+                return;
+            }
+            start(detect(signature, signatureFill));
+            // Replay the signature bytes; the rest of this buffer follows below
+            feed(signature, 0, signatureFill);
+            offset += n;
+            length -= n;
+        }
+        feed(buffer, offset, length);
+    }
+
+    MediaMetadata result() {
+        if (format == null) {
+            // Upload shorter than a full signature
+            start(detect(signature, signatureFill));
+            feed(signature, 0, signatureFill);
+        }
+        try {
+            return switch (format) {
+                case IMAGE -> ImageMetadataParser.parse(imageHeader, imageHeaderFill);
+                case MP4 -> boxScanner.result();
+                case UNKNOWN -> null;
+            };
+        } catch (RuntimeException e) {
+            log.debug("Failed to parse media metadata: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    static Format detect(byte[] signature, int length) {
+        if (startsWith(signature, length, 0, 0xFF, 0xD8, 0xFF)
+                || startsWith(signature, length, 0, 0x89, 'P', 'N', 'G')
+                || startsWith(signature, length, 0, 'G', 'I', 'F', '8')
+                || startsWith(signature, length, 0, 'B', 'M')
+                || (startsWith(signature, length, 0, 'R', 'I', 'F', 'F') && startsWith(signature, length, 8, 'W', 'E', 'B', 'P'))) {
+            return Format.IMAGE;
+        }
+        for (String type : new String[]{"ftyp", "moov", "mdat", "wide", "free"}) {
+            if (startsWith(signature, length, 4, type.charAt(0), type.charAt(1), type.charAt(2), type.charAt(3))) {
+                return Format.MP4;
+            }
+        }
+        return Format.UNKNOWN;
+    }
+
+    private void start(Format detected) {
+        format = detected;
+        if (format == Format.IMAGE) {
+            imageHeader = new byte[Math.min(imageHeaderLimit, 8192)];
+        } else if (format == Format.MP4) {
+            boxScanner = new Mp4BoxScanner(moovLimit);
+        }
+    }
+
+    private void feed(byte[] buffer, int offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+        if (format == Format.IMAGE) {
+            int n = Math.min(imageHeaderLimit - imageHeaderFill, length);
+            if (n <= 0) {
+                return;
+            }
+            if (imageHeaderFill + n > imageHeader.length) {
+                imageHeader = Arrays.copyOf(imageHeader, Math.min(imageHeaderLimit, Math.max(imageHeader.length * 2, imageHeaderFill + n)));
+            }
+            System.arraycopy(buffer, offset, imageHeader, imageHeaderFill, n);
+            imageHeaderFill += n;
+        } else if (format == Format.MP4) {
+            boxScanner.accept(buffer, offset, length);
+        }
+    }
+
+    private static boolean startsWith(byte[] data, int length, int offset, int... expected) {
+        if (length < offset + expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if ((data[offset + i] & 0xFF) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,84 @@
+package com.shareApp.Media.metadata;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Walks the top-level boxes of an MP4 stream as bytes arrive. Every box is skipped by
+ * arithmetic except {@code moov}, which is copied out so it can be parsed once complete,
+ * whether it sits before or after {@code mdat}.
+ */
+final class Mp4BoxScanner {
+
+    private final int moovLimit;
+
+    private final byte[] header = new byte[16];
+    private int headerFill;
+    private long skipRemaining;
+    private byte[] moov;
+    private int moovFill;
+    private boolean done;
+
+    Mp4BoxScanner(int moovLimit) {
+        this.moovLimit = moovLimit;
+    }
+
+    void accept(byte[] buffer, int offset, int length) {
+        while (length > 0 && !done) {
+            int n;
+            if (skipRemaining > 0) {
+                n = (int) Math.min(skipRemaining, length);
+                skipRemaining -= n;
+            } else if (moov != null) {
+                n = Math.min(moov.length - moovFill, length);
+                System.arraycopy(buffer, offset, moov, moovFill, n);
+                moovFill += n;
+                done = moovFill == moov.length;
+            } else {
+                n = Math.min(headerLength() - headerFill, length);
+                System.arraycopy(buffer, offset, header, headerFill, n);
+                headerFill += n;
+                if (headerFill == headerLength()) {
+                    onBoxHeader();
+                }
+            }
+            offset += n;
+            length -= n;
+        }
+    }
+
+    MediaMetadata result() {
+        if (moov == null || moovFill < moov.length) {
+            return null;
+        }
+        return Mp4MetadataParser.parseMoov(ByteBuffer.wrap(moov));
+    }
+
+    private int headerLength() {
+        // A 32-bit size of 1 means a 64-bit size follows the type
+        return headerFill >= 8 && ByteBuffer.wrap(header).getInt(0) == 1 ? 16 : 8;
+    }
+
+    private void onBoxHeader() {
+        ByteBuffer view = ByteBuffer.wrap(header);
+        int headerLength = headerLength();
+        long size = headerLength == 16 ? view.getLong(8) : Integer.toUnsignedLong(view.getInt(0));
+        String type = new String(header, 4, 4, StandardCharsets.ISO_8859_1);
+        headerFill = 0;
+
+        if (size < headerLength) {
+            // Size 0 (box runs to end of file) or malformed; nothing useful can follow
+            done = true;
+            return;
+        }
+        long payload = size - headerLength;
+        if (!"moov".equals(type)) {
+            skipRemaining = payload;
+        } else if (payload > moovLimit) {
+            done = true;
+        } else {
+            moov = new byte[(int) payload];
+            done = payload == 0;
+        }
+    }
+}
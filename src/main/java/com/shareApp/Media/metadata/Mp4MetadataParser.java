@@ -0,0 +1,211 @@
+package com.shareApp.Media.metadata;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads duration, creation time, video dimensions and sample entry codecs from an MP4/QuickTime
+ * {@code moov} box (ISO/IEC 14496-12).
+ */
+final class Mp4MetadataParser {
+
+    // Seconds between the MP4 epoch (1904-01-01) and the Unix epoch
+    private static final long MP4_EPOCH_OFFSET = 2_082_844_800L;
+    private static final BigInteger MILLIS_PER_SECOND = BigInteger.valueOf(1000);
+
+    private Mp4MetadataParser() {
+    }
+
+    /**
+     * Locates {@code moov} in a file by seeking over the other top-level boxes.
+     */
+    static MediaMetadata parse(FileChannel channel, int moovLimit) throws IOException {
+        long position = 0;
+        long fileSize = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(16);
+        while (position + 8 <= fileSize) {
+            header.clear().limit(8);
+            readFully(channel, header, position);
+            long size = Integer.toUnsignedLong(header.getInt(0));
+            String type = new String(header.array(), 4, 4, StandardCharsets.ISO_8859_1);
+            int headerLength = 8;
+            if (size == 1) {
+                header.limit(16);
+                readFully(channel, header, position);
+                size = header.getLong(8);
+                headerLength = 16;
+            } else if (size == 0) {
+                size = fileSize - position;
+            }
+            // Compared by subtraction: a forged 64-bit size would overflow the sum
+            if (size < headerLength || size > fileSize - position) {
+                return null;
+            }
+
+            if ("moov".equals(type)) {
+                long payload = size - headerLength;
+                if (payload > moovLimit) {
+                    return null;
+                }
+                ByteBuffer moov = ByteBuffer.allocate((int) payload);
+                readFully(channel, moov, position + headerLength);
+                return parseMoov(moov.flip());
+            }
+            position += size;
+        }
+        return null;
+    }
+
+    static MediaMetadata parseMoov(ByteBuffer moov) {
+        MediaMetadata metadata = new MediaMetadata();
+        Set<String> videoCodecs = new LinkedHashSet<>();
+        Set<String> otherCodecs = new LinkedHashSet<>();
+
+        for (Box box : children(moov)) {
+            if (box.type().equals("mvhd")) {
+                readMovieHeader(box.payload(), metadata);
+            } else if (box.type().equals("trak")) {
+                ByteBuffer handler = find(box.payload(), "mdia", "hdlr");
+                String handlerType = handler != null && handler.limit() >= 12 ? fourCc(handler, 8) : null;
+                ByteBuffer sampleDescription = find(box.payload(), "mdia", "minf", "stbl", "stsd");
+                String codec = sampleDescription != null && sampleDescription.limit() >= 16 ? fourCc(sampleDescription, 12).trim() : null;
+
+                if ("vide".equals(handlerType)) {
+                    metadata.setMediaType("VIDEO");
+                    if (codec != null) {
+                        videoCodecs.add(codec);
+                    }
+                    ByteBuffer trackHeader = find(box.payload(), "tkhd");
+                    if (trackHeader != null && metadata.getWidth() == null) {
+                        readTrackDimensions(trackHeader, metadata);
+                    }
+                } else if (codec != null && !codec.isEmpty()) {
+                    otherCodecs.add(codec);
+                }
+            }
+        }
+
+        videoCodecs.addAll(otherCodecs);
+        if (!videoCodecs.isEmpty()) {
+            metadata.setCodec(String.join(",", videoCodecs));
+        }
+        return metadata;
+    }
+
+    private static void readMovieHeader(ByteBuffer mvhd, MediaMetadata metadata) {
+        int version = mvhd.get(0) & 0xFF;
+        long creationTime;
+        long timescale;
+        long duration;
+        if (version == 1 && mvhd.limit() >= 32) {
+            creationTime = mvhd.getLong(4);
+            timescale = Integer.toUnsignedLong(mvhd.getInt(20));
+            duration = mvhd.getLong(24);
+        } else if (version == 0 && mvhd.limit() >= 20) {
+            creationTime = Integer.toUnsignedLong(mvhd.getInt(4));
+            timescale = Integer.toUnsignedLong(mvhd.getInt(12));
+            long raw = Integer.toUnsignedLong(mvhd.getInt(16));
+            duration = raw == 0xFFFFFFFFL ? -1 : raw;
+        } else {
+            return;
+        }
+
+        if (timescale > 0 && duration >= 0) {
+            // A 64-bit duration times 1000 does not fit in a long
+            BigInteger millis = BigInteger.valueOf(duration).multiply(MILLIS_PER_SECOND).divide(BigInteger.valueOf(timescale));
+            if (millis.bitLength() < Long.SIZE) {
+                metadata.setDurationMillis(millis.longValue());
+            }
+        }
+        // Many encoders leave the creation time at zero
+        if (creationTime > MP4_EPOCH_OFFSET) {
+            metadata.setCapturedAt(Instant.ofEpochSecond(creationTime - MP4_EPOCH_OFFSET));
+        }
+    }
+
+    private static void readTrackDimensions(ByteBuffer tkhd, MediaMetadata metadata) {
+        int version = tkhd.get(0) & 0xFF;
+        int offset = version == 1 ? 88 : 76;
+        if (tkhd.limit() < offset + 8) {
+            return;
+        }
+        // 16.16 fixed point
+        int width = tkhd.getInt(offset) >>> 16;
+        int height = tkhd.getInt(offset + 4) >>> 16;
+        if (width > 0 && height > 0) {
+            metadata.setWidth(width);
+            metadata.setHeight(height);
+        }
+    }
+
+    private static ByteBuffer find(ByteBuffer container, String... path) {
+        ByteBuffer current = container;
+        for (String type : path) {
+            ByteBuffer next = null;
+            for (Box box : children(current)) {
+                if (box.type().equals(type)) {
+                    next = box.payload();
+                    break;
+                }
+            }
+            if (next == null) {
+                return null;
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    private static List<Box> children(ByteBuffer container) {
+        List<Box> boxes = new ArrayList<>();
+        int position = 0;
+        int limit = container.limit();
+        while (position + 8 <= limit) {
+            long size = Integer.toUnsignedLong(container.getInt(position));
+            String type = fourCc(container, position + 4);
+            int headerLength = 8;
+            if (size == 1) {
+                if (position + 16 > limit) {
+                    break;
+                }
+                size = container.getLong(position + 8);
+                headerLength = 16;
+            } else if (size == 0) {
+                size = limit - position;
+            }
+            if (size < headerLength || size > limit - position) {
+                break;
+            }
+            boxes.add(new Box(type, container.slice(position + headerLength, (int) size - headerLength)));
+            position += (int) size;
+        }
+        return boxes;
+    }
+
+    private static String fourCc(ByteBuffer buffer, int offset) {
+        byte[] bytes = new byte[4];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    // Fills the buffer from its current position, where buffer index 0 maps to the given file position
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    private record Box(String type, ByteBuffer payload) {
+    }
+}
@@ -2,11 +2,15 @@ package com.shareApp.Media.model;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
 
 @Document(collection = "media")
+// Serves listings newest first, with _id breaking ties between identical upload times
+@CompoundIndex(name = "user_uploaded_id", def = "{'userId': 1, 'uploadedAt': -1, '_id': -1}")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -20,6 +24,17 @@ public class Media {
     private String fileType; // image/png, video/mp4, etc.
     private String mediaType; // PHOTO or VIDEO
     private long sizeInBytes;
+    private String contentDigest; // SHA-256 of the original content, hex encoded
+    private Long crc32; // CRC-32 of the original content, lets archives store it without a second read
     private Instant uploadedAt;
+    @Indexed
     private String s3Key;
+    private String storageCodec; // gzip when compressed at rest, null when stored as-is
+
+    // Read from the file headers at upload time; null when unknown
+    private Integer width;
+    private Integer height;
+    private Long durationMillis;
+    private String codec; // avc1, hvc1, mp4a, ...
+    private Instant capturedAt;
 }
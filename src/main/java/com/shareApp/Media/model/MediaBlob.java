@@ -0,0 +1,26 @@
+package com.shareApp.Media.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Reference count for a content-addressed blob shared by any number of media items. The file is
+ * only unlinked under a purge claim on this document, which new references never overlap.
+ */
+@Document(collection = "mediaBlobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MediaBlob {
+    @Id
+    private String id; // SHA-256 of the content, hex encoded
+
+    private long refCount;
+    private long sizeInBytes;
+    private Instant createdAt;
+    private Instant purgingSince; // Set while the blob file is being unlinked; new references wait for it
+}
@@ -0,0 +1,23 @@
+package com.shareApp.Media.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Per-user counter bumped whenever the user's media set changes, used as the validator for listings.
+ */
+@Document(collection = "mediaLibraryVersions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MediaLibraryVersion {
+    @Id
+    private String id; // userId
+
+    private long version;
+    private Instant updatedAt;
+}
@@ -0,0 +1,43 @@
+package com.shareApp.Media.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pre-aggregated media counts and bytes of one user, maintained by uploads and deletes.
+ * File types are bucketed into a fixed set of known types plus "other"; keys written before
+ * that may still carry '.' escaped, since dots are path separators in updates.
+ */
+@Document(collection = "mediaStats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MediaStats {
+    @Id
+    private String id; // userId
+
+    @Builder.Default
+    private Map<String, Bucket> byMediaType = new HashMap<>();
+    @Builder.Default
+    private Map<String, Bucket> byFileType = new HashMap<>();
+    @Builder.Default
+    private Map<String, Bucket> bySizeBucket = new HashMap<>();
+    @Builder.Default
+    private Map<String, Bucket> byMonth = new HashMap<>(); // yyyy-MM, UTC
+
+    private Instant updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Bucket {
+        private long count;
+        private long bytes;
+    }
+}
@@ -0,0 +1,53 @@
+package com.shareApp.Media.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Document(collection = "uploadSessions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadSession {
+    @Id
+    private String id;
+
+    @Indexed
+    private String userId;
+    private String fileName;
+    private String fileType;
+    private long totalSize;
+    private long chunkSize;
+    private int totalChunks;
+
+    @Builder.Default
+    private Set<Integer> receivedChunks = new HashSet<>();
+
+    // Chunks being copied into the staging file; a chunk is claimed here until it is received
+    @Builder.Default
+    private List<ChunkWrite> chunkWrites = new ArrayList<>();
+
+    private String status; // "ACTIVE", "COMPLETING", "COMPLETED", "FAILED", "ABORTED", "EXPIRED"
+    private String mediaId; // Set once the session is finalized
+    private Instant createdAt;
+    private Instant updatedAt;
+
+    @Indexed
+    private Instant expiresAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ChunkWrite {
+        private int index;
+        private Instant startedAt;
+    }
+}
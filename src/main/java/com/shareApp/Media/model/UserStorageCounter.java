@@ -0,0 +1,29 @@
+package com.shareApp.Media.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Running storage total of one user, kept in step with uploads and deletes by atomic increments.
+ */
+@Document(collection = "userStorageCounters")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserStorageCounter {
+    @Id
+    private String id; // userId
+
+    private long totalBytes;
+    private long mediaCount;
+    private long version; // Bumped by every change, so reconciliation can detect concurrent updates
+    private long eventSequence; // Sequence of the last storage usage event handed out for this user
+    private long pendingChanges; // Media writes begun but not yet applied; reconciliation waits for them
+    private Instant changeStartedAt; // When the latest of them began
+    private Instant updatedAt;
+    private Instant reconciledAt;
+}
@@ -0,0 +1,7 @@
+package com.shareApp.Media.repository;
+
+import com.shareApp.Media.model.MediaLibraryVersion;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface MediaLibraryVersionRepository extends MongoRepository<MediaLibraryVersion, String> {
+}
@@ -4,7 +4,23 @@ import com.shareApp.Media.model.Media;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 
 public interface MediaRepository extends MongoRepository<Media, String> {
     Page<Media> findByUserId(String userId, Pageable pageable);
+
+    // Keyset pages: newest first, continuing strictly after (uploadedAt, _id). List results skip the count query.
+    @Query(value = "{'userId': ?0}", sort = "{'uploadedAt': -1, '_id': -1}")
+    List<Media> findFirstPage(String userId, Pageable pageable);
+
+    @Query(value = "{'userId': ?0, $or: [{'uploadedAt': {$lt: ?1}}, {'uploadedAt': ?1, '_id': {$lt: ?2}}]}",
+            sort = "{'uploadedAt': -1, '_id': -1}")
+    List<Media> findPageAfter(String userId, Instant uploadedAt, String id, Pageable pageable);
+
+    @Query(value = "{'s3Key': {$in: ?0}}", fields = "{'s3Key': 1}")
+    List<Media> findStorageKeysIn(Collection<String> storageKeys);
 }
@@ -0,0 +1,37 @@
+package com.shareApp.Media.repository;
+
+import com.shareApp.Media.model.UploadSession;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface UploadSessionRepository extends MongoRepository<UploadSession, String> {
+
+    List<UploadSession> findByStatusAndExpiresAtBefore(String status, Instant now);
+
+    // Only one writer may copy a chunk into the staging file, and never once it was received
+    @Query("{'_id': ?0, 'status': 'ACTIVE', 'receivedChunks': {'$ne': ?1}, 'chunkWrites.index': {'$ne': ?1}}")
+    @Update("{'$push': {'chunkWrites': {'index': ?1, 'startedAt': ?2}}}")
+    long claimChunkWrite(String sessionId, int chunkIndex, Instant startedAt);
+
+    // A claim this old was left by a writer that died
+    @Query("{'_id': ?0}")
+    @Update("{'$pull': {'chunkWrites': {'index': ?1, 'startedAt': {'$lt': ?2}}}}")
+    long releaseStaleChunkWrite(String sessionId, int chunkIndex, Instant staleBefore);
+
+    @Query("{'_id': ?0}")
+    @Update("{'$pull': {'chunkWrites': {'index': ?1, 'startedAt': ?2}}}")
+    long releaseChunkWrite(String sessionId, int chunkIndex, Instant startedAt);
+
+    // $addToSet keeps concurrent chunk writers from overwriting each other's progress
+    @Query("{'_id': ?0, 'status': 'ACTIVE', 'chunkWrites': {'$elemMatch': {'index': ?1, 'startedAt': ?2}}}")
+    @Update("{'$addToSet': {'receivedChunks': ?1}, '$pull': {'chunkWrites': {'index': ?1}}, '$set': {'updatedAt': ?3, 'expiresAt': ?4}}")
+    long markChunkReceived(String sessionId, int chunkIndex, Instant startedAt, Instant updatedAt, Instant expiresAt);
+
+    @Query("{'_id': ?0, 'status': ?1}")
+    @Update("{'$set': {'status': ?2, 'updatedAt': ?3}}")
+    long transitionStatus(String sessionId, String expectedStatus, String newStatus, Instant updatedAt);
+}
@@ -0,0 +1,334 @@
+package com.shareApp.Media.service;
+
+import com.shareApp.Media.dto.UploadSessionDTO;
+import com.shareApp.Media.dto.UploadSessionRequestDTO;
+import com.shareApp.Media.model.Media;
+import com.shareApp.Media.model.UploadSession;
+import com.shareApp.Media.repository.UploadSessionRepository;
+import com.shareApp.Utils.exceptions.BadRequestException;
+import com.shareApp.Utils.exceptions.ResourceNotFoundException;
+import com.shareApp.Utils.exceptions.RuntimeConflictException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Resumable uploads: a session preallocates a staging file, chunks are written in place with
+ * positional writes (in any order, from any number of connections) and the finished file is
+ * handed to {@link MediaService} without another copy.
+ * <p>
+ * A chunk body is first received into its own temporary file and only copied into place once
+ * its length is right. The copy runs under a claim on the session document, which is only
+ * granted while the session is active and the chunk is not yet received, so a re-sent chunk
+ * cannot overwrite received bytes and no write is left running once the session can complete.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChunkedUploadService {
+
+    private static final long MIN_CHUNK_SIZE = 256 * 1024;
+    private static final long MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    // Far longer than copying one chunk on local disk takes
+    private static final Duration CHUNK_WRITE_STALE_AFTER = Duration.ofMinutes(10);
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final MediaService mediaService;
+
+    @Value("${media.upload.staging-path}")
+    private String stagingPath;
+
+    @Value("${media.upload.chunk-size:8388608}")
+    private long defaultChunkSize;
+
+    @Value("${media.upload.session-ttl-hours:24}")
+    private long sessionTtlHours;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(Paths.get(stagingPath));
+    }
+
+    public UploadSessionDTO createSession(String userId, UploadSessionRequestDTO request) {
+        long chunkSize = request.getChunkSize() != null ? request.getChunkSize() : defaultChunkSize;
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE) {
+            throw new BadRequestException("Chunk size must be between " + MIN_CHUNK_SIZE + " and " + MAX_CHUNK_SIZE + " bytes");
+        }
+
+        long chunks = (request.getTotalSize() + chunkSize - 1) / chunkSize;
+        if (chunks > Integer.MAX_VALUE) {
+            throw new BadRequestException("Too many chunks for this file size");
+        }
+
+        String sessionId = UUID.randomUUID().toString();
+        Path stagingFile = stagingFile(sessionId);
+        try {
+            if (Files.getFileStore(stagingFile.getParent()).getUsableSpace() < request.getTotalSize()) {
+                throw new RuntimeConflictException("Not enough storage space for this upload");
+            }
+            try (RandomAccessFile file = new RandomAccessFile(stagingFile.toFile(), "rw")) {
+                file.setLength(request.getTotalSize());
+            }
+        } catch (IOException e) {
+            log.error("Failed to preallocate staging file for session {}: {}", sessionId, e.getMessage());
+            throw new RuntimeException("Failed to create upload session", e);
+        }
+
+        Instant now = Instant.now();
+        UploadSession session = UploadSession.builder()
+                .id(sessionId)
+                .userId(userId)
+                .fileName(request.getFileName())
+                .fileType(request.getFileType())
+                .totalSize(request.getTotalSize())
+                .chunkSize(chunkSize)
+                .totalChunks((int) chunks)
+                .status("ACTIVE")
+                .createdAt(now)
+                .updatedAt(now)
+                .expiresAt(now.plus(Duration.ofHours(sessionTtlHours)))
+                .build();
+
+        UploadSession saved = uploadSessionRepository.save(session);
+        log.info("Upload session {} created for user {}: {} ({} bytes in {} chunks)",
+                sessionId, userId, request.getFileName(), request.getTotalSize(), chunks);
+        return toDTO(saved);
+    }
+
+    public UploadSessionDTO writeChunk(String userId, String sessionId, int chunkIndex, InputStream content) {
+        UploadSession session = getOwnedSession(userId, sessionId);
+        if (!"ACTIVE".equals(session.getStatus())) {
+            throw new RuntimeConflictException("Upload session is " + session.getStatus());
+        }
+        if (chunkIndex < 0 || chunkIndex >= session.getTotalChunks()) {
+            throw new BadRequestException("Chunk index out of range: " + chunkIndex);
+        }
+
+        if (session.getReceivedChunks().contains(chunkIndex)) {
+            throw new RuntimeConflictException("Chunk " + chunkIndex + " was already received");
+        }
+
+        long offset = chunkIndex * session.getChunkSize();
+        long expectedLength = Math.min(session.getChunkSize(), session.getTotalSize() - offset);
+
+        Path chunkFile = null;
+        try {
+            chunkFile = Files.createTempFile(Paths.get(stagingPath), sessionId + "." + chunkIndex + ".", ".chunk");
+            try (FileChannel channel = FileChannel.open(chunkFile, StandardOpenOption.WRITE)) {
+                long written = writeAt(channel, content, 0, expectedLength);
+                if (written != expectedLength) {
+                    throw new BadRequestException("Chunk " + chunkIndex + " must be exactly " + expectedLength
+                            + " bytes, received " + written);
+                }
+            }
+            copyIntoPlace(sessionId, chunkIndex, chunkFile, offset, expectedLength);
+        } catch (IOException e) {
+            log.error("Failed to write chunk {} of session {}: {}", chunkIndex, sessionId, e.getMessage());
+            throw new RuntimeException("Failed to write chunk", e);
+        } finally {
+            deleteQuietly(chunkFile);
+        }
+
+        return toDTO(getOwnedSession(userId, sessionId));
+    }
+
+    private void copyIntoPlace(String sessionId, int chunkIndex, Path chunkFile, long offset, long length) throws IOException {
+        Instant claimedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        uploadSessionRepository.releaseStaleChunkWrite(sessionId, chunkIndex, claimedAt.minus(CHUNK_WRITE_STALE_AFTER));
+        if (uploadSessionRepository.claimChunkWrite(sessionId, chunkIndex, claimedAt) == 0) {
+            throw new RuntimeConflictException("Upload session is no longer active, or chunk " + chunkIndex
+                    + " was already received or is being written");
+        }
+
+        try (FileChannel source = FileChannel.open(chunkFile, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(stagingFile(sessionId), StandardOpenOption.WRITE)) {
+            long copied = 0;
+            while (copied < length) {
+                copied += target.transferFrom(source, offset + copied, length - copied);
+            }
+        } catch (IOException | RuntimeException e) {
+            uploadSessionRepository.releaseChunkWrite(sessionId, chunkIndex, claimedAt);
+            throw e;
+        }
+
+        Instant now = Instant.now();
+        long updated = uploadSessionRepository.markChunkReceived(
+                sessionId, chunkIndex, claimedAt, now, now.plus(Duration.ofHours(sessionTtlHours)));
+        if (updated == 0) {
+            throw new RuntimeConflictException("Upload session is no longer active");
+        }
+    }
+
+    public UploadSessionDTO getSession(String userId, String sessionId) {
+        return toDTO(getOwnedSession(userId, sessionId));
+    }
+
+    public Media completeSession(String userId, String sessionId) {
+        UploadSession session = getOwnedSession(userId, sessionId);
+        if (session.getReceivedChunks().size() != session.getTotalChunks()) {
+            throw new RuntimeConflictException("Upload is incomplete: " + session.getReceivedChunks().size()
+                    + " of " + session.getTotalChunks() + " chunks received");
+        }
+
+        // Only one caller may finalize; a concurrent retry sees the conflict
+        if (uploadSessionRepository.transitionStatus(sessionId, "ACTIVE", "COMPLETING", Instant.now()) == 0) {
+            throw new RuntimeConflictException("Upload session is " + session.getStatus());
+        }
+
+        try {
+            Media media = mediaService.importFile(userId, session.getFileName(), session.getFileType(), stagingFile(sessionId));
+            session.setStatus("COMPLETED");
+            session.setMediaId(media.getId());
+            session.setUpdatedAt(Instant.now());
+            uploadSessionRepository.save(session);
+            log.info("Upload session {} completed as media {}", sessionId, media.getId());
+            return media;
+        } catch (RuntimeException e) {
+            if (e instanceof MediaImportException failed && !failed.isSourceHandedToStorage()) {
+                // Failed before storage took the file, so completing again can succeed
+                uploadSessionRepository.transitionStatus(sessionId, "COMPLETING", "ACTIVE", Instant.now());
+            } else {
+                // Storage may have moved or rewritten the file, so it cannot be imported again
+                uploadSessionRepository.transitionStatus(sessionId, "COMPLETING", "FAILED", Instant.now());
+                deleteStagingFile(sessionId);
+                log.warn("Upload session {} failed after its file was handed to storage: {}", sessionId, e.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    public void abortSession(String userId, String sessionId) {
+        UploadSession session = getOwnedSession(userId, sessionId);
+        if (uploadSessionRepository.transitionStatus(sessionId, "ACTIVE", "ABORTED", Instant.now()) == 0) {
+            throw new RuntimeConflictException("Upload session is " + session.getStatus());
+        }
+        deleteStagingFile(sessionId);
+        log.info("Upload session {} aborted by user {}", sessionId, userId);
+    }
+
+    @Scheduled(fixedDelayString = "${media.upload.cleanup-interval-ms:3600000}")
+    public void expireStaleSessions() {
+        List<UploadSession> expired = uploadSessionRepository.findByStatusAndExpiresAtBefore("ACTIVE", Instant.now());
+        for (UploadSession session : expired) {
+            if (uploadSessionRepository.transitionStatus(session.getId(), "ACTIVE", "EXPIRED", Instant.now()) > 0) {
+                deleteStagingFile(session.getId());
+            }
+        }
+        if (!expired.isEmpty()) {
+            log.info("Expired {} stale upload sessions", expired.size());
+        }
+    }
+
+    private long writeAt(FileChannel channel, InputStream content, long offset, long expectedLength) throws IOException {
+        byte[] chunk = new byte[WRITE_BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        long written = 0;
+        int read;
+        // Read one byte past the expected length so oversized chunks are detected
+        while (written <= expectedLength
+                && (read = content.read(chunk, 0, (int) Math.min(chunk.length, expectedLength - written + 1))) != -1) {
+            if (written + read > expectedLength) {
+                return written + read;
+            }
+            buffer.clear().limit(read);
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer, offset + written);
+            }
+        }
+        return written;
+    }
+
+    private UploadSession getOwnedSession(String userId, String sessionId) {
+        return uploadSessionRepository.findById(sessionId)
+                .filter(s -> s.getUserId().equals(userId))
+                .orElseThrow(() -> new ResourceNotFoundException("Upload session not found or access denied"));
+    }
+
+    private Path stagingFile(String sessionId) {
+        return Paths.get(stagingPath, sessionId + ".part");
+    }
+
+    private void deleteStagingFile(String sessionId) {
+        try {
+            Files.deleteIfExists(stagingFile(sessionId));
+            // Chunk files left behind by writers that died
+            try (DirectoryStream<Path> chunks = Files.newDirectoryStream(Paths.get(stagingPath), sessionId + ".*.chunk")) {
+                for (Path chunk : chunks) {
+                    Files.deleteIfExists(chunk);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete staging file for session {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete chunk file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private UploadSessionDTO toDTO(UploadSession session) {
+        List<UploadSessionDTO.ByteRange> ranges = new ArrayList<>();
+        List<Integer> missing = new ArrayList<>();
+        long receivedBytes = 0;
+
+        UploadSessionDTO.ByteRange current = null;
+        for (int i = 0; i < session.getTotalChunks(); i++) {
+            if (!session.getReceivedChunks().contains(i)) {
+                missing.add(i);
+                current = null;
+                continue;
+            }
+            long offset = i * session.getChunkSize();
+            long length = Math.min(session.getChunkSize(), session.getTotalSize() - offset);
+            receivedBytes += length;
+            if (current == null) {
+                current = new UploadSessionDTO.ByteRange(offset, length);
+                ranges.add(current);
+            } else {
+                current.setLength(current.getLength() + length);
+            }
+        }
+
+        return UploadSessionDTO.builder()
+                .sessionId(session.getId())
+                .fileName(session.getFileName())
+                .status(session.getStatus())
+                .totalSize(session.getTotalSize())
+                .chunkSize(session.getChunkSize())
+                .totalChunks(session.getTotalChunks())
+                .receivedBytes(receivedBytes)
+                .receivedRanges(ranges)
+                .missingChunks(missing)
+                .mediaId(session.getMediaId())
+                .expiresAt(session.getExpiresAt())
+                .build();
+    }
+}
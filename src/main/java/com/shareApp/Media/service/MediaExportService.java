@@ -0,0 +1,159 @@
+package com.shareApp.Media.service;
+
+import com.shareApp.Media.dto.MediaExportRequestDTO;
+import com.shareApp.Media.model.Media;
+import com.shareApp.Utils.exceptions.BadRequestException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams a selection of media as a ZIP archive straight to the client. Records are read from
+ * a cursor and files are copied through one fixed buffer, so memory stays flat and nothing is
+ * staged on disk; writes block on the socket, so a slow client simply slows the export down.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MediaExportService {
+
+    // Formats that gain nothing from deflate; stored as-is when their CRC is known up front
+    private static final Set<String> COMPRESSED_TYPES = Set.of(
+            "image/jpeg", "image/png", "image/gif", "image/webp", "image/heic", "image/heif", "image/avif",
+            "application/zip", "application/gzip", "application/x-7z-compressed", "application/pdf");
+
+    private final MongoTemplate mongoTemplate;
+    private final MediaService mediaService;
+
+    @Value("${media.export.max-ids:10000}")
+    private int maxIds;
+
+    @Value("${media.export.buffer-size:65536}")
+    private int bufferSize;
+
+    @Value("${media.export.deflate-level:1}")
+    private int deflateLevel;
+
+    /**
+     * Opens a cursor over the media selected by the request. The caller must close the stream.
+     */
+    public Stream<Media> selectMedia(String userId, MediaExportRequestDTO request) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (request.getMediaIds() != null && !request.getMediaIds().isEmpty()) {
+            if (request.getMediaIds().size() > maxIds) {
+                throw new BadRequestException("At most " + maxIds + " media ids can be exported at once");
+            }
+            criteria = criteria.and("_id").in(request.getMediaIds());
+        }
+        if (StringUtils.hasText(request.getMediaType())) {
+            criteria = criteria.and("mediaType").is(request.getMediaType());
+        }
+        if (request.getUploadedFrom() != null || request.getUploadedTo() != null) {
+            Criteria uploadedAt = Criteria.where("uploadedAt");
+            if (request.getUploadedFrom() != null) {
+                uploadedAt = uploadedAt.gte(request.getUploadedFrom());
+            }
+            if (request.getUploadedTo() != null) {
+                uploadedAt = uploadedAt.lt(request.getUploadedTo());
+            }
+            criteria = new Criteria().andOperator(criteria, uploadedAt);
+        }
+
+        // Writing one batch of large files can outlast the server's idle cursor timeout
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "uploadedAt"))
+                .cursorBatchSize(100)
+                .noCursorTimeout();
+        return mongoTemplate.stream(query, Media.class);
+    }
+
+    public void writeArchive(Stream<Media> selection, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        byte[] buffer = new byte[bufferSize];
+        Set<String> usedNames = new HashSet<>();
+        long entries = 0;
+        long bytes = 0;
+
+        Iterator<Media> iterator = selection.iterator();
+        while (iterator.hasNext()) {
+            Media media = iterator.next();
+            Resource resource = mediaService.download(media);
+            if (!resource.exists()) {
+                // Headers are already sent, so a missing file is left out rather than failing the archive
+                log.warn("Skipping media {} in export: stored object {} is missing", media.getId(), media.getS3Key());
+                continue;
+            }
+
+            ZipEntry entry = new ZipEntry(entryName(media, usedNames));
+            entry.setLastModifiedTime(FileTime.from(media.getCapturedAt() != null ? media.getCapturedAt() : media.getUploadedAt()));
+            boolean compressed = isCompressedFormat(media.getFileType());
+            if (compressed && media.getCrc32() != null) {
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(media.getSizeInBytes());
+                entry.setCompressedSize(media.getSizeInBytes());
+                entry.setCrc(media.getCrc32());
+            } else {
+                // Records from before CRCs were kept still need a data descriptor; skip the compression work
+                entry.setMethod(ZipEntry.DEFLATED);
+                zip.setLevel(compressed ? Deflater.NO_COMPRESSION : deflateLevel);
+            }
+
+            zip.putNextEntry(entry);
+            try (InputStream in = resource.getInputStream()) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    zip.write(buffer, 0, read);
+                }
+            }
+            zip.closeEntry();
+            entries++;
+            bytes += media.getSizeInBytes();
+        }
+
+        zip.finish();
+        zip.flush();
+        log.info("Exported {} media ({} bytes) as ZIP", entries, bytes);
+    }
+
+    private boolean isCompressedFormat(String fileType) {
+        return fileType != null && (COMPRESSED_TYPES.contains(fileType)
+                || fileType.startsWith("video/") || fileType.startsWith("audio/"));
+    }
+
+    // Entries are flat; repeated names get a " (n)" suffix before the extension
+    private String entryName(Media media, Set<String> usedNames) {
+        String name = StringUtils.getFilename(StringUtils.cleanPath(media.getFileName() != null ? media.getFileName() : ""));
+        if (!StringUtils.hasText(name) || name.equals("..")) {
+            name = media.getId();
+        }
+        name = name.replaceAll("\\p{Cntrl}", "_");
+
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        String candidate = name;
+        for (int n = 1; !usedNames.add(candidate); n++) {
+            candidate = base + " (" + n + ")" + extension;
+        }
+        return candidate;
+    }
+}
@@ -0,0 +1,18 @@
+package com.shareApp.Media.service;
+
+import lombok.Getter;
+
+/**
+ * A failed {@link MediaService#importFile}. Once the source was handed to storage it may have
+ * been moved or rewritten, so the caller must not import it again.
+ */
+@Getter
+public class MediaImportException extends RuntimeException {
+
+    private final boolean sourceHandedToStorage;
+
+    public MediaImportException(String message, Throwable cause, boolean sourceHandedToStorage) {
+        super(message, cause);
+        this.sourceHandedToStorage = sourceHandedToStorage;
+    }
+}
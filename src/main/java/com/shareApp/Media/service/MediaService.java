@@ -1,20 +1,56 @@
 package com.shareApp.Media.service;
 
+import com.shareApp.Media.dto.MediaPageDTO;
+import com.shareApp.Media.metadata.MediaMetadata;
+import com.shareApp.Media.metadata.MediaMetadataExtractor;
+import com.shareApp.Media.metadata.MetadataCaptureInputStream;
 import com.shareApp.Media.model.Media;
+import com.shareApp.Media.model.MediaLibraryVersion;
+import com.shareApp.Media.model.UserStorageCounter;
+import com.shareApp.Media.repository.MediaLibraryVersionRepository;
 import com.shareApp.Media.repository.MediaRepository;
+import com.shareApp.Media.storage.ContentCompressor;
 import com.shareApp.Media.storage.MediaStorage;
-import com.shareApp.Payment.services.PaymentInformationService;
+import com.shareApp.Media.storage.StoredObject;
+import com.shareApp.Payment.services.StorageLedgerService;
+import com.shareApp.Utils.exceptions.BadRequestException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 @Service
 @RequiredArgsConstructor
@@ -22,60 +58,357 @@ import java.util.UUID;
 public class MediaService {
 
     private final MediaRepository mediaRepository;
+    private final MediaLibraryVersionRepository mediaLibraryVersionRepository;
+    private final MongoTemplate mongoTemplate;
     private final MediaStorage mediaStorage;
-    private final PaymentInformationService paymentInformationService;
+    private final StorageLedgerService storageLedgerService;
+    private final ThumbnailService thumbnailService;
+    private final MediaMetadataExtractor metadataExtractor;
+    private final ContentCompressor contentCompressor;
+    private final StorageCounterService storageCounterService;
+    private final MediaStatsService mediaStatsService;
+
+    private static final Sort LISTING_ORDER = Sort.by(Sort.Direction.DESC, "uploadedAt", "_id");
+    private static final int MAX_PAGE_SIZE = 100;
+
+    @Value("${media.upload.batch.max-files:500}")
+    private int batchMaxFiles;
+
+    @Value("${media.upload.batch.parallelism:16}")
+    private int batchParallelism;
 
     @Transactional
     public Media upload(String userId, MultipartFile file) {
-        try {
-            String mediaId = UUID.randomUUID().toString();
-            String contentType = file.getContentType();
-            String mediaType = contentType != null && contentType.startsWith("video") ? "VIDEO" : "PHOTO";
-
-            String storageKey = mediaStorage.upload(userId, file);
-
-            Media media = Media.builder()
-                    .id(mediaId)
-                    .userId(userId)
-                    .fileName(file.getOriginalFilename())
-                    .fileType(contentType)
-                    .mediaType(mediaType)
-                    .sizeInBytes(file.getSize())
-                    .uploadedAt(Instant.now())
-                    .s3Key(storageKey)
-                    .build();
-
-            Media savedMedia = mediaRepository.save(media);
-
-            // Record storage change in payment information
-            paymentInformationService.recordStorageChange(
-                    userId,
-                    mediaId,
-                    file.getOriginalFilename(),
-                    file.getSize(),
-                    "UPLOAD"
-            );
-
-            log.info("Media uploaded successfully for user {}: {} ({} bytes)",
-                    userId, file.getOriginalFilename(), file.getSize());
-
-            return savedMedia;
+        try (InputStream content = file.getInputStream()) {
+            return upload(userId, file.getOriginalFilename(), file.getContentType(), content, file.getSize());
+        } catch (IOException e) {
+            log.error("Failed to read uploaded file for user {}: {}", userId, e.getMessage());
+            throw new RuntimeException("Failed to upload media", e);
+        }
+    }
 
+    @Transactional
+    public Media upload(String userId, String fileName, String contentType, InputStream content, long expectedSize) {
+        try {
+            return saveUploadedMedia(storeContent(userId, fileName, contentType, content, expectedSize));
         } catch (Exception e) {
             log.error("Failed to upload media for user {}: {}", userId, e.getMessage());
             throw new RuntimeException("Failed to upload media", e);
         }
     }
 
+    /**
+     * Registers a fully assembled local file (e.g. a finished chunked upload) as media. Fails with
+     * a {@link MediaImportException} that tells whether storage already took the file.
+     */
+    @Transactional
+    public Media importFile(String userId, String fileName, String contentType, Path source) {
+        boolean handedToStorage = false;
+        try {
+            // Read before storing, since storage may move the file
+            MediaMetadata metadata = metadataExtractor.extract(source);
+            MessageDigest digest = sha256();
+            CRC32 crc = new CRC32();
+            try (InputStream in = new DigestInputStream(new CheckedInputStream(Files.newInputStream(source), crc), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            handedToStorage = true;
+            StoredObject stored = mediaStorage.store(userId, fileName, contentType, source);
+            return saveUploadedMedia(buildMedia(userId, fileName, contentType, stored, metadata,
+                    HexFormat.of().formatHex(digest.digest()), crc.getValue()));
+        } catch (Exception e) {
+            log.error("Failed to import media for user {}: {}", userId, e.getMessage());
+            throw new MediaImportException("Failed to upload media", e, handedToStorage);
+        }
+    }
+
+    /**
+     * Uploads many files in one request. Files are written to storage concurrently on virtual
+     * threads, all records are inserted with a single bulk insert and the batch is billed as one
+     * storage change. Either every file is stored or none is.
+     */
+    public List<Media> uploadBatch(String userId, List<MultipartFile> files) {
+        if (files == null || files.isEmpty()) {
+            throw new BadRequestException("No files to upload");
+        }
+        if (files.size() > batchMaxFiles) {
+            throw new BadRequestException("A batch may contain at most " + batchMaxFiles + " files");
+        }
+
+        List<Media> stored = new ArrayList<>(files.size());
+        Throwable failure = null;
+        // Virtual threads block cheaply on disk and socket I/O; the semaphore bounds disk concurrency
+        Semaphore permits = new Semaphore(batchParallelism);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Media>> uploads = new ArrayList<>(files.size());
+            for (MultipartFile file : files) {
+                uploads.add(executor.submit(() -> {
+                    permits.acquire();
+                    try (InputStream content = file.getInputStream()) {
+                        return storeContent(userId, file.getOriginalFilename(), file.getContentType(), content, file.getSize());
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (Future<Media> upload : uploads) {
+                try {
+                    stored.add(upload.get());
+                } catch (ExecutionException e) {
+                    failure = failure != null ? failure : e.getCause();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure = e;
+                    break;
+                }
+            }
+        }
+
+        if (failure != null) {
+            stored.forEach(media -> discardStoredObject(media.getS3Key()));
+            log.error("Batch upload failed for user {}: {}", userId, failure.getMessage());
+            throw new RuntimeException("Failed to upload media batch", failure);
+        }
+
+        List<Media> saved;
+        try {
+            storageCounterService.beginChange(userId);
+            mediaStatsService.ensureStats(userId);
+            saved = mediaRepository.insert(stored);
+        } catch (RuntimeException e) {
+            storageCounterService.abandonChange(userId);
+            stored.forEach(media -> discardStoredObject(media.getS3Key()));
+            throw e;
+        }
+        long totalBytes = saved.stream().mapToLong(Media::getSizeInBytes).sum();
+        recordUploadInLedger(userId, saved, null, "Batch upload of " + saved.size() + " files");
+        mediaStatsService.recordUpload(saved);
+        bumpLibraryVersion(userId);
+
+        log.info("Batch uploaded for user {}: {} files ({} bytes)", userId, saved.size(), totalBytes);
+        return saved;
+    }
+
+    /**
+     * Streams content into storage and returns the unsaved record describing it.
+     */
+    private Media storeContent(String userId, String fileName, String contentType, InputStream content, long expectedSize) {
+        // Digest and headers are picked up as the bytes pass through to storage, so the file is read only once
+        MessageDigest digest = sha256();
+        CRC32 crc = new CRC32();
+        MetadataCaptureInputStream capture = metadataExtractor.capture(
+                new DigestInputStream(new CheckedInputStream(content, crc), digest));
+        StoredObject stored = mediaStorage.store(userId, fileName, contentType, capture, expectedSize);
+        return buildMedia(userId, fileName, contentType, stored, capture.getMetadata(),
+                HexFormat.of().formatHex(digest.digest()), crc.getValue());
+    }
+
+    private Media buildMedia(String userId, String fileName, String contentType,
+                             StoredObject stored, MediaMetadata metadata, String contentDigest, long crc32) {
+        if (metadata == null) {
+            metadata = new MediaMetadata();
+        }
+        // Trust the file content over the client-supplied content type when it could be recognized
+        String mediaType = metadata.getMediaType() != null ? metadata.getMediaType()
+                : contentType != null && contentType.startsWith("video") ? "VIDEO" : "PHOTO";
+
+        return Media.builder()
+                .id(UUID.randomUUID().toString())
+                .userId(userId)
+                .fileName(fileName)
+                .fileType(contentType)
+                .mediaType(mediaType)
+                .sizeInBytes(stored.getSizeInBytes())
+                .contentDigest(contentDigest)
+                .crc32(crc32)
+                .uploadedAt(Instant.now())
+                .s3Key(stored.getStorageKey())
+                .storageCodec(stored.getCodec())
+                .width(metadata.getWidth())
+                .height(metadata.getHeight())
+                .durationMillis(metadata.getDurationMillis())
+                .codec(metadata.getCodec())
+                .capturedAt(metadata.getCapturedAt())
+                .build();
+    }
+
+    private Media saveUploadedMedia(Media media) {
+        Media savedMedia;
+        try {
+            storageCounterService.beginChange(media.getUserId());
+            mediaStatsService.ensureStats(media.getUserId());
+            savedMedia = mediaRepository.save(media);
+        } catch (RuntimeException e) {
+            storageCounterService.abandonChange(media.getUserId());
+            // Nothing references the stored file yet, so remove it instead of leaving an orphan
+            discardStoredObject(media.getS3Key());
+            throw e;
+        }
+        recordUploadInLedger(media.getUserId(), List.of(savedMedia), savedMedia.getId(), media.getFileName());
+        mediaStatsService.recordUpload(List.of(savedMedia));
+        bumpLibraryVersion(media.getUserId());
+
+        log.info("Media uploaded successfully for user {}: {} ({} bytes)",
+                media.getUserId(), media.getFileName(), media.getSizeInBytes());
+
+        return savedMedia;
+    }
+
+    /**
+     * Counts inserted media and appends the ledger event billing is projected from. Media that
+     * cannot be billed must not stay: if the append fails the upload is undone and the failure
+     * rethrown.
+     */
+    private void recordUploadInLedger(String userId, List<Media> saved, String mediaId, String description) {
+        long totalBytes = saved.stream().mapToLong(Media::getSizeInBytes).sum();
+        UserStorageCounter counter = storageCounterService.add(userId, totalBytes, saved.size());
+        try {
+            storageLedgerService.append(counter, mediaId, description, totalBytes, "UPLOAD");
+        } catch (RuntimeException e) {
+            try {
+                storageCounterService.beginChange(userId);
+                mediaRepository.deleteAll(saved);
+                storageCounterService.add(userId, -totalBytes, -saved.size());
+                saved.forEach(media -> discardStoredObject(media.getS3Key()));
+            } catch (RuntimeException undo) {
+                log.error("Failed to undo unbilled upload for user {}: {}", userId, undo.getMessage());
+                e.addSuppressed(undo);
+            }
+            throw e;
+        }
+    }
+
+    private void discardStoredObject(String storageKey) {
+        try {
+            mediaStorage.delete(storageKey);
+        } catch (Exception e) {
+            log.warn("Failed to discard stored object {}: {}", storageKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Current version of the user's media set; a single point read, no media documents are touched.
+     */
+    public MediaLibraryVersion getLibraryVersion(String userId) {
+        return mediaLibraryVersionRepository.findById(userId)
+                .orElseGet(() -> MediaLibraryVersion.builder().id(userId).version(0).build());
+    }
+
+    /**
+     * Weak validator for the user's listings and stats. The user is part of it, so two accounts at
+     * the same version never share a tag in a shared cache.
+     */
+    public String libraryEntityTag(String userId, MediaLibraryVersion version) {
+        byte[] hash = sha256().digest((userId + ":" + version.getVersion()).getBytes(StandardCharsets.UTF_8));
+        return "W/\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+    }
+
+    /**
+     * Strong validator for the bytes of a media item, distinct per stored encoding.
+     */
+    public String entityTag(Media media, boolean encoded) {
+        // Records uploaded before digests were kept fall back to their id, which is just as unique
+        String content = media.getContentDigest() != null ? media.getContentDigest().substring(0, 32) : media.getId();
+        long uploaded = media.getUploadedAt() != null ? media.getUploadedAt().toEpochMilli() : 0;
+        return "\"" + content + "-" + Long.toHexString(uploaded)
+                + (encoded ? "-" + media.getStorageCodec() : "") + "\"";
+    }
+
+    // Called after every write a listing reflects: revalidation reads the version before the
+    // listing or stats, so a response can only carry the new version once they are current
+    private void bumpLibraryVersion(String userId) {
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(userId)),
+                new Update().inc("version", 1).set("updatedAt", Instant.now()),
+                MediaLibraryVersion.class);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     public Page<Media> listUserMedia(String userId, int page, int size) {
-        return mediaRepository.findByUserId(userId, PageRequest.of(page, size));
+        return mediaRepository.findByUserId(userId, PageRequest.of(page, size, LISTING_ORDER));
+    }
+
+    /**
+     * Keyset listing, newest first. Each page seeks straight to its position in the
+     * {userId, uploadedAt, _id} index, so deep pages cost the same as the first one.
+     */
+    public MediaPageDTO listUserMedia(String userId, String cursor, int limit) {
+        int pageSize = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        // One extra row tells whether another page follows, without a count query
+        PageRequest window = PageRequest.of(0, pageSize + 1);
+
+        List<Media> items;
+        if (cursor == null || cursor.isEmpty()) {
+            items = mediaRepository.findFirstPage(userId, window);
+        } else {
+            String[] position = decodeCursor(cursor);
+            items = mediaRepository.findPageAfter(userId,
+                    Instant.ofEpochMilli(Long.parseLong(position[0])), position[1], window);
+        }
+
+        String nextCursor = null;
+        if (items.size() > pageSize) {
+            items = items.subList(0, pageSize);
+            nextCursor = encodeCursor(items.get(pageSize - 1));
+        }
+        return new MediaPageDTO(items, nextCursor);
+    }
+
+    private String encodeCursor(Media last) {
+        String position = last.getUploadedAt().toEpochMilli() + ":" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = position.split(":", 2);
+            if (parts.length != 2 || parts[1].isEmpty()) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            Long.parseLong(parts[0]);
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
     }
 
     public Resource download(String userId, String mediaId) {
-        Media media = mediaRepository.findById(mediaId)
+        return download(getMedia(userId, mediaId));
+    }
+
+    /**
+     * The original bytes of the media, decompressed on the fly when it is stored compressed.
+     */
+    public Resource download(Media media) {
+        return contentCompressor.decode(mediaStorage.download(media.getS3Key()),
+                media.getStorageCodec(), media.getSizeInBytes());
+    }
+
+    /**
+     * The bytes exactly as stored, encoded with {@link Media#getStorageCodec()} when that is set.
+     */
+    public Resource downloadStored(Media media) {
+        return mediaStorage.download(media.getS3Key());
+    }
+
+    /**
+     * Whether the stored encoding of the media can be sent to a client with the given {@code Accept-Encoding}.
+     */
+    public boolean acceptsStoredEncoding(Media media, String acceptEncoding) {
+        return media.getStorageCodec() != null && contentCompressor.accepts(acceptEncoding, media.getStorageCodec());
+    }
+
+    public Media getMedia(String userId, String mediaId) {
+        return mediaRepository.findById(mediaId)
                 .filter(m -> m.getUserId().equals(userId))
                 .orElseThrow(() -> new RuntimeException("Media not found or access denied"));
-        return mediaStorage.download(media.getS3Key());
     }
 
     @Transactional
@@ -85,21 +418,29 @@ public class MediaService {
                 .orElseThrow(() -> new RuntimeException("Media not found or access denied"));
 
         try {
-            // Delete from storage first
-            // Note: You'll need to implement delete method in MediaStorage interface
-            // mediaStorage.delete(media.getS3Key());
-
-            // Delete from database
-            mediaRepository.delete(media);
-
-            // Record storage change in payment information
-            paymentInformationService.recordStorageChange(
-                    userId,
-                    mediaId,
-                    media.getFileName(),
-                    media.getSizeInBytes(),
-                    "DELETE"
-            );
+            // Delete from database first so a failed file delete never leaves a dangling record
+            storageCounterService.beginChange(userId);
+            mediaStatsService.ensureStats(userId);
+            try {
+                mediaRepository.delete(media);
+            } catch (RuntimeException e) {
+                storageCounterService.abandonChange(userId);
+                throw e;
+            }
+            UserStorageCounter counter = storageCounterService.add(userId, -media.getSizeInBytes(), -1);
+            try {
+                storageLedgerService.append(counter, mediaId, media.getFileName(), -media.getSizeInBytes(), "DELETE");
+            } catch (RuntimeException e) {
+                // The file is still there; restore the record so billing and the library agree again
+                storageCounterService.beginChange(userId);
+                mediaRepository.insert(media);
+                storageCounterService.add(userId, media.getSizeInBytes(), 1);
+                throw e;
+            }
+            mediaStatsService.recordDelete(media);
+            bumpLibraryVersion(userId);
+            mediaStorage.delete(media.getS3Key());
+            thumbnailService.evict(mediaId);
 
             log.info("Media deleted successfully for user {}: {} ({} bytes)",
                     userId, media.getFileName(), media.getSizeInBytes());
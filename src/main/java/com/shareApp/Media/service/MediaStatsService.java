@@ -0,0 +1,227 @@
+package com.shareApp.Media.service;
+
+import com.shareApp.Media.dto.MediaStatsDTO;
+import com.shareApp.Media.model.Media;
+import com.shareApp.Media.model.MediaStats;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Serves per-user media statistics from one pre-aggregated document. Each upload or delete
+ * applies a single update of dotted {@code $inc}s; a user's document is seeded once from an
+ * aggregation over their media the first time it is needed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MediaStatsService {
+
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy-MM").withZone(ZoneOffset.UTC);
+
+    // Lower bounds of the size histogram buckets, with their labels
+    private static final long[] SIZE_BOUNDS = {0, 100L << 10, 1L << 20, 10L << 20, 100L << 20, 1L << 30};
+    private static final String[] SIZE_LABELS = {"0-100KB", "100KB-1MB", "1MB-10MB", "10MB-100MB", "100MB-1GB", "1GB+"};
+
+    // The file type is the client's Content-Type header; only known types get their own bucket,
+    // so a client cannot grow the stats document with made-up ones
+    private static final Set<String> KNOWN_FILE_TYPES = Set.of(
+            "image/jpeg", "image/png", "image/gif", "image/webp", "image/heic", "image/heif", "image/avif",
+            "image/tiff", "image/bmp", "image/svg+xml",
+            "video/mp4", "video/quicktime", "video/webm", "video/x-matroska", "video/x-msvideo", "video/3gpp",
+            "video/mpeg", "audio/mpeg", "audio/mp4", "audio/wav", "audio/ogg",
+            "application/pdf", "application/zip", "application/octet-stream", "text/plain");
+    private static final String OTHER_FILE_TYPE = "other";
+
+    private final MongoTemplate mongoTemplate;
+
+    public MediaStatsDTO getStats(String userId) {
+        MediaStats stats = mongoTemplate.findById(userId, MediaStats.class);
+        if (stats == null) {
+            stats = seed(userId);
+        }
+
+        Map<String, MediaStats.Bucket> byMediaType = nonEmpty(stats.getByMediaType(), false);
+        return MediaStatsDTO.builder()
+                .totalCount(byMediaType.values().stream().mapToLong(MediaStats.Bucket::getCount).sum())
+                .totalBytes(byMediaType.values().stream().mapToLong(MediaStats.Bucket::getBytes).sum())
+                .byMediaType(byMediaType)
+                .byFileType(byFileType(stats.getByFileType()))
+                .bySizeBucket(nonEmpty(stats.getBySizeBucket(), false))
+                .byMonth(new TreeMap<>(nonEmpty(stats.getByMonth(), false)))
+                .build();
+    }
+
+    /**
+     * Seeds the user's stats if missing. Called before the media write, like
+     * {@link StorageCounterService#beginChange}, so the seed never also counts the change being recorded.
+     */
+    public void ensureStats(String userId) {
+        if (!mongoTemplate.exists(Query.query(Criteria.where("_id").is(userId)), MediaStats.class)) {
+            seed(userId);
+        }
+    }
+
+    public void recordUpload(Collection<Media> media) {
+        apply(media, 1);
+    }
+
+    public void recordDelete(Media media) {
+        apply(List.of(media), -1);
+    }
+
+    private void apply(Collection<Media> media, int sign) {
+        if (media.isEmpty()) {
+            return;
+        }
+        String userId = media.iterator().next().getUserId();
+
+        // Fold the whole batch into one update document
+        Map<String, Long> increments = new HashMap<>();
+        for (Media item : media) {
+            for (String bucket : bucketPaths(item)) {
+                increments.merge(bucket + ".count", (long) sign, Long::sum);
+                increments.merge(bucket + ".bytes", sign * item.getSizeInBytes(), Long::sum);
+            }
+        }
+        Update update = new Update().set("updatedAt", Instant.now());
+        increments.forEach(update::inc);
+
+        Query byUser = Query.query(Criteria.where("_id").is(userId));
+        if (mongoTemplate.updateFirst(byUser, update, MediaStats.class).getMatchedCount() > 0) {
+            return;
+        }
+        // No document yet: the seeding aggregation already includes this change
+        try {
+            insertSeed(userId);
+        } catch (DuplicateKeyException e) {
+            mongoTemplate.updateFirst(byUser, update, MediaStats.class);
+        }
+    }
+
+    private List<String> bucketPaths(Media media) {
+        return List.of(
+                "byMediaType." + escapeKey(media.getMediaType()),
+                "byFileType." + fileTypeBucket(media.getFileType()),
+                "bySizeBucket." + sizeBucket(media.getSizeInBytes()),
+                "byMonth." + (media.getUploadedAt() != null ? MONTH.format(media.getUploadedAt()) : "unknown"));
+    }
+
+    private MediaStats seed(String userId) {
+        try {
+            return insertSeed(userId);
+        } catch (DuplicateKeyException e) {
+            return mongoTemplate.findById(userId, MediaStats.class);
+        }
+    }
+
+    private MediaStats insertSeed(String userId) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("userId").is(userId)),
+                Aggregation.facet(
+                                Aggregation.group("mediaType").count().as("count").sum("sizeInBytes").as("bytes"))
+                        .as("byMediaType")
+                        .and(Aggregation.group("fileType").count().as("count").sum("sizeInBytes").as("bytes"))
+                        .as("byFileType")
+                        .and(Aggregation.bucket("sizeInBytes")
+                                .withBoundaries(Arrays.stream(SIZE_BOUNDS).boxed().toArray())
+                                .withDefaultBucket(SIZE_LABELS[SIZE_LABELS.length - 1])
+                                .andOutputCount().as("count")
+                                .andOutput("sizeInBytes").sum().as("bytes"))
+                        .as("bySizeBucket")
+                        .and(Aggregation.project("sizeInBytes")
+                                        .and(DateOperators.DateToString.dateOf("uploadedAt").toString("%Y-%m")).as("month"),
+                                Aggregation.group("month").count().as("count").sum("sizeInBytes").as("bytes"))
+                        .as("byMonth"));
+        Document result = mongoTemplate.aggregate(aggregation, Media.class, Document.class).getUniqueMappedResult();
+
+        MediaStats stats = MediaStats.builder().id(userId).updatedAt(Instant.now()).build();
+        if (result != null) {
+            collect(result, "byMediaType", stats.getByMediaType());
+            collect(result, "byFileType", stats.getByFileType());
+            collect(result, "bySizeBucket", stats.getBySizeBucket());
+            collect(result, "byMonth", stats.getByMonth());
+        }
+        log.info("Seeded media statistics for user {}", userId);
+        return mongoTemplate.insert(stats);
+    }
+
+    private void collect(Document result, String facet, Map<String, MediaStats.Bucket> target) {
+        for (Document group : result.getList(facet, Document.class, List.of())) {
+            Object id = group.get("_id");
+            String key = id instanceof Number bound ? sizeBucket(bound.longValue())
+                    : facet.equals("byFileType") ? fileTypeBucket(id != null ? id.toString() : null)
+                    : escapeKey(id != null ? id.toString() : null);
+            // Several stored file types may share the "other" bucket
+            target.merge(key, new MediaStats.Bucket(
+                    ((Number) group.get("count")).longValue(), ((Number) group.get("bytes")).longValue()), MediaStatsService::sum);
+        }
+    }
+
+    // Documents written before file types were bounded may still hold arbitrary keys
+    private static Map<String, MediaStats.Bucket> byFileType(Map<String, MediaStats.Bucket> buckets) {
+        Map<String, MediaStats.Bucket> result = new LinkedHashMap<>();
+        nonEmpty(buckets, true).forEach((key, bucket) -> result.merge(fileTypeBucket(key), bucket, MediaStatsService::sum));
+        return result;
+    }
+
+    static String fileTypeBucket(String fileType) {
+        if (fileType == null) {
+            return OTHER_FILE_TYPE;
+        }
+        int parameters = fileType.indexOf(';');
+        String type = (parameters >= 0 ? fileType.substring(0, parameters) : fileType).trim().toLowerCase(Locale.ROOT);
+        return KNOWN_FILE_TYPES.contains(type) ? type : OTHER_FILE_TYPE;
+    }
+
+    private static MediaStats.Bucket sum(MediaStats.Bucket a, MediaStats.Bucket b) {
+        return new MediaStats.Bucket(a.getCount() + b.getCount(), a.getBytes() + b.getBytes());
+    }
+
+    private static String sizeBucket(long sizeInBytes) {
+        int index = 0;
+        while (index + 1 < SIZE_BOUNDS.length && sizeInBytes >= SIZE_BOUNDS[index + 1]) {
+            index++;
+        }
+        return SIZE_LABELS[index];
+    }
+
+    private static Map<String, MediaStats.Bucket> nonEmpty(Map<String, MediaStats.Bucket> buckets, boolean unescape) {
+        Map<String, MediaStats.Bucket> result = new LinkedHashMap<>();
+        if (buckets != null) {
+            // Deletes leave zeroed entries behind; they are not worth reporting
+            buckets.forEach((key, bucket) -> {
+                if (bucket.getCount() > 0) {
+                    result.put(unescape ? unescapeKey(key) : key, bucket);
+                }
+            });
+        }
+        return result;
+    }
+
+    // Dots split update paths and a leading $ marks an operator, so both are swapped for look-alikes
+    private static String escapeKey(String key) {
+        if (key == null || key.isEmpty()) {
+            return "unknown";
+        }
+        String escaped = key.replace(".", "．");
+        return escaped.startsWith("$") ? "＄" + escaped.substring(1) : escaped;
+    }
+
+    private static String unescapeKey(String key) {
+        return key.replace("．", ".").replace("＄", "$");
+    }
+}
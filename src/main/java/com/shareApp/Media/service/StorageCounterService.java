@@ -0,0 +1,217 @@
+package com.shareApp.Media.service;
+
+import com.shareApp.Media.model.Media;
+import com.shareApp.Media.model.UserStorageCounter;
+import com.shareApp.Payment.services.StorageLedgerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a per-user storage total in a single document so reading it is a point lookup instead
+ * of a scan over the user's media. Uploads and deletes apply atomic increments; users without a
+ * counter yet are seeded from one aggregation, and a periodic reconciliation repairs any drift.
+ * Writers call {@link #beginChange} before touching the media collection, so a seed only ever
+ * counts media written before the counter existed and every later change is counted by its increment.
+ * The same update hands out the per-user sequence numbers of the storage usage ledger.
+ * <p>
+ * {@link #beginChange} also registers the change as pending until {@link #add} applies it.
+ * Reconciliation leaves counters with pending changes alone, since the media collection may
+ * already hold a change the counter has not been given yet.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StorageCounterService {
+
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+
+    private final MongoTemplate mongoTemplate;
+    private final StorageLedgerService storageLedgerService;
+
+    @Value("${media.usage.reconcile-enabled:true}")
+    private boolean reconcileEnabled;
+
+    @Value("${media.usage.quiet-period-seconds:60}")
+    private long quietPeriodSeconds;
+
+    // A change pending this long belongs to a writer that died before applying it
+    @Value("${media.usage.pending-change-timeout-minutes:60}")
+    private long pendingChangeTimeoutMinutes;
+
+    public long getTotalBytes(String userId) {
+        return getCounter(userId).getTotalBytes();
+    }
+
+    public UserStorageCounter getCounter(String userId) {
+        UserStorageCounter counter = mongoTemplate.findById(userId, UserStorageCounter.class);
+        return counter != null ? counter : seed(userId, 0, 0, 0);
+    }
+
+    /**
+     * Makes sure the user has a counter and registers a pending change. Must run before a media
+     * write whose change is then passed to {@link #add}, or given up with {@link #abandonChange}
+     * if the write fails, so neither the seed nor reconciliation can also count that change.
+     */
+    public void beginChange(String userId) {
+        Query byUser = Query.query(Criteria.where("_id").is(userId));
+        Update register = new Update().inc("pendingChanges", 1).set("changeStartedAt", Instant.now());
+        if (mongoTemplate.updateFirst(byUser, register, UserStorageCounter.class).getMatchedCount() == 0) {
+            seed(userId, 0, 0, 0);
+            mongoTemplate.updateFirst(byUser, register, UserStorageCounter.class);
+        }
+    }
+
+    /**
+     * Withdraws a change registered by {@link #beginChange} whose media write failed. Best
+     * effort: one left behind only holds off reconciliation until it times out.
+     */
+    public void abandonChange(String userId) {
+        try {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(userId).and("pendingChanges").gt(0)),
+                    new Update().inc("pendingChanges", -1), UserStorageCounter.class);
+        } catch (RuntimeException e) {
+            log.warn("Failed to withdraw pending storage change of user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Applies a change registered by {@link #beginChange} that has since been written to the
+     * media collection, and returns the counter as it stands after it, including the usage event
+     * sequence assigned to the change.
+     */
+    public UserStorageCounter add(String userId, long deltaBytes, long deltaCount) {
+        Update update = new Update()
+                .inc("totalBytes", deltaBytes)
+                .inc("mediaCount", deltaCount)
+                .inc("pendingChanges", -1)
+                .inc("version", 1)
+                .inc("eventSequence", 1)
+                .set("updatedAt", Instant.now());
+        Query byUser = Query.query(Criteria.where("_id").is(userId));
+        UserStorageCounter updated = mongoTemplate.findAndModify(byUser, update, RETURN_NEW, UserStorageCounter.class);
+        if (updated != null) {
+            return updated;
+        }
+        // Caller skipped beginChange: seed with the totals as they were before this change and the
+        // change pending, then apply it like any other, whether this seed or a concurrent one created the counter
+        seed(userId, deltaBytes, deltaCount, 1);
+        return mongoTemplate.findAndModify(byUser, update, RETURN_NEW, UserStorageCounter.class);
+    }
+
+    @Scheduled(cron = "${media.usage.reconcile-cron:0 30 * * * *}")
+    public void reconcile() {
+        if (!reconcileEnabled) {
+            return;
+        }
+        Instant quietSince = Instant.now().minus(Duration.ofSeconds(quietPeriodSeconds));
+        Instant pendingTimeout = Instant.now().minus(Duration.ofMinutes(pendingChangeTimeoutMinutes));
+        long checked = 0;
+        long corrected = 0;
+        try (Stream<UserStorageCounter> counters = mongoTemplate.stream(new Query(), UserStorageCounter.class)) {
+            Iterator<UserStorageCounter> iterator = counters.iterator();
+            while (iterator.hasNext()) {
+                UserStorageCounter counter = iterator.next();
+                // Leave users with changes in flight alone; they are checked on the next run
+                if (counter.getUpdatedAt() != null && counter.getUpdatedAt().isAfter(quietSince)) {
+                    continue;
+                }
+                if (hasPendingChange(counter, pendingTimeout)) {
+                    continue;
+                }
+                checked++;
+                if (reconcile(counter, pendingTimeout)) {
+                    corrected++;
+                }
+            }
+        }
+        log.info("Storage counter reconciliation finished: {} users checked, {} corrected", checked, corrected);
+    }
+
+    private static boolean hasPendingChange(UserStorageCounter counter, Instant pendingTimeout) {
+        return counter.getPendingChanges() > 0
+                && counter.getChangeStartedAt() != null && counter.getChangeStartedAt().isAfter(pendingTimeout);
+    }
+
+    private boolean reconcile(UserStorageCounter counter, Instant pendingTimeout) {
+        Totals actual = aggregate(counter.getId());
+        // The version catches changes applied meanwhile; the pending fence catches changes begun
+        // meanwhile, which may already be in the media collection without having been applied
+        Query unchanged = Query.query(Criteria.where("_id").is(counter.getId()).and("version").is(counter.getVersion())
+                .orOperator(
+                        Criteria.where("pendingChanges").not().gt(0),
+                        Criteria.where("changeStartedAt").lt(pendingTimeout)));
+        if (actual.bytes() == counter.getTotalBytes() && actual.count() == counter.getMediaCount()) {
+            mongoTemplate.updateFirst(unchanged, new Update().set("reconciledAt", Instant.now()), UserStorageCounter.class);
+            return false;
+        }
+
+        // Compare-and-set: an upload or delete that began or landed meanwhile wins, and the next run looks again
+        UserStorageCounter updated = mongoTemplate.findAndModify(unchanged, new Update()
+                        .set("totalBytes", actual.bytes())
+                        .set("mediaCount", actual.count())
+                        .set("pendingChanges", 0)
+                        .inc("version", 1)
+                        .inc("eventSequence", 1)
+                        .set("reconciledAt", Instant.now()),
+                RETURN_NEW, UserStorageCounter.class);
+        if (updated == null) {
+            return false;
+        }
+        log.warn("Corrected storage counter of user {}: {} -> {} bytes, {} -> {} media", counter.getId(),
+                counter.getTotalBytes(), actual.bytes(), counter.getMediaCount(), actual.count());
+        // Billing follows the corrected total from here on
+        storageLedgerService.append(updated, null, null, actual.bytes() - counter.getTotalBytes(), "ADJUSTMENT");
+        return true;
+    }
+
+    // Seeds from the media collection less a change it already holds but that is applied separately
+    private UserStorageCounter seed(String userId, long pendingBytes, long pendingCount, long pendingChanges) {
+        Totals totals = aggregate(userId);
+        Instant now = Instant.now();
+        UserStorageCounter counter = UserStorageCounter.builder()
+                .id(userId)
+                .totalBytes(totals.bytes() - pendingBytes)
+                .mediaCount(totals.count() - pendingCount)
+                .pendingChanges(pendingChanges)
+                .changeStartedAt(pendingChanges > 0 ? now : null)
+                .version(0)
+                .updatedAt(now)
+                .reconciledAt(now)
+                .build();
+        try {
+            return mongoTemplate.insert(counter);
+        } catch (DuplicateKeyException e) {
+            return mongoTemplate.findById(userId, UserStorageCounter.class);
+        }
+    }
+
+    private Totals aggregate(String userId) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("userId").is(userId)),
+                Aggregation.group().sum("sizeInBytes").as("totalBytes").count().as("mediaCount"));
+        Document result = mongoTemplate.aggregate(aggregation, Media.class, Document.class).getUniqueMappedResult();
+        if (result == null) {
+            return new Totals(0, 0);
+        }
+        return new Totals(((Number) result.get("totalBytes")).longValue(), ((Number) result.get("mediaCount")).longValue());
+    }
+
+    private record Totals(long bytes, long count) {
+    }
+}
@@ -0,0 +1,204 @@
+package com.shareApp.Media.service;
+
+import com.shareApp.Media.model.Media;
+import com.shareApp.Media.repository.MediaRepository;
+import com.shareApp.Media.storage.MediaStorage;
+import com.shareApp.Media.storage.StorageEntry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Reconciles the storage tree against {@link MediaRepository} and removes files that no media
+ * references (failed uploads, interrupted deletes). Partitions are scanned in parallel, keys
+ * are checked in batches, and only files older than the grace period are considered, so
+ * uploads in flight are never touched.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StorageGarbageCollector {
+
+    private final MediaStorage mediaStorage;
+    private final MediaRepository mediaRepository;
+
+    @Value("${media.gc.enabled:true}")
+    private boolean enabled;
+
+    @Value("${media.gc.grace-period-hours:24}")
+    private long gracePeriodHours;
+
+    @Value("${media.gc.parallelism:4}")
+    private int parallelism;
+
+    @Value("${media.gc.batch-size:500}")
+    private int batchSize;
+
+    @Value("${media.gc.max-deletes-per-second:50}")
+    private int maxDeletesPerSecond;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Object throttleLock = new Object();
+    private long nextDeleteAt;
+    private volatile CollectionReport lastReport;
+
+    @Scheduled(cron = "${media.gc.cron:0 0 3 * * *}")
+    public void scheduledCollect() {
+        if (enabled) {
+            collect();
+        }
+    }
+
+    public CollectionReport collect() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Storage garbage collection already running, skipping");
+            return lastReport;
+        }
+
+        Instant started = Instant.now();
+        Instant cutoff = started.minus(Duration.ofHours(gracePeriodHours));
+        LongAdder scanned = new LongAdder();
+        LongAdder removed = new LongAdder();
+        LongAdder reclaimedBytes = new LongAdder();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "StorageGC-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> scans = new ArrayList<>();
+            for (String partition : mediaStorage.listPartitions()) {
+                scans.add(workers.submit(() -> scanPartition(partition, cutoff, scanned, removed, reclaimedBytes)));
+            }
+            for (Future<?> scan : scans) {
+                try {
+                    scan.get();
+                } catch (ExecutionException e) {
+                    log.error("Storage garbage collection partition failed: {}", e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdownNow();
+            running.set(false);
+        }
+
+        CollectionReport report = new CollectionReport(started, Duration.between(started, Instant.now()).toMillis(),
+                scanned.sum(), removed.sum(), reclaimedBytes.sum());
+        lastReport = report;
+        log.info("Storage garbage collection finished: scanned {} files, removed {} orphans, reclaimed {} bytes in {} ms",
+                report.getScannedFiles(), report.getRemovedFiles(), report.getReclaimedBytes(), report.getDurationMillis());
+        return report;
+    }
+
+    public CollectionReport getLastReport() {
+        return lastReport;
+    }
+
+    private void scanPartition(String partition, Instant cutoff,
+                               LongAdder scanned, LongAdder removed, LongAdder reclaimedBytes) {
+        List<StorageEntry> batch = new ArrayList<>(batchSize);
+        try (Stream<StorageEntry> entries = mediaStorage.listEntries(partition)) {
+            Iterator<StorageEntry> iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                StorageEntry entry = iterator.next();
+                scanned.increment();
+                if (!entry.getLastModified().isBefore(cutoff)) {
+                    continue;
+                }
+                batch.add(entry);
+                if (batch.size() == batchSize) {
+                    reconcile(batch, cutoff, removed, reclaimedBytes);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            reconcile(batch, cutoff, removed, reclaimedBytes);
+        }
+    }
+
+    private void reconcile(List<StorageEntry> batch, Instant cutoff, LongAdder removed, LongAdder reclaimedBytes) {
+        // A record may still hold the flat <userId>/<name> key of a file the layout migration already moved
+        Map<String, String> candidates = new HashMap<>();
+        for (StorageEntry entry : batch) {
+            String key = entry.getStorageKey();
+            candidates.put(key, key);
+            int first = key.indexOf('/');
+            int last = key.lastIndexOf('/');
+            if (first != last) {
+                candidates.put(key.substring(0, first) + key.substring(last), key);
+            }
+        }
+
+        Set<String> referenced = new HashSet<>();
+        for (Media media : mediaRepository.findStorageKeysIn(candidates.keySet())) {
+            referenced.add(candidates.get(media.getS3Key()));
+        }
+
+        for (StorageEntry entry : batch) {
+            if (referenced.contains(entry.getStorageKey())) {
+                continue;
+            }
+            throttle();
+            try {
+                if (!mediaStorage.purge(entry.getStorageKey(), cutoff)) {
+                    log.debug("Object {} was reused since the scan, kept", entry.getStorageKey());
+                    continue;
+                }
+                removed.increment();
+                reclaimedBytes.add(entry.getSizeInBytes());
+                log.debug("Removed orphaned object {} ({} bytes)", entry.getStorageKey(), entry.getSizeInBytes());
+            } catch (Exception e) {
+                log.warn("Failed to remove orphaned object {}: {}", entry.getStorageKey(), e.getMessage());
+            }
+        }
+    }
+
+    // Spaces deletes evenly across all workers so a large backlog does not saturate the disk
+    private void throttle() {
+        if (maxDeletesPerSecond <= 0) {
+            return;
+        }
+        long waitUntil;
+        synchronized (throttleLock) {
+            long now = System.nanoTime();
+            waitUntil = Math.max(now, nextDeleteAt);
+            nextDeleteAt = waitUntil + 1_000_000_000L / maxDeletesPerSecond;
+        }
+        long delay = waitUntil - System.nanoTime();
+        if (delay > 0) {
+            LockSupport.parkNanos(delay);
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class CollectionReport {
+        private Instant startedAt;
+        private long durationMillis;
+        private long scannedFiles;
+        private long removedFiles;
+        private long reclaimedBytes;
+    }
+}
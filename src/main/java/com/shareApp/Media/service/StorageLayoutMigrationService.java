@@ -0,0 +1,90 @@
+package com.shareApp.Media.service;
+
+import com.shareApp.Media.model.Media;
+import com.shareApp.Media.storage.LocalMediaStorage;
+import com.shareApp.Media.storage.StorageLayout;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Moves files stored under an older directory layout into the current fan-out layout and
+ * rewrites {@code Media.s3Key} in small batches, while the service keeps serving traffic.
+ */
+@Service
+@ConditionalOnProperty(name = "media.storage.migration.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class StorageLayoutMigrationService {
+
+    private final MongoTemplate mongoTemplate;
+    private final StorageLayout storageLayout;
+    private final ObjectProvider<LocalMediaStorage> localMediaStorage;
+
+    @Value("${media.storage.migration.batch-size:500}")
+    private int batchSize;
+
+    private String lastMigratedId;
+    private boolean complete;
+    private long migratedCount;
+
+    @Scheduled(fixedDelayString = "${media.storage.migration.interval-ms:1000}")
+    public void migrateBatch() {
+        LocalMediaStorage storage = localMediaStorage.getIfAvailable();
+        if (complete || storage == null) {
+            return;
+        }
+
+        // Keyset over _id so records that fail to move are not retried forever in one pass
+        Criteria criteria = new Criteria().andOperator(
+                Criteria.where("s3Key").not().regex(storageLayout.canonicalKeyPattern()),
+                Criteria.where("s3Key").not().regex("^blobs/"));
+        if (lastMigratedId != null) {
+            criteria = new Criteria().andOperator(criteria, Criteria.where("_id").gt(lastMigratedId));
+        }
+        Query query = Query.query(criteria).with(Sort.by(Sort.Direction.ASC, "_id")).limit(batchSize);
+        query.fields().include("_id", "s3Key");
+
+        List<Media> batch = mongoTemplate.find(query, Media.class);
+        if (batch.isEmpty()) {
+            complete = true;
+            log.info("Storage layout migration finished, {} files moved", migratedCount);
+            return;
+        }
+
+        for (Media media : batch) {
+            lastMigratedId = media.getId();
+            try {
+                String newKey = storage.relocate(media.getS3Key());
+                if (newKey.equals(media.getS3Key())) {
+                    continue;
+                }
+
+                long updated = mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("_id").is(media.getId()).and("s3Key").is(media.getS3Key())),
+                        new Update().set("s3Key", newKey),
+                        Media.class).getModifiedCount();
+                if (updated == 0 && !mongoTemplate.exists(Query.query(Criteria.where("_id").is(media.getId())), Media.class)) {
+                    // Deleted while we were moving it; the delete could not see the new location
+                    storage.delete(newKey);
+                    continue;
+                }
+                migratedCount++;
+            } catch (Exception e) {
+                log.warn("Failed to migrate media {} ({}): {}", media.getId(), media.getS3Key(), e.getMessage());
+            }
+        }
+        log.info("Storage layout migration progress: {} files moved so far", migratedCount);
+    }
+}
@@ -0,0 +1,302 @@
+package com.shareApp.Media.service;
+
+import com.shareApp.Media.model.Media;
+import com.shareApp.Media.storage.ContentCompressor;
+import com.shareApp.Media.storage.MediaStorage;
+import com.shareApp.Utils.exceptions.BadRequestException;
+import com.shareApp.Utils.exceptions.ServiceUnavailableException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Generates downscaled variants of photos on a bounded worker pool and caches them on disk
+ * under {@code <media.local.path>/.variants}. The cache is bounded by total size with least
+ * recently used eviction, and concurrent requests for the same variant share one generation.
+ */
+@Service
+@Slf4j
+public class ThumbnailService {
+
+    private static final long MAX_DECODED_PIXELS = 50_000_000L;
+
+    private final MediaStorage mediaStorage;
+    private final ContentCompressor contentCompressor;
+    private final Executor thumbnailTaskExecutor;
+
+    // Variants currently being generated, so identical requests wait on the same result
+    private final ConcurrentMap<Path, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    // Access ordered index of cached variants and their sizes, guarded by itself
+    private final LinkedHashMap<Path, Long> cacheIndex = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes;
+
+    @Value("${media.local.path}")
+    private String rootPath;
+
+    @Value("${media.thumbnail.widths:64,128,256,512,1024}")
+    private int[] allowedWidths;
+
+    @Value("${media.thumbnail.cache-max-bytes:1073741824}")
+    private long cacheMaxBytes;
+
+    @Value("${media.thumbnail.timeout-seconds:30}")
+    private long timeoutSeconds;
+
+    public ThumbnailService(MediaStorage mediaStorage,
+                            ContentCompressor contentCompressor,
+                            @Qualifier("thumbnailTaskExecutor") Executor thumbnailTaskExecutor) {
+        this.mediaStorage = mediaStorage;
+        this.contentCompressor = contentCompressor;
+        this.thumbnailTaskExecutor = thumbnailTaskExecutor;
+    }
+
+    @PostConstruct
+    public void loadCacheIndex() throws IOException {
+        Path variantsRoot = variantsRoot();
+        Files.createDirectories(variantsRoot);
+        Arrays.sort(allowedWidths);
+
+        // Rebuild the LRU order from modification times so eviction survives restarts
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(variantsRoot)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(path -> !path.getFileName().toString().endsWith(".tmp"))
+                    .sorted(Comparator.comparing(this::lastModified))
+                    .toList();
+        }
+        synchronized (cacheIndex) {
+            for (Path file : files) {
+                long size = Files.size(file);
+                cacheIndex.put(file, size);
+                cachedBytes += size;
+            }
+        }
+        log.info("Thumbnail cache loaded: {} variants, {} bytes", files.size(), cachedBytes);
+    }
+
+    public Path getThumbnail(Media media, int requestedWidth) {
+        if (!"PHOTO".equals(media.getMediaType())) {
+            throw new BadRequestException("Thumbnails are only available for photos");
+        }
+
+        int width = snapWidth(requestedWidth);
+        String format = hasAlphaFormat(media.getFileType()) ? "png" : "jpg";
+        Path variant = variantPath(media.getId(), width, format);
+
+        if (Files.exists(variant)) {
+            touch(variant);
+            return variant;
+        }
+
+        CompletableFuture<Path> generation = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(variant, generation);
+        if (existing != null) {
+            generation = existing;
+        } else {
+            submitGeneration(media, width, format, variant, generation);
+        }
+
+        try {
+            return generation.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RejectedExecutionException) {
+                throw new ServiceUnavailableException("Thumbnail workers are busy, try again shortly");
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("Failed to generate thumbnail", cause);
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException("Thumbnail generation timed out, try again shortly");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while generating thumbnail", e);
+        }
+    }
+
+    public String contentType(Path variant) {
+        return variant.getFileName().toString().endsWith(".png") ? "image/png" : "image/jpeg";
+    }
+
+    public void evict(String mediaId) {
+        Path mediaDir = variantsRoot().resolve(mediaId.substring(0, 2)).resolve(mediaId);
+        synchronized (cacheIndex) {
+            cacheIndex.entrySet().removeIf(entry -> {
+                if (entry.getKey().startsWith(mediaDir)) {
+                    cachedBytes -= entry.getValue();
+                    return true;
+                }
+                return false;
+            });
+        }
+        try {
+            FileSystemUtils.deleteRecursively(mediaDir);
+        } catch (IOException e) {
+            log.warn("Failed to remove thumbnails of media {}: {}", mediaId, e.getMessage());
+        }
+    }
+
+    private void submitGeneration(Media media, int width, String format, Path variant, CompletableFuture<Path> generation) {
+        try {
+            thumbnailTaskExecutor.execute(() -> {
+                try {
+                    generation.complete(generate(media, width, format, variant));
+                } catch (Throwable e) {
+                    generation.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(variant, generation);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(variant, generation);
+            generation.completeExceptionally(e);
+        }
+    }
+
+    private Path generate(Media media, int width, String format, Path variant) {
+        try (InputStream in = contentCompressor.decode(mediaStorage.download(media.getS3Key()),
+                media.getStorageCodec(), media.getSizeInBytes()).getInputStream();
+             ImageInputStream imageInput = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+            if (!readers.hasNext()) {
+                throw new BadRequestException("Unsupported image format: " + media.getFileType());
+            }
+
+            ImageReader reader = readers.next();
+            BufferedImage source;
+            try {
+                reader.setInput(imageInput, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+
+                // Let the decoder skip pixels up front; keep 2x the target so the final scale stays smooth
+                int subsampling = Math.max(1, sourceWidth / (width * 2));
+                if ((long) (sourceWidth / subsampling) * (sourceHeight / subsampling) > MAX_DECODED_PIXELS) {
+                    throw new BadRequestException("Image is too large to generate a thumbnail");
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                source = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+
+            BufferedImage scaled = scale(source, width, "png".equals(format));
+            Files.createDirectories(variant.getParent());
+            Path temp = variant.resolveSibling(variant.getFileName() + "." + UUID.randomUUID() + ".tmp");
+            if (!ImageIO.write(scaled, format, temp.toFile())) {
+                throw new IllegalStateException("No image writer for " + format);
+            }
+            Files.move(temp, variant, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            register(variant, Files.size(variant));
+            log.debug("Generated {}px thumbnail for media {}", width, media.getId());
+            return variant;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to generate thumbnail for media " + media.getId(), e);
+        }
+    }
+
+    private BufferedImage scale(BufferedImage source, int width, boolean keepAlpha) {
+        int targetWidth = Math.min(width, source.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+
+        BufferedImage target = new BufferedImage(targetWidth, targetHeight,
+                keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private void register(Path variant, long size) {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (cacheIndex) {
+            Long previous = cacheIndex.put(variant, size);
+            cachedBytes += size - (previous != null ? previous : 0);
+
+            Iterator<Map.Entry<Path, Long>> eldest = cacheIndex.entrySet().iterator();
+            while (cachedBytes > cacheMaxBytes && eldest.hasNext()) {
+                Map.Entry<Path, Long> entry = eldest.next();
+                if (entry.getKey().equals(variant)) {
+                    continue;
+                }
+                cachedBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+                eldest.remove();
+            }
+        }
+        for (Path path : evicted) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Failed to evict thumbnail {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    private void touch(Path variant) {
+        synchronized (cacheIndex) {
+            cacheIndex.get(variant);
+        }
+    }
+
+    private int snapWidth(int requestedWidth) {
+        if (requestedWidth <= 0) {
+            throw new BadRequestException("Width must be positive");
+        }
+        // A fixed set of sizes keeps the number of cached variants per photo bounded
+        for (int width : allowedWidths) {
+            if (width >= requestedWidth) {
+                return width;
+            }
+        }
+        return allowedWidths[allowedWidths.length - 1];
+    }
+
+    private boolean hasAlphaFormat(String fileType) {
+        return fileType != null && (fileType.equals("image/png") || fileType.equals("image/gif"));
+    }
+
+    private Path variantPath(String mediaId, int width, String format) {
+        return variantsRoot().resolve(mediaId.substring(0, 2)).resolve(mediaId).resolve("w" + width + "." + format);
+    }
+
+    private Path variantsRoot() {
+        return Paths.get(rootPath, ".variants");
+    }
+
+    private FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.shareApp.Media.service;
+
+import com.shareApp.Media.storage.StorageWriteListener;
+import com.shareApp.Utils.exceptions.InsufficientStorageException;
+import com.shareApp.Utils.exceptions.TooManyRequestsException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides whether an upload may start. Uploads are limited globally and per user; callers over
+ * a limit wait in a bounded queue for up to the queue timeout and are then turned away.
+ * <p>
+ * The global limit follows AIMD on storage write latency per MiB, as reported by the storage
+ * writer. Only the time spent writing and syncing counts, so slow clients do not shrink the limit.
+ * Each write sample adds {@code 1/limit} while the limit is in use. When the short-term latency rises above
+ * {@code latency-tolerance} times the long-term baseline, the limit shrinks by the backoff
+ * factor, at most once per backoff interval.
+ * <p>
+ * When storage is on local disk, an upload is also refused if its declared size would leave
+ * less than {@code min-free-bytes} free, counting the bytes already promised to uploads in flight.
+ */
+@Service
+@Slf4j
+public class UploadAdmissionService implements StorageWriteListener {
+
+    private static final double MIB = 1024 * 1024;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Map<String, Integer> inFlightByUser = new HashMap<>();
+    private int inFlight;
+    private int waiting;
+    private long reservedBytes;
+    private double limit;
+
+    // Latency per MiB in nanoseconds, guarded by lock
+    private double shortLatency;
+    private double baselineLatency;
+    private long lastBackoffAt;
+
+    private volatile long usableSpace;
+    private volatile long usableSpaceCheckedAt;
+
+    @Value("${media.local.path}")
+    private String rootPath;
+
+    @Value("${media.storage.backend:local}")
+    private String storageBackend;
+
+    @Value("${media.upload.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${media.upload.admission.initial-limit:32}")
+    private int initialLimit;
+
+    @Value("${media.upload.admission.min-limit:4}")
+    private int minLimit;
+
+    @Value("${media.upload.admission.max-limit:256}")
+    private int maxLimit;
+
+    @Value("${media.upload.admission.per-user-limit:4}")
+    private int perUserLimit;
+
+    @Value("${media.upload.admission.max-queue:64}")
+    private int maxQueue;
+
+    @Value("${media.upload.admission.queue-timeout-ms:2000}")
+    private long queueTimeoutMs;
+
+    @Value("${media.upload.admission.retry-after-seconds:5}")
+    private long retryAfterSeconds;
+
+    @Value("${media.upload.admission.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    @Value("${media.upload.admission.backoff-factor:0.75}")
+    private double backoffFactor;
+
+    @Value("${media.upload.admission.backoff-interval-ms:1000}")
+    private long backoffIntervalMs;
+
+    @Value("${media.upload.admission.min-sample-bytes:1048576}")
+    private long minSampleBytes;
+
+    @Value("${media.upload.admission.min-free-bytes:1073741824}")
+    private long minFreeBytes;
+
+    @PostConstruct
+    public void init() {
+        if (minLimit < 1 || maxLimit < minLimit || perUserLimit < 1) {
+            throw new IllegalStateException("media.upload.admission limits must satisfy 1 <= min-limit <= max-limit");
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Admits an upload or throws. The returned permit must be released when the upload finishes.
+     *
+     * @param userId        the uploading user, or null when unknown (global limit only)
+     * @param declaredBytes the request's content length, or -1 when not declared
+     */
+    public Permit acquire(String userId, long declaredBytes) {
+        if (!enabled) {
+            return new Permit(null, 0);
+        }
+        long reserve = Math.max(0, declaredBytes);
+        checkFreeSpace(reserve);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+        lock.lock();
+        try {
+            if (!hasCapacity(userId)) {
+                if (waiting >= maxQueue) {
+                    throw new TooManyRequestsException("Too many uploads in progress, try again shortly", retryAfterSeconds);
+                }
+                waiting++;
+                try {
+                    while (!hasCapacity(userId)) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            throw new TooManyRequestsException(
+                                    userAtLimit(userId) ? "Too many concurrent uploads for this account" : "Too many uploads in progress, try again shortly",
+                                    retryAfterSeconds);
+                        }
+                        released.awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TooManyRequestsException("Upload was not admitted", retryAfterSeconds);
+                } finally {
+                    waiting--;
+                }
+            }
+
+            inFlight++;
+            reservedBytes += reserve;
+            if (userId != null) {
+                inFlightByUser.merge(userId, 1, Integer::sum);
+            }
+            return new Permit(userId, reserve);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onWrite(long bytes, long elapsedNanos) {
+        if (!enabled || bytes < minSampleBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            adjustLimit(elapsedNanos / (bytes / MIB));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Permit permit) {
+        lock.lock();
+        try {
+            inFlight--;
+            reservedBytes -= permit.reservedBytes;
+            if (permit.userId != null) {
+                inFlightByUser.computeIfPresent(permit.userId, (user, count) -> count > 1 ? count - 1 : null);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adjustLimit(double latencyPerMib) {
+        if (baselineLatency == 0) {
+            shortLatency = latencyPerMib;
+            baselineLatency = latencyPerMib;
+            return;
+        }
+        shortLatency += 0.2 * (latencyPerMib - shortLatency);
+        baselineLatency += 0.02 * (latencyPerMib - baselineLatency);
+
+        long now = System.currentTimeMillis();
+        if (shortLatency > baselineLatency * latencyTolerance) {
+            if (now - lastBackoffAt >= backoffIntervalMs) {
+                lastBackoffAt = now;
+                double previous = limit;
+                limit = Math.max(minLimit, limit * backoffFactor);
+                log.info("Storage write latency rose to {} ms/MiB (baseline {} ms/MiB), admission limit {} -> {}",
+                        Math.round(shortLatency / 1e6), Math.round(baselineLatency / 1e6), (int) previous, (int) limit);
+            }
+        } else if (inFlight + 1 >= (int) limit) {
+            // Only grow while the limit is actually what holds uploads back
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    private boolean hasCapacity(String userId) {
+        return inFlight < (int) limit && !userAtLimit(userId);
+    }
+
+    private boolean userAtLimit(String userId) {
+        return userId != null && inFlightByUser.getOrDefault(userId, 0) >= perUserLimit;
+    }
+
+    private void checkFreeSpace(long declaredBytes) {
+        if ("s3".equals(storageBackend) || minFreeBytes <= 0) {
+            return;
+        }
+        long free = usableSpace();
+        long promised;
+        lock.lock();
+        try {
+            promised = reservedBytes;
+        } finally {
+            lock.unlock();
+        }
+        if (free - promised - declaredBytes < minFreeBytes) {
+            log.warn("Refusing upload of {} bytes: {} bytes free, {} reserved by uploads in flight", declaredBytes, free, promised);
+            throw new InsufficientStorageException("Not enough storage space for this upload");
+        }
+    }
+
+    // Refreshed at most once a second; the statfs call is cheap but uploads can arrive in bursts
+    private long usableSpace() {
+        long now = System.currentTimeMillis();
+        if (now - usableSpaceCheckedAt >= 1000) {
+            try {
+                Path root = Paths.get(rootPath);
+                Files.createDirectories(root);
+                usableSpace = Files.getFileStore(root).getUsableSpace();
+            } catch (IOException e) {
+                log.warn("Failed to read free space of {}: {}", rootPath, e.getMessage());
+                usableSpace = Long.MAX_VALUE;
+            }
+            usableSpaceCheckedAt = now;
+        }
+        return usableSpace;
+    }
+
+    public final class Permit {
+        private final String userId;
+        private final long reservedBytes;
+        private boolean released;
+
+        private Permit(String userId, long reservedBytes) {
+            this.userId = userId;
+            this.reservedBytes = reservedBytes;
+        }
+
+        /**
+         * Returns the slot and the reserved bytes.
+         */
+        public void release() {
+            if (released || !enabled) {
+                return;
+            }
+            released = true;
+            UploadAdmissionService.this.release(this);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.shareApp.Media.storage;
+
+import com.shareApp.Media.model.MediaBlob;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Stores each distinct content once under {@code blobs/<aa>/<bb>/<sha256>} and keeps a
+ * reference count per blob, so identical uploads share a single file on disk. The blob is
+ * only removed when its last reference is deleted.
+ *
+ * <p>Reference changes and purges are conditional updates on the {@link MediaBlob} document, so
+ * they stay ordered across instances: a purge first claims the document while its count is zero,
+ * and a new reference waits until a claimed document is gone before it relies on the file.
+ */
+@Component
+@ConditionalOnExpression("'${media.storage.backend:local}' == 'local' and '${media.storage.mode:uuid}' == 'content-addressed'")
+@RequiredArgsConstructor
+@Slf4j
+public class ContentAddressedMediaStorage implements MediaStorage {
+
+    private static final String BLOB_PREFIX = "blobs/";
+    private static final int LOCK_STRIPES = 64;
+    private static final long PURGE_WAIT_MILLIS = 50;
+
+    private final MongoTemplate mongoTemplate;
+    private final ContentCompressor contentCompressor;
+    private final DurableFileWriter durableFileWriter;
+
+    // Serializes reference changes per digest within this instance; the blob document fences the others
+    private final ReentrantLock[] locks = createLocks();
+
+    @Value("${media.local.path}")
+    private String rootPath;
+
+    @Value("${media.storage.blob-purge-timeout-seconds:60}")
+    private long purgeTimeoutSeconds;
+
+    @Override
+    public StoredObject store(String userId, String fileName, String contentType, InputStream content) {
+        return store(userId, fileName, contentType, content, -1);
+    }
+
+    @Override
+    public StoredObject store(String userId, String fileName, String contentType, InputStream content, long expectedSize) {
+        Path tempFile = null;
+        try {
+            tempFile = createTempFile();
+            MessageDigest digest = sha256();
+            // Blobs are keyed by their stored bytes, so compressed and raw copies of the same content stay apart
+            EncodedContent encoded = contentCompressor.encode(contentType, content);
+            long written = durableFileWriter.write(new DigestInputStream(encoded, digest), tempFile,
+                    encoded.getCodec() == null ? expectedSize : -1);
+            return commitBlob(tempFile, HexFormat.of().formatHex(digest.digest()), encoded.getSourceBytes(), written, encoded.getCodec());
+        } catch (IOException e) {
+            log.error("Failed to store blob for user {}: {}", userId, e.getMessage());
+            deleteQuietly(tempFile);
+            throw new RuntimeException("Failed to store file", e);
+        }
+    }
+
+    @Override
+    public StoredObject store(String userId, String fileName, String contentType, Path source) {
+        try {
+            long size = Files.size(source);
+            String codec = contentCompressor.encode(contentType, source);
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(Files.newInputStream(source), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return commitBlob(source, HexFormat.of().formatHex(digest.digest()), size, Files.size(source), codec);
+        } catch (IOException e) {
+            log.error("Failed to store blob for user {}: {}", userId, e.getMessage());
+            throw new RuntimeException("Failed to store file", e);
+        }
+    }
+
+    @Override
+    public Resource download(String storageKey) {
+        return new FileSystemResource(Paths.get(rootPath).resolve(storageKey));
+    }
+
+    @Override
+    public void delete(String storageKey) {
+        if (!storageKey.startsWith(BLOB_PREFIX)) {
+            // Written before content addressing was enabled, owned by a single media item
+            deleteFile(Paths.get(rootPath).resolve(storageKey));
+            return;
+        }
+
+        String digest = storageKey.substring(storageKey.lastIndexOf('/') + 1);
+        ReentrantLock lock = lockFor(digest);
+        lock.lock();
+        try {
+            MediaBlob blob = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("_id").is(digest)),
+                    new Update().inc("refCount", -1),
+                    FindAndModifyOptions.options().returnNew(true),
+                    MediaBlob.class);
+            if (blob == null || blob.getRefCount() > 0) {
+                return;
+            }
+
+            Instant claim = claimPurge(digest);
+            if (claim == null) {
+                return;
+            }
+            unlink(digest, claim);
+            log.info("Reclaimed blob {} ({} bytes)", digest, blob.getSizeInBytes());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean purge(String storageKey, Instant modifiedBefore) {
+        if (!storageKey.startsWith(BLOB_PREFIX)) {
+            deleteFile(Paths.get(rootPath).resolve(storageKey));
+            return true;
+        }
+
+        String digest = storageKey.substring(storageKey.lastIndexOf('/') + 1);
+        Path blob = blobPath(digest);
+        ReentrantLock lock = lockFor(digest);
+        lock.lock();
+        try {
+            // The caller's orphan check ran without the lock; a deduplicated upload may have reused the blob since
+            if (Files.exists(blob) && !Files.getLastModifiedTime(blob).toInstant().isBefore(modifiedBefore)) {
+                return false;
+            }
+            Instant claim = claimPurge(digest);
+            if (claim == null) {
+                return false;
+            }
+            unlink(digest, claim);
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to check blob {}: {}", digest, e.getMessage());
+            throw new RuntimeException("Failed to delete file", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<String> listPartitions() {
+        Path root = Paths.get(rootPath);
+        List<String> partitions = new ArrayList<>();
+        for (String directory : LocalStorageTree.topLevelDirectories(root)) {
+            if (directory.equals("blobs")) {
+                // One partition per first-level digest prefix, so blob scans parallelize
+                partitions.addAll(LocalStorageTree.childDirectories(root, directory));
+            } else {
+                partitions.add(directory);
+            }
+        }
+        return partitions;
+    }
+
+    @Override
+    public Stream<StorageEntry> listEntries(String partition) {
+        return LocalStorageTree.walk(Paths.get(rootPath), partition);
+    }
+
+    private StoredObject commitBlob(Path source, String digest, long size, long storedSize, String codec) throws IOException {
+        Path target = blobPath(digest);
+        ReentrantLock lock = lockFor(digest);
+        lock.lock();
+        try {
+            addReference(digest, storedSize);
+
+            try {
+                if (Files.exists(target)) {
+                    Files.delete(source);
+                    log.debug("Deduplicated upload against existing blob {}", digest);
+                } else {
+                    durableFileWriter.move(source, target);
+                }
+                // A fresh mtime keeps the garbage collector's grace period from covering a blob that was just referenced
+                Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            } catch (IOException e) {
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(digest)),
+                        new Update().inc("refCount", -1), MediaBlob.class);
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return StoredObject.builder()
+                .storageKey(BLOB_PREFIX + relativeBlobPath(digest))
+                .sizeInBytes(size)
+                .storedSizeInBytes(storedSize)
+                .codec(codec)
+                .build();
+    }
+
+    /**
+     * Counts one more reference, waiting out any purge that has claimed the blob so the file is
+     * not unlinked after this caller decided to reuse it. A claim older than the purge timeout is
+     * taken over.
+     */
+    private void addReference(String digest, long storedSize) throws IOException {
+        while (true) {
+            Instant now = Instant.now();
+            Query referenceable = Query.query(Criteria.where("_id").is(digest).orOperator(
+                    Criteria.where("purgingSince").exists(false),
+                    Criteria.where("purgingSince").lt(now.minusSeconds(purgeTimeoutSeconds))));
+            try {
+                mongoTemplate.findAndModify(referenceable,
+                        new Update().inc("refCount", 1)
+                                .unset("purgingSince")
+                                .setOnInsert("sizeInBytes", storedSize)
+                                .setOnInsert("createdAt", now),
+                        FindAndModifyOptions.options().upsert(true).returnNew(true),
+                        MediaBlob.class);
+                return;
+            } catch (DuplicateKeyException e) {
+                // The document exists under a purge claim; it is removed once the file is gone
+                log.debug("Waiting for blob {} to be purged", digest);
+            }
+            try {
+                Thread.sleep(PURGE_WAIT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for blob " + digest + " to be purged");
+            }
+        }
+    }
+
+    /**
+     * Claims the blob for unlinking while it has no references, inserting a placeholder for blobs
+     * without bookkeeping. Returns the claim, or null when the blob is referenced or another purge
+     * holds it.
+     */
+    private Instant claimPurge(String digest) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Query claimable = Query.query(Criteria.where("_id").is(digest).and("refCount").lte(0).orOperator(
+                Criteria.where("purgingSince").exists(false),
+                Criteria.where("purgingSince").lt(now.minusSeconds(purgeTimeoutSeconds))));
+        try {
+            MediaBlob claimed = mongoTemplate.findAndModify(claimable,
+                    new Update().set("purgingSince", now)
+                            .setOnInsert("refCount", 0L)
+                            .setOnInsert("createdAt", now),
+                    FindAndModifyOptions.options().upsert(true).returnNew(true),
+                    MediaBlob.class);
+            return claimed != null ? now : null;
+        } catch (DuplicateKeyException e) {
+            return null;
+        }
+    }
+
+    private void unlink(String digest, Instant claim) {
+        Query claimed = Query.query(Criteria.where("_id").is(digest).and("purgingSince").is(claim));
+        try {
+            deleteFile(blobPath(digest));
+        } catch (RuntimeException e) {
+            mongoTemplate.updateFirst(claimed, new Update().unset("purgingSince"), MediaBlob.class);
+            throw e;
+        }
+        mongoTemplate.remove(claimed, MediaBlob.class);
+    }
+
+    private Path blobPath(String digest) {
+        return Paths.get(rootPath, BLOB_PREFIX).resolve(relativeBlobPath(digest));
+    }
+
+    private String relativeBlobPath(String digest) {
+        return digest.substring(0, 2) + "/" + digest.substring(2, 4) + "/" + digest;
+    }
+
+    private Path createTempFile() throws IOException {
+        // Kept on the same volume as the blobs so the final move is a rename
+        Path tempDir = Paths.get(rootPath, ".tmp");
+        Files.createDirectories(tempDir);
+        return tempDir.resolve(UUID.randomUUID() + ".upload");
+    }
+
+    private ReentrantLock lockFor(String digest) {
+        return locks[Math.floorMod(digest.hashCode(), LOCK_STRIPES)];
+    }
+
+    private void deleteFile(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.error("Failed to delete stored file {}: {}", path, e.getMessage());
+            throw new RuntimeException("Failed to delete file", e);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to remove temporary file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static ReentrantLock[] createLocks() {
+        ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        return stripes;
+    }
+}
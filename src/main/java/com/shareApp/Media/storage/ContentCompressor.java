@@ -0,0 +1,183 @@
+package com.shareApp.Media.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decides whether content is worth compressing at rest and applies gzip while it is written.
+ * Only configured content types are considered, and content whose leading bytes identify an
+ * already compressed format (JPEG, MP4, ZIP, ...) is stored as-is whatever its declared type.
+ */
+@Component
+@Slf4j
+public class ContentCompressor {
+
+    public static final String GZIP = "gzip";
+
+    private static final int SIGNATURE_LENGTH = 12;
+
+    // Leading bytes of formats that are already compressed, with the offset they appear at
+    private static final List<Signature> COMPRESSED_SIGNATURES = List.of(
+            new Signature(0, 0xFF, 0xD8, 0xFF),                   // JPEG
+            new Signature(0, 0x89, 'P', 'N', 'G'),                // PNG
+            new Signature(0, 'G', 'I', 'F', '8'),                 // GIF
+            new Signature(8, 'W', 'E', 'B', 'P'),                 // WebP
+            new Signature(4, 'f', 't', 'y', 'p'),                 // MP4, MOV, HEIC, AVIF, M4A
+            new Signature(0, 0x1A, 0x45, 0xDF, 0xA3),             // Matroska, WebM
+            new Signature(0, 'O', 'g', 'g', 'S'),                 // Ogg
+            new Signature(0, 'f', 'L', 'a', 'C'),                 // FLAC
+            new Signature(0, 'I', 'D', '3'),                      // MP3
+            new Signature(0, 0x1F, 0x8B),                         // gzip
+            new Signature(0, 'P', 'K', 0x03, 0x04),               // ZIP, DOCX, XLSX, JAR
+            new Signature(0, '7', 'z', 0xBC, 0xAF, 0x27, 0x1C),   // 7-Zip
+            new Signature(0, 'R', 'a', 'r', '!'),                 // RAR
+            new Signature(0, 'B', 'Z', 'h'),                      // bzip2
+            new Signature(0, 0xFD, '7', 'z', 'X', 'Z', 0x00),     // xz
+            new Signature(0, 0x28, 0xB5, 0x2F, 0xFD),             // zstd
+            new Signature(0, '%', 'P', 'D', 'F')                  // PDF streams are deflated already
+    );
+
+    @Value("${media.storage.compression.enabled:false}")
+    private boolean enabled;
+
+    @Value("${media.storage.compression.level:6}")
+    private int level;
+
+    @Value("${media.storage.compression.types:text/,application/json,application/xml,application/javascript,image/svg+xml,image/bmp,image/tiff,audio/wav,audio/x-wav,application/x-tar,application/octet-stream}")
+    private List<String> compressibleTypes;
+
+    /**
+     * Wraps an upload stream with its stored encoding. The stream is consumed but not closed.
+     */
+    public EncodedContent encode(String contentType, InputStream content) throws IOException {
+        if (!isCompressibleType(contentType)) {
+            return new EncodedContent(content, null, null);
+        }
+        PushbackInputStream source = new PushbackInputStream(content, SIGNATURE_LENGTH);
+        byte[] signature = source.readNBytes(SIGNATURE_LENGTH);
+        source.unread(signature);
+        if (signature.length < SIGNATURE_LENGTH || isAlreadyCompressed(signature)) {
+            log.debug("Storing {} content as-is: too short or already compressed", contentType);
+            return new EncodedContent(source, null, null);
+        }
+        return new EncodedContent(source, GZIP, new GzipEncodingInputStream(source, level));
+    }
+
+    /**
+     * Compresses a local file in place when worthwhile and returns the codec applied, or null.
+     */
+    public String encode(String contentType, Path file) throws IOException {
+        if (!isCompressibleType(contentType)) {
+            return null;
+        }
+        byte[] signature;
+        try (InputStream in = Files.newInputStream(file)) {
+            signature = in.readNBytes(SIGNATURE_LENGTH);
+        }
+        // Gzip framing alone would outgrow content shorter than a signature
+        if (signature.length < SIGNATURE_LENGTH || isAlreadyCompressed(signature)) {
+            return null;
+        }
+
+        Path encoded = file.resolveSibling(file.getFileName() + ".gz.tmp");
+        try (InputStream in = Files.newInputStream(file);
+             GzipEncodingInputStream gzip = new GzipEncodingInputStream(in, level)) {
+            Files.copy(gzip, encoded, StandardCopyOption.REPLACE_EXISTING);
+            try {
+                Files.move(encoded, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(encoded, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(encoded);
+            throw e;
+        }
+        return GZIP;
+    }
+
+    /**
+     * Returns a resource yielding the original bytes of an object stored with the given codec.
+     */
+    public Resource decode(Resource stored, String codec, long originalSize) {
+        if (codec == null) {
+            return stored;
+        }
+        if (!GZIP.equals(codec)) {
+            throw new IllegalStateException("Unsupported storage codec: " + codec);
+        }
+        return new DecodedResource(stored, originalSize);
+    }
+
+    /**
+     * Whether an {@code Accept-Encoding} header allows sending the stored bytes with the given codec.
+     */
+    public boolean accepts(String acceptEncoding, String codec) {
+        if (!StringUtils.hasText(acceptEncoding)) {
+            return false;
+        }
+        // An explicit entry for the codec overrides the wildcard, so "gzip;q=0, *" still refuses gzip
+        Double explicit = null;
+        Double wildcard = null;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.trim().split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals(codec) || coding.equals("x-" + codec)) {
+                explicit = quality;
+            } else if (coding.equals("*")) {
+                wildcard = quality;
+            }
+        }
+        Double quality = explicit != null ? explicit : wildcard;
+        return quality != null && quality > 0;
+    }
+
+    private boolean isCompressibleType(String contentType) {
+        if (!enabled || contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return compressibleTypes.stream().anyMatch(type::startsWith);
+    }
+
+    private static boolean isAlreadyCompressed(byte[] signature) {
+        return COMPRESSED_SIGNATURES.stream().anyMatch(candidate -> candidate.matches(signature));
+    }
+
+    private record Signature(int offset, int... bytes) {
+        boolean matches(byte[] data) {
+            if (data.length < offset + bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if ((data[offset + i] & 0xFF) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.shareApp.Media.storage;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Presents a gzip encoded stored object as its original bytes, decompressing as it is read.
+ */
+class DecodedResource extends AbstractResource {
+
+    private final Resource stored;
+    private final long contentLength;
+
+    DecodedResource(Resource stored, long contentLength) {
+        this.stored = stored;
+        this.contentLength = contentLength;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return new GZIPInputStream(stored.getInputStream(), 64 * 1024);
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public boolean exists() {
+        return stored.exists();
+    }
+
+    @Override
+    public String getDescription() {
+        return "Decoded " + stored.getDescription();
+    }
+}
@@ -0,0 +1,344 @@
+package com.shareApp.Media.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes stored files through large pooled direct buffers into a temporary name next to the
+ * target and renames them into place, so a reader never sees a partial file. When the length is
+ * declared up front the file is extended to it first, so its size is set once rather than on
+ * every write (the extension is sparse; Java has no portable fallocate).
+ * <p>
+ * Durability decides what an acknowledged write survives:
+ * <ul>
+ *     <li>{@code none}: nothing is forced; a crash may lose recent uploads</li>
+ *     <li>{@code fsync}: file data, then the rename, are forced before returning</li>
+ *     <li>{@code group-commit}: writers hand their files to one flusher thread that forces every
+ *     file of a batch, renames them and syncs each affected directory once per batch</li>
+ * </ul>
+ * Each write's time on storage, excluding reads from the source stream, is reported to the
+ * {@link StorageWriteListener}s.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DurableFileWriter {
+
+    public enum Durability {
+        NONE, FSYNC, GROUP_COMMIT
+    }
+
+    private static final int STAGING_CHUNK = 64 * 1024;
+
+    private final ObjectProvider<StorageWriteListener> writeListeners;
+
+    @Value("${media.storage.write.buffer-size:1048576}")
+    private int bufferSize;
+
+    @Value("${media.storage.write.buffer-pool-size:32}")
+    private int bufferPoolSize;
+
+    @Value("${media.storage.write.preallocate-min-bytes:1048576}")
+    private long preallocateMinBytes;
+
+    @Value("${media.storage.write.durability:fsync}")
+    private String durabilitySetting;
+
+    @Value("${media.storage.write.group-commit-interval-ms:2}")
+    private long groupCommitIntervalMs;
+
+    @Value("${media.storage.write.group-commit-max-batch:64}")
+    private int groupCommitMaxBatch;
+
+    private Durability durability;
+    private BlockingQueue<ByteBuffer> bufferPool;
+    private final BlockingQueue<PendingCommit> pendingCommits = new LinkedBlockingQueue<>();
+    private Thread flusher;
+    private volatile boolean stopping;
+
+    @PostConstruct
+    public void init() {
+        durability = Durability.valueOf(durabilitySetting.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        bufferPool = new ArrayBlockingQueue<>(Math.max(1, bufferPoolSize));
+        if (durability == Durability.GROUP_COMMIT) {
+            flusher = new Thread(this::runFlusher, "StorageGroupCommit");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+        log.info("Storage writes: durability {}, {} byte buffers", durability, bufferSize);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+    }
+
+    /**
+     * Writes the stream to {@code target} and returns the number of bytes written. The stream is
+     * read to its end but not closed.
+     *
+     * @param expectedSize the declared length, or -1 when unknown; only used to preallocate
+     */
+    public long write(InputStream content, Path target, long expectedSize) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + ".part");
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        boolean handedOver = false;
+        try {
+            long startedAt = System.nanoTime();
+            if (expectedSize >= preallocateMinBytes) {
+                channel.write(ByteBuffer.allocate(1), expectedSize - 1);
+            }
+            long storageNanos = System.nanoTime() - startedAt;
+            Copied copied = copy(content, channel);
+            long written = copied.bytes();
+            storageNanos += copied.writeNanos();
+            startedAt = System.nanoTime();
+            if (written != channel.size()) {
+                // Shorter than declared, or encoded smaller than the original
+                channel.truncate(written);
+            }
+
+            switch (durability) {
+                case NONE -> {
+                    channel.close();
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+                case FSYNC -> {
+                    channel.force(false);
+                    channel.close();
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                    syncDirectory(target.getParent());
+                }
+                case GROUP_COMMIT -> {
+                    handedOver = true;
+                    awaitCommit(new PendingCommit(channel, temp, target));
+                }
+            }
+            storageNanos += System.nanoTime() - startedAt;
+            long elapsedNanos = storageNanos;
+            writeListeners.orderedStream().forEach(listener -> listener.onWrite(written, elapsedNanos));
+            return written;
+        } catch (IOException | RuntimeException e) {
+            // Once handed over, the temporary file is removed by whichever side claimed the commit
+            if (!handedOver) {
+                closeQuietly(channel);
+                Files.deleteIfExists(temp);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Moves a finished file into place with the configured durability, copying when the source
+     * is on another volume.
+     */
+    public void move(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        if (durability != Durability.NONE) {
+            // Usually nearly free: the file was written long enough ago to be mostly on disk already
+            try (FileChannel channel = FileChannel.open(source, StandardOpenOption.WRITE)) {
+                channel.force(false);
+            }
+        }
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Source lives on another volume: copy through the write path, then drop the source
+            try (InputStream in = Files.newInputStream(source)) {
+                write(in, target, Files.size(source));
+            }
+            Files.delete(source);
+            return;
+        }
+        if (durability != Durability.NONE) {
+            syncDirectory(target.getParent());
+        }
+    }
+
+    private Copied copy(InputStream content, FileChannel channel) throws IOException {
+        ByteBuffer buffer = bufferPool.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        try {
+            buffer.clear();
+            // Streams only read into arrays; collect small reads into the direct buffer so the
+            // channel sees few large writes and the JDK needs no temporary direct buffer
+            byte[] staging = new byte[Math.min(STAGING_CHUNK, buffer.capacity())];
+            long written = 0;
+            long writeNanos = 0;
+            int read;
+            while ((read = content.read(staging, 0, Math.min(staging.length, buffer.remaining()))) != -1) {
+                buffer.put(staging, 0, read);
+                if (!buffer.hasRemaining()) {
+                    long startedAt = System.nanoTime();
+                    written += drain(buffer, channel, written);
+                    writeNanos += System.nanoTime() - startedAt;
+                }
+            }
+            long startedAt = System.nanoTime();
+            written += drain(buffer, channel, written);
+            writeNanos += System.nanoTime() - startedAt;
+            return new Copied(written, writeNanos);
+        } finally {
+            buffer.clear();
+            // Buffers beyond the pool size are left to the garbage collector
+            bufferPool.offer(buffer);
+        }
+    }
+
+    private int drain(ByteBuffer buffer, FileChannel channel, long position) throws IOException {
+        buffer.flip();
+        int count = buffer.remaining();
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+        buffer.clear();
+        return count;
+    }
+
+    private void awaitCommit(PendingCommit commit) throws IOException {
+        if (stopping) {
+            discard(commit);
+            throw new IOException("Storage is shutting down");
+        }
+        pendingCommits.add(commit);
+        try {
+            commit.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (commit.claimed.compareAndSet(false, true)) {
+                // The flusher has not started on it and will skip it, so the file never lands
+                discard(commit);
+                throw new InterruptedIOException("Interrupted while waiting for " + commit.target + " to be committed");
+            }
+            // Already being committed: the result is only moments away, and the caller must report it
+            try {
+                commit.done.join();
+            } catch (CompletionException | CancellationException failed) {
+                throw failure(commit, failed.getCause());
+            }
+        } catch (ExecutionException e) {
+            throw failure(commit, e.getCause());
+        }
+    }
+
+    private static IOException failure(PendingCommit commit, Throwable cause) {
+        return cause instanceof IOException io ? io : new IOException("Failed to commit " + commit.target, cause);
+    }
+
+    private void runFlusher() {
+        List<PendingCommit> batch = new ArrayList<>(groupCommitMaxBatch);
+        while (!stopping) {
+            try {
+                batch.add(pendingCommits.take());
+                // Give concurrent writers a moment to join the batch
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(groupCommitIntervalMs);
+                while (batch.size() < groupCommitMaxBatch) {
+                    PendingCommit next = pendingCommits.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commitBatch(batch);
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        PendingCommit left;
+        while ((left = pendingCommits.poll()) != null) {
+            if (left.claimed.compareAndSet(false, true)) {
+                discard(left);
+                left.done.completeExceptionally(new IOException("Storage is shutting down"));
+            }
+        }
+    }
+
+    private void commitBatch(List<PendingCommit> batch) {
+        Map<Path, List<PendingCommit>> byDirectory = new LinkedHashMap<>();
+        for (PendingCommit commit : batch) {
+            if (!commit.claimed.compareAndSet(false, true)) {
+                // The writer gave up waiting and removed the file itself
+                continue;
+            }
+            try {
+                commit.channel.force(false);
+                commit.channel.close();
+                Files.move(commit.temp, commit.target, StandardCopyOption.ATOMIC_MOVE);
+                byDirectory.computeIfAbsent(commit.target.getParent(), directory -> new ArrayList<>()).add(commit);
+            } catch (IOException e) {
+                discard(commit);
+                commit.done.completeExceptionally(e);
+            }
+        }
+        for (Map.Entry<Path, List<PendingCommit>> entry : byDirectory.entrySet()) {
+            try {
+                syncDirectory(entry.getKey());
+                entry.getValue().forEach(commit -> commit.done.complete(null));
+            } catch (IOException e) {
+                entry.getValue().forEach(commit -> commit.done.completeExceptionally(e));
+            }
+        }
+    }
+
+    // Makes a rename durable; not every platform can open a directory for syncing
+    private void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException | UnsupportedOperationException e) {
+            log.debug("Cannot sync directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static void discard(PendingCommit commit) {
+        closeQuietly(commit.channel);
+        try {
+            Files.deleteIfExists(commit.temp);
+        } catch (IOException e) {
+            log.warn("Failed to remove temporary file {}: {}", commit.temp, e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing left to do with a channel that failed
+        }
+    }
+
+    // Bytes copied and the time spent writing them, not reading them
+    private record Copied(long bytes, long writeNanos) {
+    }
+
+    // Whoever sets claimed first, the flusher or the writer giving up, decides the file's fate
+    private record PendingCommit(FileChannel channel, Path temp, Path target, AtomicBoolean claimed,
+                                 CompletableFuture<Void> done) {
+        PendingCommit(FileChannel channel, Path temp, Path target) {
+            this(channel, temp, target, new AtomicBoolean(), new CompletableFuture<>());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.shareApp.Media.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The bytes to write for an upload, either the original stream or its compressed encoding,
+ * together with the codec applied and a count of the original bytes read.
+ */
+public class EncodedContent extends FilterInputStream {
+
+    private final String codec;
+    private final GzipEncodingInputStream encoder;
+    private long passedThrough;
+
+    EncodedContent(InputStream content, String codec, GzipEncodingInputStream encoder) {
+        super(encoder != null ? encoder : content);
+        this.codec = codec;
+        this.encoder = encoder;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value != -1) {
+            passedThrough++;
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            passedThrough += read;
+        }
+        return read;
+    }
+
+    @Override
+    public void close() {
+        // The caller owns the underlying stream
+        if (encoder != null) {
+            encoder.close();
+        }
+    }
+
+    /**
+     * Codec applied to the stored bytes, or null when they are stored as-is.
+     */
+    public String getCodec() {
+        return codec;
+    }
+
+    /**
+     * Number of original (unencoded) bytes consumed so far.
+     */
+    public long getSourceBytes() {
+        return encoder != null ? encoder.getSourceBytes() : passedThrough;
+    }
+}
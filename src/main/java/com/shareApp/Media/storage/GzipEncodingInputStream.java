@@ -0,0 +1,95 @@
+package com.shareApp.Media.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+
+/**
+ * Produces the gzip encoding of a source stream on the fly, so compressed content can be
+ * handed to anything that consumes an {@link InputStream}. The header carries no timestamp,
+ * making the output deterministic for a given input and level. The source is not closed.
+ */
+final class GzipEncodingInputStream extends InputStream {
+
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final CRC32 crc = new CRC32();
+    private final Deflater deflater;
+    private final DeflaterInputStream body;
+    private long sourceBytes;
+
+    private int headerPosition;
+    private byte[] trailer;
+    private int trailerPosition;
+
+    GzipEncodingInputStream(InputStream source, int level) {
+        this.deflater = new Deflater(level, true);
+        this.body = new DeflaterInputStream(new FilterInputStream(source) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                if (read > 0) {
+                    crc.update(buffer, offset, read);
+                    sourceBytes += read;
+                }
+                return read;
+            }
+        }, deflater, 64 * 1024);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (headerPosition < HEADER.length) {
+            int n = Math.min(HEADER.length - headerPosition, length);
+            System.arraycopy(HEADER, headerPosition, buffer, offset, n);
+            headerPosition += n;
+            return n;
+        }
+        if (trailer == null) {
+            int read = body.read(buffer, offset, length);
+            if (read != -1) {
+                return read;
+            }
+            trailer = trailer();
+            deflater.end();
+        }
+        if (trailerPosition == trailer.length) {
+            return -1;
+        }
+        int n = Math.min(trailer.length - trailerPosition, length);
+        System.arraycopy(trailer, trailerPosition, buffer, offset, n);
+        trailerPosition += n;
+        return n;
+    }
+
+    @Override
+    public void close() {
+        deflater.end();
+    }
+
+    long getSourceBytes() {
+        return sourceBytes;
+    }
+
+    private byte[] trailer() {
+        long checksum = crc.getValue();
+        // ISIZE is the uncompressed length modulo 2^32, little endian like the CRC
+        return new byte[]{
+                (byte) checksum, (byte) (checksum >> 8), (byte) (checksum >> 16), (byte) (checksum >> 24),
+                (byte) sourceBytes, (byte) (sourceBytes >> 8), (byte) (sourceBytes >> 16), (byte) (sourceBytes >> 24)
+        };
+    }
+}
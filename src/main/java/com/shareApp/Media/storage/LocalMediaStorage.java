@@ -1,45 +1,159 @@
 package com.shareApp.Media.storage;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Component
+@ConditionalOnExpression("'${media.storage.backend:local}' matches 'local|tiered' and '${media.storage.mode:uuid}' == 'uuid'")
+@RequiredArgsConstructor
 @Slf4j
 public class LocalMediaStorage implements MediaStorage {
 
+    private final StorageLayout storageLayout;
+    private final ContentCompressor contentCompressor;
+    private final DurableFileWriter durableFileWriter;
+
     @Value("${media.local.path}")
     private String rootPath;
 
     @Override
-    public String upload(String userId, MultipartFile file) {
+    public StoredObject store(String userId, String fileName, String contentType, InputStream content) {
+        return store(userId, fileName, contentType, content, -1);
+    }
+
+    @Override
+    public StoredObject store(String userId, String fileName, String contentType, InputStream content, long expectedSize) {
+        Path filePath = null;
+        try {
+            String storageKey = newStorageKey(userId, fileName);
+            filePath = Paths.get(rootPath).resolve(storageKey); // rootPath is "uploads"
+
+            EncodedContent encoded = contentCompressor.encode(contentType, content);
+            long written = durableFileWriter.write(encoded, filePath, encoded.getCodec() == null ? expectedSize : -1);
+            return StoredObject.builder()
+                    .storageKey(storageKey)
+                    .sizeInBytes(encoded.getSourceBytes())
+                    .storedSizeInBytes(written)
+                    .codec(encoded.getCodec())
+                    .build();
+        } catch (IOException e) {
+            log.error("Failed to store file for user {}: {}", userId, e.getMessage());
+            deleteQuietly(filePath);
+            throw new RuntimeException("Failed to store file", e);
+        }
+    }
+
+    @Override
+    public StoredObject store(String userId, String fileName, String contentType, Path source) {
         try {
-            String originalName = StringUtils.cleanPath(file.getOriginalFilename());
-            String uniqueName = UUID.randomUUID() + "-" + originalName;
-            Path userDir = Paths.get(rootPath, userId); // rootPath is "uploads"
-            Files.createDirectories(userDir);
-
-            Path filePath = userDir.resolve(uniqueName);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-            return userId + "/" + uniqueName; // storage key
+            String storageKey = newStorageKey(userId, fileName);
+            Path filePath = Paths.get(rootPath).resolve(storageKey);
+
+            long size = Files.size(source);
+            String codec = contentCompressor.encode(contentType, source);
+            long storedSize = codec != null ? Files.size(source) : size;
+            durableFileWriter.move(source, filePath);
+            // Adopted files keep their staging mtime; refresh it so the garbage collector's grace period applies
+            Files.setLastModifiedTime(filePath, FileTime.from(Instant.now()));
+            return StoredObject.builder()
+                    .storageKey(storageKey)
+                    .sizeInBytes(size)
+                    .storedSizeInBytes(storedSize)
+                    .codec(codec)
+                    .build();
         } catch (IOException e) {
-            System.out.println("❌ Failed to store file" + e);
+            log.error("Failed to move file {} into storage for user {}: {}", source, userId, e.getMessage());
             throw new RuntimeException("Failed to store file", e);
         }
     }
 
     @Override
     public Resource download(String storageKey) {
-        Path fullPath = Paths.get(rootPath).resolve(storageKey);
-        return new FileSystemResource(fullPath);
+        return new FileSystemResource(resolve(storageKey));
+    }
+
+    @Override
+    public void delete(String storageKey) {
+        try {
+            Files.deleteIfExists(resolve(storageKey));
+        } catch (IOException e) {
+            log.error("Failed to delete stored file {}: {}", storageKey, e.getMessage());
+            throw new RuntimeException("Failed to delete file", e);
+        }
+    }
+
+    @Override
+    public List<String> listPartitions() {
+        return LocalStorageTree.topLevelDirectories(Paths.get(rootPath));
+    }
+
+    @Override
+    public Stream<StorageEntry> listEntries(String partition) {
+        return LocalStorageTree.walk(Paths.get(rootPath), partition);
+    }
+
+    /**
+     * Moves a file written under an older layout to its current location and returns the new key.
+     * Readers keep working throughout because {@link #resolve} checks both locations.
+     */
+    public String relocate(String storageKey) throws IOException {
+        String canonicalKey = storageLayout.canonicalKey(storageKey);
+        if (canonicalKey.equals(storageKey)) {
+            return storageKey;
+        }
+
+        Path source = Paths.get(rootPath).resolve(storageKey);
+        Path target = Paths.get(rootPath).resolve(canonicalKey);
+        if (Files.exists(source)) {
+            durableFileWriter.move(source, target);
+        } else if (!Files.exists(target)) {
+            throw new NoSuchFileException(source.toString());
+        }
+        return canonicalKey;
+    }
+
+    // A record may still carry its old key for a moment after the migration moved the file
+    private Path resolve(String storageKey) {
+        Path path = Paths.get(rootPath).resolve(storageKey);
+        if (Files.exists(path)) {
+            return path;
+        }
+        return Paths.get(rootPath).resolve(storageLayout.canonicalKey(storageKey));
+    }
+
+    private String newStorageKey(String userId, String fileName) {
+        return storageLayout.objectKey(userId, UUID.randomUUID() + "-" + sanitizeFileName(fileName));
+    }
+
+    // Client supplied names may carry directory components; keep only the last segment
+    private String sanitizeFileName(String fileName) {
+        String name = StringUtils.getFilename(StringUtils.cleanPath(fileName != null ? fileName : ""));
+        return StringUtils.hasText(name) && !name.equals("..") ? name : "file";
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to remove partial file {}: {}", path, e.getMessage());
+        }
     }
 }
@@ -0,0 +1,76 @@
+package com.shareApp.Media.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Directory walking shared by the file system backed storages. Dot-directories at the root
+ * (staging, temp and cache areas) are never treated as stored objects.
+ */
+final class LocalStorageTree {
+
+    private LocalStorageTree() {
+    }
+
+    static List<String> topLevelDirectories(Path root) {
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        try (Stream<Path> children = Files.list(root)) {
+            return children
+                    .filter(Files::isDirectory)
+                    .map(path -> path.getFileName().toString())
+                    .filter(name -> !name.startsWith("."))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<String> childDirectories(Path root, String partition) {
+        try (Stream<Path> children = Files.list(root.resolve(partition))) {
+            return children
+                    .filter(Files::isDirectory)
+                    .map(path -> partition + "/" + path.getFileName())
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Stream<StorageEntry> walk(Path root, String partition) {
+        try {
+            return Files.find(root.resolve(partition), Integer.MAX_VALUE, (path, attrs) -> attrs.isRegularFile())
+                    .map(path -> toEntry(root, path))
+                    .filter(Objects::nonNull);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static StorageEntry toEntry(Path root, Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return StorageEntry.builder()
+                    .storageKey(root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/"))
+                    .sizeInBytes(attributes.size())
+                    .lastModified(attributes.lastModifiedTime().toInstant())
+                    .lastAccessed(attributes.lastAccessTime().toInstant())
+                    .build();
+        } catch (NoSuchFileException e) {
+            // Removed while the tree was being walked
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,9 +1,50 @@
 package com.shareApp.Media.storage;
 
 import org.springframework.core.io.Resource;
-import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
 
 public interface MediaStorage {
-    String upload(String userId, MultipartFile file);
+    /**
+     * Streams the content into its final location in a single pass.
+     * The stream is consumed but not closed.
+     */
+    StoredObject store(String userId, String fileName, String contentType, InputStream content);
+    /**
+     * As {@link #store(String, String, String, InputStream)}, with the length declared by the
+     * client (or -1) as a sizing hint. Backends must not rely on it being accurate.
+     */
+    default StoredObject store(String userId, String fileName, String contentType, InputStream content, long expectedSize) {
+        return store(userId, fileName, contentType, content);
+    }
+    /**
+     * Adopts an already written local file, moving it instead of copying where possible.
+     */
+    StoredObject store(String userId, String fileName, String contentType, Path source);
     Resource download(String storageKey);
+    void delete(String storageKey);
+
+    /**
+     * Removes an object that no media referenced when it was last modified before the cutoff,
+     * bypassing any sharing bookkeeping. Backends that share objects re-check under their own
+     * locking and leave an object alone that was reused since; returns whether it was removed.
+     */
+    default boolean purge(String storageKey, Instant modifiedBefore) {
+        delete(storageKey);
+        return true;
+    }
+
+    /**
+     * Independent parts of the storage tree, so a scan can be spread across workers.
+     */
+    List<String> listPartitions();
+
+    /**
+     * Lists the objects stored under a partition. The caller must close the stream.
+     */
+    Stream<StorageEntry> listEntries(String partition);
 }
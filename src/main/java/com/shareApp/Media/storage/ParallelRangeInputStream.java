@@ -0,0 +1,127 @@
+package com.shareApp.Media.storage;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a byte range of an object as consecutive ranged GETs, keeping up to {@code concurrency}
+ * chunks in flight ahead of the reader. Memory use is bounded by concurrency times chunk size.
+ */
+class ParallelRangeInputStream extends InputStream {
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String key;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final long end; // exclusive
+
+    private final Deque<Future<byte[]>> window = new ArrayDeque<>();
+    private long nextChunkStart;
+    private byte[] current = new byte[0];
+    private int position;
+    private boolean closed;
+
+    ParallelRangeInputStream(S3Client s3Client, String bucket, String key, ExecutorService executor,
+                             long start, long count, int chunkSize, int concurrency) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.key = key;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.end = start + count;
+        this.nextChunkStart = start;
+        for (int i = 0; i < concurrency && nextChunkStart < end; i++) {
+            scheduleNext();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Future<byte[]> chunk : window) {
+            chunk.cancel(true);
+        }
+        window.clear();
+    }
+
+    private boolean fill() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (position == current.length) {
+            Future<byte[]> next = window.poll();
+            if (next == null) {
+                return false;
+            }
+            current = await(next);
+            position = 0;
+            if (nextChunkStart < end) {
+                scheduleNext();
+            }
+        }
+        return true;
+    }
+
+    private void scheduleNext() {
+        long chunkStart = nextChunkStart;
+        long chunkEnd = Math.min(end, chunkStart + chunkSize) - 1;
+        nextChunkStart = chunkEnd + 1;
+        window.add(executor.submit(() -> s3Client.getObjectAsBytes(GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .range("bytes=" + chunkStart + "-" + chunkEnd)
+                .build()).asByteArrayUnsafe()));
+    }
+
+    private byte[] await(Future<byte[]> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new InterruptedIOException("Interrupted while reading " + key);
+        } catch (ExecutionException | CancellationException e) {
+            close();
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof NoSuchKeyException) {
+                throw new FileNotFoundException("No such object: " + key);
+            }
+            throw new IOException("Failed to read " + key, cause);
+        }
+    }
+}
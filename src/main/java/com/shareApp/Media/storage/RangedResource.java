@@ -0,0 +1,16 @@
+package com.shareApp.Media.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A resource that can open a stream over part of its content without reading what precedes it.
+ */
+public interface RangedResource extends Resource {
+    /**
+     * Opens a stream over {@code count} bytes starting at {@code start}. The caller must close it.
+     */
+    InputStream getInputStream(long start, long count) throws IOException;
+}
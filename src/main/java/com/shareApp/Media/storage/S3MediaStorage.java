@@ -0,0 +1,321 @@
+package com.shareApp.Media.storage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Stores media in an S3-compatible bucket under the same {@code <userId>/...} keys as the local
+ * layout. Content larger than one part is sent as a multipart upload with several parts in
+ * flight; reads are served by {@link S3ObjectResource} with parallel ranged GETs. Part buffers
+ * are shared by all uploads and limited to one per transfer thread, so concurrent uploads queue
+ * for buffers instead of each holding {@code upload-concurrency + 1} of them.
+ */
+@Component
+@ConditionalOnProperty(name = "media.storage.backend", havingValue = "s3")
+@Slf4j
+public class S3MediaStorage implements MediaStorage {
+
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+
+    private final S3Client s3Client;
+    private final ExecutorService transferExecutor;
+    private final StorageLayout storageLayout;
+    private final ContentCompressor contentCompressor;
+
+    @Value("${media.storage.s3.bucket}")
+    private String bucket;
+
+    @Value("${media.storage.s3.create-bucket:false}")
+    private boolean createBucket;
+
+    @Value("${media.storage.s3.part-size:8388608}")
+    private int partSize;
+
+    @Value("${media.storage.s3.upload-concurrency:4}")
+    private int uploadConcurrency;
+
+    @Value("${media.storage.s3.download-chunk-size:8388608}")
+    private int downloadChunkSize;
+
+    @Value("${media.storage.s3.download-concurrency:4}")
+    private int downloadConcurrency;
+
+    @Value("${media.storage.s3.transfer-threads:32}")
+    private int transferThreads;
+
+    // One permit per part buffer, across all uploads; held from reading a part until it is sent
+    private Semaphore partBuffers;
+
+    public S3MediaStorage(S3Client s3Client,
+                          @Qualifier("s3TransferExecutor") ExecutorService transferExecutor,
+                          StorageLayout storageLayout,
+                          ContentCompressor contentCompressor) {
+        this.s3Client = s3Client;
+        this.transferExecutor = transferExecutor;
+        this.storageLayout = storageLayout;
+        this.contentCompressor = contentCompressor;
+    }
+
+    @PostConstruct
+    public void validate() {
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalStateException("media.storage.s3.part-size must be at least 5 MiB");
+        }
+        if (uploadConcurrency < 1 || downloadConcurrency < 1 || downloadChunkSize < 1 || transferThreads < 1) {
+            throw new IllegalStateException("media.storage.s3 concurrency and chunk size must be positive");
+        }
+        partBuffers = new Semaphore(transferThreads);
+        if (createBucket) {
+            try {
+                s3Client.headBucket(HeadBucketRequest.builder().bucket(bucket).build());
+            } catch (NoSuchBucketException e) {
+                s3Client.createBucket(CreateBucketRequest.builder().bucket(bucket).build());
+                log.info("Created S3 bucket {}", bucket);
+            }
+        }
+    }
+
+    @Override
+    public StoredObject store(String userId, String fileName, String contentType, InputStream content) {
+        String storageKey = newStorageKey(userId, fileName);
+        try {
+            EncodedContent encoded = contentCompressor.encode(contentType, content);
+            long written = upload(storageKey, contentType, encoded);
+            return StoredObject.builder()
+                    .storageKey(storageKey)
+                    .sizeInBytes(encoded.getSourceBytes())
+                    .storedSizeInBytes(written)
+                    .codec(encoded.getCodec())
+                    .build();
+        } catch (IOException | SdkException e) {
+            log.error("Failed to store object for user {}: {}", userId, e.getMessage());
+            throw new RuntimeException("Failed to store file", e);
+        }
+    }
+
+    @Override
+    public StoredObject store(String userId, String fileName, String contentType, Path source) {
+        String storageKey = newStorageKey(userId, fileName);
+        try {
+            long size = Files.size(source);
+            String codec = contentCompressor.encode(contentType, source);
+            long written;
+            try (InputStream in = Files.newInputStream(source)) {
+                written = upload(storageKey, contentType, in);
+            }
+            // Adopting a file means taking it over, as the local backends do by moving it
+            Files.deleteIfExists(source);
+            return StoredObject.builder()
+                    .storageKey(storageKey)
+                    .sizeInBytes(size)
+                    .storedSizeInBytes(written)
+                    .codec(codec)
+                    .build();
+        } catch (IOException | SdkException e) {
+            log.error("Failed to upload file {} for user {}: {}", source, userId, e.getMessage());
+            throw new RuntimeException("Failed to store file", e);
+        }
+    }
+
+    @Override
+    public Resource download(String storageKey) {
+        return new S3ObjectResource(s3Client, bucket, storageKey, transferExecutor, downloadChunkSize, downloadConcurrency);
+    }
+
+    @Override
+    public void delete(String storageKey) {
+        try {
+            s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(storageKey).build());
+        } catch (SdkException e) {
+            log.error("Failed to delete stored object {}: {}", storageKey, e.getMessage());
+            throw new RuntimeException("Failed to delete file", e);
+        }
+    }
+
+    @Override
+    public List<String> listPartitions() {
+        // One partition per user prefix
+        return s3Client.listObjectsV2Paginator(ListObjectsV2Request.builder().bucket(bucket).delimiter("/").build())
+                .commonPrefixes().stream()
+                .map(prefix -> prefix.prefix().substring(0, prefix.prefix().length() - 1))
+                .toList();
+    }
+
+    @Override
+    public Stream<StorageEntry> listEntries(String partition) {
+        return s3Client.listObjectsV2Paginator(ListObjectsV2Request.builder().bucket(bucket).prefix(partition + "/").build())
+                .contents().stream()
+                .map(object -> StorageEntry.builder()
+                        .storageKey(object.key())
+                        .sizeInBytes(object.size())
+                        .lastModified(object.lastModified())
+                        .build());
+    }
+
+    /**
+     * Sends the stream as one PUT when it fits in a single part, otherwise as a multipart upload.
+     * Parts are read sequentially and uploaded concurrently; at most {@code upload-concurrency}
+     * parts of one upload are in flight, and every part buffer takes a permit from the shared pool.
+     */
+    private long upload(String storageKey, String contentType, InputStream in) throws IOException {
+        byte[] part = readPart(in);
+        if (part.length < partSize) {
+            try {
+                s3Client.putObject(PutObjectRequest.builder().bucket(bucket).key(storageKey).contentType(contentType).build(),
+                        RequestBody.fromBytes(part));
+            } finally {
+                partBuffers.release();
+            }
+            return part.length;
+        }
+
+        String uploadId;
+        try {
+            uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucket).key(storageKey).contentType(contentType).build()).uploadId();
+        } catch (RuntimeException e) {
+            partBuffers.release();
+            throw e;
+        }
+        Semaphore inFlight = new Semaphore(uploadConcurrency);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Future<CompletedPart>> parts = new ArrayList<>();
+        long total = 0;
+        boolean holdingBuffer = true; // Until the part read last is handed to its upload task
+        try {
+            while (part.length > 0) {
+                if (parts.size() == MAX_PARTS) {
+                    throw new IOException("Content exceeds " + MAX_PARTS + " parts of " + partSize + " bytes");
+                }
+                inFlight.acquire();
+                if (failure.get() != null) {
+                    inFlight.release();
+                    break;
+                }
+                holdingBuffer = false;
+                parts.add(submitPart(storageKey, uploadId, parts.size() + 1, part, inFlight, failure));
+                total += part.length;
+                if (part.length < partSize) {
+                    break;
+                }
+                part = readPart(in);
+                holdingBuffer = true;
+            }
+
+            List<CompletedPart> completed = new ArrayList<>(parts.size());
+            for (Future<CompletedPart> future : parts) {
+                completed.add(future.get());
+            }
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket).key(storageKey).uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completed).build())
+                    .build());
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(storageKey, uploadId, parts);
+            throw new IOException("Interrupted while uploading " + storageKey, e);
+        } catch (ExecutionException e) {
+            abort(storageKey, uploadId, parts);
+            throw new IOException("Failed to upload part of " + storageKey, e.getCause());
+        } catch (IOException | RuntimeException e) {
+            abort(storageKey, uploadId, parts);
+            throw e;
+        } finally {
+            if (holdingBuffer) {
+                partBuffers.release();
+            }
+        }
+    }
+
+    private Future<CompletedPart> submitPart(String storageKey, String uploadId, int partNumber, byte[] data,
+                                             Semaphore inFlight, AtomicReference<Throwable> failure) {
+        try {
+            return transferExecutor.submit(() -> {
+                try {
+                    String eTag = s3Client.uploadPart(UploadPartRequest.builder()
+                            .bucket(bucket).key(storageKey).uploadId(uploadId).partNumber(partNumber)
+                            .contentLength((long) data.length)
+                            .build(), RequestBody.fromBytes(data)).eTag();
+                    return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                    throw e;
+                } finally {
+                    partBuffers.release();
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            partBuffers.release();
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private void abort(String storageKey, String uploadId, List<Future<CompletedPart>> parts) {
+        parts.forEach(part -> part.cancel(true));
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket).key(storageKey).uploadId(uploadId).build());
+        } catch (SdkException e) {
+            // Left for the bucket's incomplete multipart upload lifecycle rule
+            log.warn("Failed to abort multipart upload of {}: {}", storageKey, e.getMessage());
+        }
+    }
+
+    // Takes a permit from the shared pool; the caller releases it once the part is sent
+    private byte[] readPart(InputStream in) throws IOException {
+        try {
+            partBuffers.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an upload buffer");
+        }
+        try {
+            byte[] buffer = new byte[partSize];
+            int filled = in.readNBytes(buffer, 0, partSize);
+            return filled == partSize ? buffer : Arrays.copyOf(buffer, filled);
+        } catch (IOException | RuntimeException e) {
+            partBuffers.release();
+            throw e;
+        }
+    }
+
+    private String newStorageKey(String userId, String fileName) {
+        return storageLayout.objectKey(userId, UUID.randomUUID() + "-" + sanitizeFileName(fileName));
+    }
+
+    // Client supplied names may carry directory components; keep only the last segment
+    private String sanitizeFileName(String fileName) {
+        String name = StringUtils.getFilename(StringUtils.cleanPath(fileName != null ? fileName : ""));
+        return StringUtils.hasText(name) && !name.equals("..") ? name : "file";
+    }
+}
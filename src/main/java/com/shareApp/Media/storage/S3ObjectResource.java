@@ -0,0 +1,121 @@
+package com.shareApp.Media.storage;
+
+import org.springframework.core.io.AbstractResource;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * An object in S3. Reads up to one chunk are a single ranged GET; larger reads are split into
+ * ranged GETs fetched in parallel. Size and timestamps come from one lazily issued HEAD.
+ */
+class S3ObjectResource extends AbstractResource implements RangedResource {
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String key;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final int concurrency;
+
+    private HeadObjectResponse head;
+    private boolean missing;
+
+    S3ObjectResource(S3Client s3Client, String bucket, String key, ExecutorService executor, int chunkSize, int concurrency) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.key = key;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.concurrency = concurrency;
+    }
+
+    @Override
+    public boolean exists() {
+        try {
+            return head() != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        HeadObjectResponse response = head();
+        if (response == null) {
+            throw new FileNotFoundException(getDescription() + " does not exist");
+        }
+        return response.contentLength();
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+        HeadObjectResponse response = head();
+        if (response == null) {
+            throw new FileNotFoundException(getDescription() + " does not exist");
+        }
+        return response.lastModified().toEpochMilli();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return getInputStream(0, contentLength());
+    }
+
+    @Override
+    public InputStream getInputStream(long start, long count) throws IOException {
+        if (count <= 0) {
+            return InputStream.nullInputStream();
+        }
+        if (count > chunkSize && concurrency > 1) {
+            return new ParallelRangeInputStream(s3Client, bucket, key, executor, start, count, chunkSize, concurrency);
+        }
+        try {
+            return s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .range("bytes=" + start + "-" + (start + count - 1))
+                    .build());
+        } catch (NoSuchKeyException e) {
+            throw new FileNotFoundException(getDescription() + " does not exist");
+        } catch (SdkException e) {
+            throw new IOException("Failed to read " + getDescription(), e);
+        }
+    }
+
+    @Override
+    public String getFilename() {
+        return key.substring(key.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public String getDescription() {
+        return "S3 object [" + bucket + "/" + key + "]";
+    }
+
+    private synchronized HeadObjectResponse head() throws IOException {
+        if (head == null && !missing) {
+            try {
+                head = s3Client.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build());
+            } catch (S3Exception e) {
+                // HEAD responses carry no body, so a missing key may only show up as a bare 404
+                if (e.statusCode() != 404) {
+                    throw new IOException("Failed to look up " + getDescription(), e);
+                }
+                missing = true;
+            } catch (SdkException e) {
+                throw new IOException("Failed to look up " + getDescription(), e);
+            }
+        }
+        return head;
+    }
+}
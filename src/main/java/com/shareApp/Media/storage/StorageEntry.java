@@ -0,0 +1,19 @@
+package com.shareApp.Media.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageEntry {
+    private String storageKey;
+    private long sizeInBytes;
+    private Instant lastModified;
+    private Instant lastAccessed;
+}
@@ -0,0 +1,59 @@
+package com.shareApp.Media.storage;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Maps objects to {@code <userId>/<h1>/<h2>/<name>}, where the intermediate directories are
+ * taken from a hash of the object name. This keeps directories small for heavy users.
+ * With {@code levels=0}, the default, the layout is the original flat {@code <userId>/<name>};
+ * existing installations that raise it should enable the layout migration at the same time.
+ */
+@Component
+public class StorageLayout {
+
+    @Value("${media.storage.fanout.levels:0}")
+    private int levels;
+
+    @Value("${media.storage.fanout.width:2}")
+    private int width;
+
+    @PostConstruct
+    public void validate() {
+        if (levels < 0 || width < 1 || levels * width > 32) {
+            throw new IllegalStateException("media.storage.fanout must satisfy levels * width <= 32");
+        }
+    }
+
+    public String objectKey(String userId, String objectName) {
+        StringBuilder key = new StringBuilder(userId).append('/');
+        String hash = DigestUtils.md5DigestAsHex(objectName.getBytes(StandardCharsets.UTF_8));
+        for (int level = 0; level < levels; level++) {
+            key.append(hash, level * width, (level + 1) * width).append('/');
+        }
+        return key.append(objectName).toString();
+    }
+
+    /**
+     * Returns where the given key lives in the current layout; keys outside the per-user tree are returned unchanged.
+     */
+    public String canonicalKey(String storageKey) {
+        int first = storageKey.indexOf('/');
+        int last = storageKey.lastIndexOf('/');
+        if (first <= 0 || last == storageKey.length() - 1) {
+            return storageKey;
+        }
+        return objectKey(storageKey.substring(0, first), storageKey.substring(last + 1));
+    }
+
+    /**
+     * Regex matching keys already in the current layout, used to find records still to migrate.
+     */
+    public String canonicalKeyPattern() {
+        return "^[^/]+/" + ("[0-9a-f]{" + width + "}/").repeat(levels) + "[^/]+$";
+    }
+}
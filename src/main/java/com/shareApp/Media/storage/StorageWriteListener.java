@@ -0,0 +1,13 @@
+package com.shareApp.Media.storage;
+
+/**
+ * Receives the latency of each completed {@link DurableFileWriter} write.
+ */
+public interface StorageWriteListener {
+
+    /**
+     * @param bytes        bytes written to the file
+     * @param elapsedNanos time spent writing, syncing and renaming, excluding reads from the source stream
+     */
+    void onWrite(long bytes, long elapsedNanos);
+}
@@ -0,0 +1,17 @@
+package com.shareApp.Media.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredObject {
+    private String storageKey;
+    private long sizeInBytes; // Original content length
+    private long storedSizeInBytes; // Bytes on disk after encoding
+    private String codec; // null when stored as-is
+}
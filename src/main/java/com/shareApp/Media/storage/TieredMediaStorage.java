@@ -0,0 +1,267 @@
+package com.shareApp.Media.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Keeps new and recently read objects on a hot volume ({@code media.local.path}) and moves idle
+ * ones to a cold volume under the same key. Reads check the hot tier, then the cold tier, then the
+ * hot tier again in case a promotion finished in between.
+ * A move copies the file into the other tier, renames it into place and only then deletes the
+ * source, so at every moment at least one tier holds the object and readers never wait.
+ * <p>
+ * Recency is the file's access time, refreshed at most once per touch interval on read so it
+ * does not depend on the mount's atime options. Cold reads are also counted in memory, and
+ * objects read often enough are promoted back on the next migration run.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "media.storage.backend", havingValue = "tiered")
+@Slf4j
+public class TieredMediaStorage implements MediaStorage {
+
+    private final LocalMediaStorage hotTier;
+    private final StorageLayout storageLayout;
+
+    // Last access time written per key, so repeated reads skip the attribute update
+    private final ConcurrentMap<String, Long> lastTouched = new ConcurrentHashMap<>();
+    // Reads served from the cold tier since the last migration run
+    private final ConcurrentMap<String, AtomicInteger> coldReads = new ConcurrentHashMap<>();
+    private final AtomicBoolean migrating = new AtomicBoolean();
+
+    @Value("${media.local.path}")
+    private String hotPath;
+
+    @Value("${media.storage.tiered.cold-path}")
+    private String coldPath;
+
+    @Value("${media.storage.tiered.demote-after-days:7}")
+    private long demoteAfterDays;
+
+    @Value("${media.storage.tiered.promote-after-reads:3}")
+    private int promoteAfterReads;
+
+    @Value("${media.storage.tiered.touch-interval-minutes:60}")
+    private long touchIntervalMinutes;
+
+    @Value("${media.storage.tiered.max-bytes-per-run:10737418240}")
+    private long maxBytesPerRun;
+
+    public TieredMediaStorage(LocalMediaStorage hotTier, StorageLayout storageLayout) {
+        this.hotTier = hotTier;
+        this.storageLayout = storageLayout;
+    }
+
+    @Override
+    public StoredObject store(String userId, String fileName, String contentType, InputStream content) {
+        return hotTier.store(userId, fileName, contentType, content);
+    }
+
+    @Override
+    public StoredObject store(String userId, String fileName, String contentType, InputStream content, long expectedSize) {
+        return hotTier.store(userId, fileName, contentType, content, expectedSize);
+    }
+
+    @Override
+    public StoredObject store(String userId, String fileName, String contentType, Path source) {
+        return hotTier.store(userId, fileName, contentType, source);
+    }
+
+    @Override
+    public Resource download(String storageKey) {
+        Resource hot = hotTier.download(storageKey);
+        if (hot.exists()) {
+            touch(storageKey, hot);
+            return hot;
+        }
+        Path cold = resolveCold(storageKey);
+        if (Files.exists(cold)) {
+            Resource resource = new FileSystemResource(cold);
+            touch(storageKey, resource);
+            coldReads.computeIfAbsent(storageKey, key -> new AtomicInteger()).incrementAndGet();
+            return resource;
+        }
+        // A promotion may have renamed the object into the hot tier and removed the cold copy
+        // between the two checks; the copy lands before the source goes, so look once more
+        Resource promoted = hotTier.download(storageKey);
+        if (promoted.exists()) {
+            touch(storageKey, promoted);
+        }
+        return promoted;
+    }
+
+    @Override
+    public void delete(String storageKey) {
+        hotTier.delete(storageKey);
+        try {
+            Files.deleteIfExists(resolveCold(storageKey));
+        } catch (IOException e) {
+            log.error("Failed to delete cold copy of {}: {}", storageKey, e.getMessage());
+            throw new RuntimeException("Failed to delete file", e);
+        }
+        lastTouched.remove(storageKey);
+        coldReads.remove(storageKey);
+    }
+
+    @Override
+    public List<String> listPartitions() {
+        Set<String> partitions = new TreeSet<>(LocalStorageTree.topLevelDirectories(Paths.get(hotPath)));
+        partitions.addAll(LocalStorageTree.topLevelDirectories(Paths.get(coldPath)));
+        return List.copyOf(partitions);
+    }
+
+    @Override
+    public Stream<StorageEntry> listEntries(String partition) {
+        return Stream.concat(walkIfPresent(Paths.get(hotPath), partition), walkIfPresent(Paths.get(coldPath), partition));
+    }
+
+    @Scheduled(fixedDelayString = "${media.storage.tiered.migration-interval-ms:600000}")
+    public void migrate() {
+        if (!migrating.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long moved = promote(maxBytesPerRun);
+            moved += demote(maxBytesPerRun - moved);
+            long touchHorizon = System.currentTimeMillis() - Duration.ofMinutes(touchIntervalMinutes).toMillis();
+            lastTouched.values().removeIf(touched -> touched < touchHorizon);
+            if (moved > 0) {
+                log.info("Storage tier migration moved {} bytes", moved);
+            }
+        } catch (RuntimeException e) {
+            log.error("Storage tier migration failed: {}", e.getMessage());
+        } finally {
+            migrating.set(false);
+        }
+    }
+
+    private long promote(long budget) {
+        Map<String, AtomicInteger> reads = new HashMap<>(coldReads);
+        coldReads.clear();
+        long moved = 0;
+        for (Map.Entry<String, AtomicInteger> entry : reads.entrySet()) {
+            if (entry.getValue().get() < promoteAfterReads || moved >= budget) {
+                continue;
+            }
+            String key = entry.getKey();
+            moved += move(key, resolveCold(key), Paths.get(hotPath).resolve(key), Paths.get(hotPath));
+        }
+        return moved;
+    }
+
+    private long demote(long budget) {
+        Instant cutoff = Instant.now().minus(Duration.ofDays(demoteAfterDays));
+        Path hotRoot = Paths.get(hotPath);
+        long moved = 0;
+        for (String partition : LocalStorageTree.topLevelDirectories(hotRoot)) {
+            try (Stream<StorageEntry> entries = LocalStorageTree.walk(hotRoot, partition)) {
+                Iterator<StorageEntry> iterator = entries.iterator();
+                while (iterator.hasNext() && moved < budget) {
+                    StorageEntry entry = iterator.next();
+                    Instant lastUsed = latest(entry.getLastModified(), entry.getLastAccessed());
+                    if (lastUsed.isBefore(cutoff)) {
+                        String key = entry.getStorageKey();
+                        moved += move(key, hotRoot.resolve(key), Paths.get(coldPath).resolve(key), Paths.get(coldPath));
+                    }
+                }
+            }
+            if (moved >= budget) {
+                break;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Copies the object into the target tier, renames it into place and then removes the source.
+     * Returns the number of bytes moved, or 0 when the object was not moved.
+     */
+    private long move(String storageKey, Path source, Path target, Path targetRoot) {
+        Path temp = null;
+        try {
+            Path tempDir = targetRoot.resolve(".tmp");
+            Files.createDirectories(tempDir);
+            temp = tempDir.resolve(UUID.randomUUID() + ".tier");
+            // Times are copied so neither the garbage collector nor the next demotion sees a fresh file
+            Files.copy(source, temp, StandardCopyOption.COPY_ATTRIBUTES);
+            long size = Files.size(temp);
+            Files.createDirectories(target.getParent());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temp = null;
+
+            if (!Files.deleteIfExists(source)) {
+                // Deleted while it was being copied; do not resurrect it in the other tier
+                Files.deleteIfExists(target);
+                return 0;
+            }
+            log.debug("Moved {} ({} bytes) to {}", storageKey, size, targetRoot);
+            return size;
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            log.warn("Failed to move {} between storage tiers: {}", storageKey, e.getMessage());
+            return 0;
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    log.warn("Failed to remove temporary file {}: {}", temp, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void touch(String storageKey, Resource resource) {
+        long now = System.currentTimeMillis();
+        Long previous = lastTouched.get(storageKey);
+        if (previous != null && now - previous < Duration.ofMinutes(touchIntervalMinutes).toMillis()) {
+            return;
+        }
+        lastTouched.put(storageKey, now);
+        try {
+            // Only the access time changes; the modification time still drives the garbage collector's grace period
+            Files.getFileAttributeView(resource.getFile().toPath(), BasicFileAttributeView.class)
+                    .setTimes(null, FileTime.fromMillis(now), null);
+        } catch (IOException e) {
+            log.debug("Failed to record access to {}: {}", storageKey, e.getMessage());
+        }
+    }
+
+    // A record may still hold a key from before the layout migration
+    private Path resolveCold(String storageKey) {
+        Path path = Paths.get(coldPath).resolve(storageKey);
+        if (Files.exists(path)) {
+            return path;
+        }
+        return Paths.get(coldPath).resolve(storageLayout.canonicalKey(storageKey));
+    }
+
+    private Stream<StorageEntry> walkIfPresent(Path root, String partition) {
+        return Files.isDirectory(root.resolve(partition)) ? LocalStorageTree.walk(root, partition) : Stream.empty();
+    }
+
+    private static Instant latest(Instant first, Instant second) {
+        return second != null && second.isAfter(first) ? second : first;
+    }
+}
@@ -0,0 +1,240 @@
+package com.shareApp.Media.web;
+
+import com.shareApp.Media.storage.RangedResource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StreamUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a stored resource to the response honouring {@code Range} and {@code If-Range}.
+ * File backed resources go through Tomcat's sendfile where the connector supports it,
+ * otherwise through {@link FileChannel#transferTo}, so only the requested bytes are read.
+ * Object store resources are asked for just the requested range.
+ */
+@Component
+@Slf4j
+public class RangeResponseWriter {
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Value("${media.download.sendfile:true}")
+    private boolean sendfileEnabled;
+
+    public void write(HttpServletRequest request, HttpServletResponse response, Resource resource,
+                      String fileName, String contentType, String etag, Instant lastModified) throws IOException {
+        long length = resource.contentLength();
+        String type = contentType != null ? contentType : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        boolean headOnly = "HEAD".equalsIgnoreCase(request.getMethod());
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(fileName, StandardCharsets.UTF_8).build().toString());
+        if (etag != null) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+        }
+        if (lastModified != null) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified.toEpochMilli());
+        }
+
+        List<HttpRange> ranges = requestedRanges(request, etag, lastModified);
+        List<long[]> regions = ranges.isEmpty() ? List.of() : toRegions(ranges, length);
+        if (regions == null) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        if (regions.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(type);
+            response.setContentLengthLong(length);
+            if (!headOnly) {
+                writeRegion(request, response, resource, 0, length, true);
+            }
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (regions.size() == 1) {
+            long start = regions.get(0)[0];
+            long count = regions.get(0)[1];
+            response.setContentType(type);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(start, count, length));
+            response.setContentLengthLong(count);
+            if (!headOnly) {
+                writeRegion(request, response, resource, start, count, true);
+            }
+            return;
+        }
+
+        writeMultipart(request, response, resource, regions, type, length, headOnly);
+    }
+
+    private void writeMultipart(HttpServletRequest request, HttpServletResponse response, Resource resource,
+                                List<long[]> regions, String type, long length, boolean headOnly) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        List<byte[]> partHeaders = new ArrayList<>(regions.size());
+        long contentLength = 0;
+        for (long[] region : regions) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + type + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(region[0], region[1], length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + region[1];
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (headOnly) {
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        for (int i = 0; i < regions.size(); i++) {
+            out.write(partHeaders.get(i));
+            writeRegion(request, response, resource, regions.get(i)[0], regions.get(i)[1], false);
+        }
+        out.write(closing);
+    }
+
+    private void writeRegion(HttpServletRequest request, HttpServletResponse response, Resource resource,
+                             long start, long count, boolean wholeBody) throws IOException {
+        if (resource instanceof RangedResource ranged) {
+            // Fetch only the requested bytes from the backend instead of skipping up to them
+            try (InputStream in = ranged.getInputStream(start, count)) {
+                StreamUtils.copy(in, response.getOutputStream());
+            }
+            return;
+        }
+        if (!resource.isFile()) {
+            try (InputStream in = resource.getInputStream()) {
+                StreamUtils.copyRange(in, response.getOutputStream(), start, start + count - 1);
+            }
+            return;
+        }
+
+        File file = resource.getFile();
+        // Hand the region to the connector; Tomcat then streams it with sendfile after we return
+        if (wholeBody && sendfileEnabled && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    throw new IOException("File shrank while being served: " + file);
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    /**
+     * Returns the ranges to serve, or an empty list when the whole representation should be sent.
+     */
+    private List<HttpRange> requestedRanges(HttpServletRequest request, String etag, Instant lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !rangeHeader.startsWith("bytes=")) {
+            return List.of();
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRangeMatches(ifRange, etag, lastModified)) {
+            return List.of();
+        }
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring malformed Range header '{}': {}", rangeHeader, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private boolean ifRangeMatches(String ifRange, String etag, Instant lastModified) {
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            // Only strong validators may be used with If-Range
+            return etag != null && !value.startsWith("W/") && value.equals(etag);
+        }
+        if (lastModified == null) {
+            return false;
+        }
+        try {
+            long since = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            return since == lastModified.getEpochSecond();
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Resolves ranges into [start, count] pairs; returns null when none can be satisfied, and an
+     * empty list when the ranges add up to more than the resource, which is then sent whole.
+     */
+    private List<long[]> toRegions(List<HttpRange> ranges, long length) {
+        List<long[]> regions = new ArrayList<>(ranges.size());
+        long total = 0;
+        for (HttpRange range : ranges) {
+            long start;
+            long end;
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (start >= length || end < start) {
+                continue;
+            }
+            regions.add(new long[]{start, end - start + 1});
+            total += end - start + 1;
+        }
+        if (regions.isEmpty()) {
+            return null;
+        }
+        if (regions.size() > 1 && total > length) {
+            return List.of();
+        }
+        return regions;
+    }
+
+    private String contentRange(long start, long count, long length) {
+        return "bytes " + start + "-" + (start + count - 1) + "/" + length;
+    }
+}
@@ -0,0 +1,72 @@
+package com.shareApp.Media.web;
+
+import com.shareApp.Authentication.entities.User;
+import com.shareApp.Media.service.UploadAdmissionService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Applies {@link UploadAdmissionService} to upload endpoints before any of the body is read,
+ * so rejected clients are answered with {@code 429}/{@code 507} instead of streaming a large file
+ * first. Runs after Spring Security, so the caller is already authenticated.
+ */
+@Component
+public class UploadAdmissionFilter extends OncePerRequestFilter {
+
+    private static final Pattern CHUNK_PATH = Pattern.compile("^/media/uploads/[^/]+/chunks/[^/]+$");
+
+    private final UploadAdmissionService uploadAdmissionService;
+    private final HandlerExceptionResolver handlerExceptionResolver;
+
+    public UploadAdmissionFilter(UploadAdmissionService uploadAdmissionService,
+                                 @Qualifier("handlerExceptionResolver") HandlerExceptionResolver handlerExceptionResolver) {
+        this.uploadAdmissionService = uploadAdmissionService;
+        this.handlerExceptionResolver = handlerExceptionResolver;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return switch (request.getMethod()) {
+            case "POST" -> !path.equals("/media/upload") && !path.equals("/media/upload/batch");
+            case "PUT" -> !path.equals("/media/stream") && !CHUNK_PATH.matcher(path).matches();
+            default -> true;
+        };
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        UploadAdmissionService.Permit permit;
+        try {
+            permit = uploadAdmissionService.acquire(currentUserId(), request.getContentLengthLong());
+        } catch (RuntimeException e) {
+            // Tell well-behaved clients not to send the body they are holding
+            response.setHeader("Connection", "close");
+            handlerExceptionResolver.resolveException(request, response, null, e);
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permit.release();
+        }
+    }
+
+    private String currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof User user ? user.getId() : null;
+    }
+}
@@ -124,7 +124,7 @@ public class PaymentInformationController {
         Map<String, Object> response = new HashMap<>();
         response.put("userId", userId);
         response.put("dailyCostUSD", dailyCost);
-        response.put("period", "Last 24 hours");
+        response.put("period", "Today (UTC)");
         response.put("timestamp", java.time.Instant.now());
 
         return ResponseEntity.ok(response);
@@ -150,11 +150,11 @@ public class PaymentInformationController {
         java.time.Instant start = startOfMonth.atStartOfDay(java.time.ZoneOffset.UTC).toInstant();
         java.time.Instant end = endOfMonth.atTime(23, 59, 59).atZone(java.time.ZoneOffset.UTC).toInstant();
 
-        double totalCost = paymentInformationService.getTotalCostForPeriod(userId, start, end);
+        double totalCost = paymentInformationService.calculateMonthlyStorageCost(userId, targetMonth, targetYear);
         long currentStorage = paymentInformationService.calculateTotalUserStorage(userId);
 
         // Calculate monthly statistics
-        Map<String, Object> monthlyStats = paymentInformationService.getMonthlyStorageStats(userId, start, end);
+        Map<String, Object> monthlyStats = paymentInformationService.getMonthlyStorageStats(userId, targetMonth, targetYear);
 
         Map<String, Object> response = new HashMap<>();
         response.put("userId", userId);
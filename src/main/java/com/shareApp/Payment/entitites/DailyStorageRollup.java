@@ -0,0 +1,50 @@
+package com.shareApp.Payment.entitites;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Storage use of one user on one UTC day, summed over the completed tracking periods that
+ * overlap the day. A period spanning several days contributes its share to each of them.
+ */
+@Document(collection = "dailyStorageRollups")
+@CompoundIndex(name = "user_day", def = "{'userId': 1, 'day': 1}")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyStorageRollup {
+
+    @Id
+    private String id; // <userId>:<yyyy-MM-dd>
+
+    private String userId;
+
+    private String day; // yyyy-MM-dd, UTC
+
+    private long byteSeconds;
+
+    private long seconds; // Covered by completed periods
+
+    private double cost;
+
+    private long minStorageBytes;
+
+    private long maxStorageBytes;
+
+    private long periods;
+
+    // Periods added whose own rolledUp flag is not set yet, so a retried period is not added twice;
+    // removed again once the period is marked, so this only holds periods in flight
+    private List<String> pendingPeriodIds;
+
+    private Instant updatedAt;
+}
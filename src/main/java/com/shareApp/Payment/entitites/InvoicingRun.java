@@ -0,0 +1,49 @@
+package com.shareApp.Payment.entitites;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Progress of the month-end invoicing run of one billing month. Users are processed in id
+ * order and the checkpoint only advances past a page once every user in it is done, so a
+ * restarted run continues from {@code lastUserId}. Only the instance holding the lease works
+ * on a run; a lease that is not renewed expires, so a crashed instance's run is taken over.
+ */
+@Document(collection = "invoicingRuns")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoicingRun {
+
+    @Id
+    private String id; // yyyy-MM
+
+    private String status; // "RUNNING", "COMPLETED"
+
+    private String lastUserId;
+
+    private int pass;
+
+    private long invoiced;
+
+    private long skipped;
+
+    private long failed; // In the current pass
+
+    private Instant startedAt;
+
+    private Instant updatedAt;
+
+    private Instant completedAt;
+
+    private String leaseOwner;
+
+    private Instant leaseExpiresAt;
+}
@@ -44,6 +44,14 @@ public class Payment {
     @Field("status")
     private PaymentStatus status;
 
+    @Field("billing_period")
+    private String billingPeriod; // yyyy-MM
+
+    // <userId>:<yyyy-MM> for invoices created by the month-end run, which creates at most one per user and month
+    @Field("invoice_key")
+    @Indexed(unique = true, sparse = true)
+    private String invoiceKey;
+
     @CreatedDate
     @Field("created_at")
     private LocalDateTime createdAt;
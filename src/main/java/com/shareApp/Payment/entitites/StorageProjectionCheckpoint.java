@@ -0,0 +1,28 @@
+package com.shareApp.Payment.entitites;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Last usage event sequence applied to a user's billing views.
+ */
+@Document(collection = "storageProjections")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageProjectionCheckpoint {
+
+    @Id
+    private String id; // userId
+
+    private long lastSequence;
+
+    private Instant updatedAt;
+}
@@ -0,0 +1,30 @@
+package com.shareApp.Payment.entitites;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Lets one instance at a time project the storage usage ledger. The lease is taken for a pass,
+ * renewed after every batch and released at the end; one that is not renewed expires, so a
+ * crashed instance does not stop projection.
+ */
+@Document(collection = "storageProjectionLeases")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageProjectionLease {
+
+    @Id
+    private String id;
+
+    private String leaseOwner;
+
+    private Instant leaseExpiresAt;
+}
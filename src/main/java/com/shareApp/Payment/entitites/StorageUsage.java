@@ -5,11 +5,21 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
 
 @Document(collection = "storageUsage")
+@CompoundIndexes({
+        @CompoundIndex(name = "user_status_timestamp", def = "{'userId': 1, 'status': 1, 'timestamp': -1}"),
+        // Only completed periods still waiting for their daily rollup, so both stay small
+        @CompoundIndex(name = "pending_rollup_user", def = "{'userId': 1, 'periodStart': 1}",
+                partialFilter = "{'status': 'COMPLETED', 'rolledUp': false}"),
+        @CompoundIndex(name = "pending_rollup", def = "{'rolledUp': 1, '_id': 1}",
+                partialFilter = "{'status': 'COMPLETED', 'rolledUp': false}")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -24,6 +34,12 @@ public class StorageUsage {
     private Instant timestamp;
     
     private long storageUsedInBytes;
+
+    // Byte-seconds on top of storageUsedInBytes * duration, for a period that merges several storage changes;
+    // they cover the intermediate totals between the previous period's end and this period's start
+    private long adjustmentByteSeconds;
+    
+    private long sequence; // Ledger sequence of the last event the period reflects; 0 before the ledger
     
     private Instant periodStart;
     
@@ -36,4 +52,6 @@ public class StorageUsage {
     private double calculatedCost;
     
     private String status; // "ACTIVE", "COMPLETED", "CALCULATED"
+
+    private boolean rolledUp; // Included in the daily rollups; always written, so pending periods match rolledUp: false
 }
\ No newline at end of file
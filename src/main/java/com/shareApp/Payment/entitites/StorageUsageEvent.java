@@ -0,0 +1,51 @@
+package com.shareApp.Payment.entitites;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * One change to a user's stored bytes, appended once and never updated except for the
+ * projection flag. Sequences are per user and come from the user's storage counter.
+ * Projected events expire after 30 days; the checkpoint, not the events, records progress.
+ */
+@Document(collection = "storageUsageEvents")
+@CompoundIndex(name = "pending_user_sequence", def = "{'projected': 1, 'userId': 1, 'sequence': 1}")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageUsageEvent {
+
+    @Id
+    private String id; // <userId>:<sequence>, so a repeated append cannot create a second event
+
+    private String userId;
+
+    private long sequence;
+
+    private String actionType; // "UPLOAD", "DELETE", "ADJUSTMENT"
+
+    private String mediaId;
+
+    private String fileName;
+
+    private long changeInBytes; // Signed
+
+    private long totalBytesAfter;
+
+    private Instant occurredAt;
+
+    private boolean projected;
+
+    // Projected events are only kept for auditing; MongoDB removes them once this is old enough
+    @Indexed(name = "projected_ttl", expireAfter = "30d")
+    private Instant projectedAt;
+}
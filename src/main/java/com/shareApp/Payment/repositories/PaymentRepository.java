@@ -21,4 +21,6 @@ public interface PaymentRepository extends MongoRepository<Payment, String> {
     List<Payment> findByUserIdAndStatus(String userId, Payment.PaymentStatus status);
 
     Long countByUserIdAndStatus(String userId, Payment.PaymentStatus status);
+
+    boolean existsByInvoiceKey(String invoiceKey);
 }
\ No newline at end of file
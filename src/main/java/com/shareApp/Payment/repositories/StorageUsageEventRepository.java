@@ -0,0 +1,17 @@
+package com.shareApp.Payment.repositories;
+
+import com.shareApp.Payment.entitites.StorageUsageEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface StorageUsageEventRepository extends MongoRepository<StorageUsageEvent, String> {
+
+    @Query(value = "{'projected': false}", sort = "{'userId': 1, 'sequence': 1}")
+    List<StorageUsageEvent> findPending(Pageable pageable);
+
+    boolean existsByProjectedFalseAndUserIdAndOccurredAtBefore(String userId, Instant before);
+}
@@ -21,6 +21,7 @@ public interface StorageUsageRepository extends MongoRepository<StorageUsage, St
     @Query("{'userId': ?0, 'status': 'ACTIVE'}")
     List<StorageUsage> findActiveStorageByUserId(String userId);
     
-    @Query("{'userId': ?0, 'periodStart': {$gte: ?1}, 'periodEnd': {$lte: ?2}}")
-    List<StorageUsage> findByUserIdAndPeriodBetween(String userId, Instant start, Instant end);
+    // Completed periods overlapping [start, end), including empty ones at start that may carry an adjustment
+    @Query("{'userId': ?0, 'status': 'COMPLETED', 'periodStart': {$lt: ?2}, 'periodEnd': {$gte: ?1}}")
+    List<StorageUsage> findCompletedOverlapping(String userId, Instant start, Instant end);
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.shareApp.Payment.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Turns accumulated {@link ByteSeconds} into money. The rate is held as an integer number of
+ * 10^-18 USD per byte-second, so a bill is one 128-bit multiplication and a single decimal
+ * conversion, however many tracking periods went into it.
+ */
+@Component
+public class BillingEngine {
+
+    private static final int RATE_SCALE = 18;
+
+    private final long rateUnits;
+    private final double rate;
+
+    public BillingEngine(@Value("${storage.cost.per.byte.per.second:0.000000001}") BigDecimal costPerBytePerSecond) {
+        try {
+            this.rateUnits = costPerBytePerSecond.movePointRight(RATE_SCALE).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalStateException("storage.cost.per.byte.per.second must have at most "
+                    + RATE_SCALE + " decimal places", e);
+        }
+        if (rateUnits < 0) {
+            throw new IllegalStateException("storage.cost.per.byte.per.second must not be negative");
+        }
+        this.rate = costPerBytePerSecond.doubleValue();
+    }
+
+    /**
+     * Rate as a double, for estimates and for the cost stored on individual periods.
+     */
+    public double costPerBytePerSecond() {
+        return rate;
+    }
+
+    /**
+     * Exact cost of the given usage in USD, unrounded.
+     */
+    public BigDecimal cost(ByteSeconds usage) {
+        if (usage.fitsInLong()) {
+            long byteSeconds = usage.longValueExact();
+            long productHigh = Math.multiplyHigh(byteSeconds, rateUnits);
+            long productLow = byteSeconds * rateUnits;
+            if (productHigh == (productLow >> 63)) {
+                return BigDecimal.valueOf(productLow, RATE_SCALE);
+            }
+        }
+        return new BigDecimal(usage.toBigInteger().multiply(BigInteger.valueOf(rateUnits)), RATE_SCALE);
+    }
+
+    /**
+     * Cost of the given usage rounded to cents, the amount that is actually invoiced.
+     */
+    public BigDecimal invoiceAmount(ByteSeconds usage) {
+        return cost(usage).setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,151 @@
+package com.shareApp.Payment.services;
+
+import com.shareApp.Payment.repositories.StorageUsageEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Per-user, per-month billing results. A month is final once it ended more than the grace period
+ * ago, its daily rollups cover it and none of the user's ledger events from before its end are
+ * still waiting to be projected; its results are then kept until evicted. Any other month expires
+ * after a short TTL and is dropped as soon as the user's storage changes. The cache is bounded
+ * with least recently used eviction, and concurrent lookups of the same missing entry share one
+ * computation.
+ */
+@Component
+@RequiredArgsConstructor
+public class BillingResultCache {
+
+    private final DailyRollupService dailyRollupService;
+    private final StorageUsageEventRepository eventRepository;
+
+    private final ConcurrentMap<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    // Access ordered, guarded by itself
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    @Value("${billing.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${billing.cache.open-month-ttl-seconds:30}")
+    private long openMonthTtlSeconds;
+
+    @Value("${billing.cache.closed-month-grace-minutes:60}")
+    private long closedMonthGraceMinutes;
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String userId, YearMonth month, Kind kind, Supplier<T> compute) {
+        Key key = new Key(userId, month, kind);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt - System.nanoTime() > 0) {
+                    return (T) entry.value;
+                }
+                entries.remove(key);
+            }
+        }
+
+        CompletableFuture<Object> computation = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, computation);
+        if (existing != null) {
+            return (T) await(existing);
+        }
+
+        // Decided before computing, so a final result never comes from data that was still changing
+        long expiresAt = isFinal(userId, month) ? Long.MAX_VALUE : System.nanoTime() + openMonthTtlSeconds * 1_000_000_000L;
+        T value;
+        try {
+            value = compute.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(key, computation);
+            computation.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (entries) {
+            // Not stored if the user's storage changed while it was computed
+            if (inFlight.remove(key, computation)) {
+                entries.put(key, new Entry(value, expiresAt));
+                Iterator<Key> eldest = entries.keySet().iterator();
+                while (entries.size() > maxEntries && eldest.hasNext()) {
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+        }
+        computation.complete(value);
+        return value;
+    }
+
+    /**
+     * Drops the user's results for the months that can still change. Older months are only
+     * cached for good once final, and otherwise expire on their own.
+     */
+    public void invalidate(String userId) {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        synchronized (entries) {
+            for (YearMonth month : new YearMonth[]{current, current.minusMonths(1)}) {
+                if (month.equals(current) || !isClosed(month)) {
+                    for (Kind kind : Kind.values()) {
+                        Key key = new Key(userId, month, kind);
+                        inFlight.remove(key);
+                        entries.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isFinal(String userId, YearMonth month) {
+        if (!isClosed(month)) {
+            return false;
+        }
+        Instant start = month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant end = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        return dailyRollupService.covers(userId, start, end)
+                && !eventRepository.existsByProjectedFalseAndUserIdAndOccurredAtBefore(userId, end);
+    }
+
+    private boolean isClosed(YearMonth month) {
+        Instant closesAt = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant()
+                .plusSeconds(closedMonthGraceMinutes * 60);
+        return Instant.now().isAfter(closesAt);
+    }
+
+    private static Object await(CompletableFuture<Object> computation) {
+        try {
+            return computation.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for billing result", e);
+        }
+    }
+
+    public enum Kind {
+        MONTHLY_COST, MONTHLY_STATS
+    }
+
+    private record Key(String userId, YearMonth month, Kind kind) {
+    }
+
+    private record Entry(Object value, long expiresAt) {
+    }
+}
@@ -0,0 +1,61 @@
+package com.shareApp.Payment.services;
+
+import java.math.BigInteger;
+
+/**
+ * Exact running total of storage usage in byte-seconds, kept as a signed 128-bit integer so
+ * that large users over long ranges never overflow and no rounding happens before invoicing.
+ * Not thread safe.
+ */
+public final class ByteSeconds {
+
+    private static final BigInteger LOW_MASK = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+
+    private long high;
+    private long low;
+
+    /**
+     * Adds {@code bytes} stored for {@code seconds}.
+     */
+    public ByteSeconds add(long bytes, long seconds) {
+        add128(Math.multiplyHigh(bytes, seconds), bytes * seconds);
+        return this;
+    }
+
+    public ByteSeconds add(long byteSeconds) {
+        add128(byteSeconds >> 63, byteSeconds);
+        return this;
+    }
+
+    public ByteSeconds add(ByteSeconds other) {
+        add128(other.high, other.low);
+        return this;
+    }
+
+    public boolean fitsInLong() {
+        return high == (low >> 63);
+    }
+
+    public long longValueExact() {
+        if (!fitsInLong()) {
+            throw new ArithmeticException("Byte-seconds exceed the long range");
+        }
+        return low;
+    }
+
+    public BigInteger toBigInteger() {
+        return BigInteger.valueOf(high).shiftLeft(64).or(BigInteger.valueOf(low).and(LOW_MASK));
+    }
+
+    private void add128(long otherHigh, long otherLow) {
+        long sum = low + otherLow;
+        long carry = Long.compareUnsigned(sum, low) < 0 ? 1 : 0;
+        low = sum;
+        high = high + otherHigh + carry;
+    }
+
+    @Override
+    public String toString() {
+        return toBigInteger().toString();
+    }
+}
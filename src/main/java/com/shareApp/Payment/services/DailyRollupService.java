@@ -0,0 +1,218 @@
+package com.shareApp.Payment.services;
+
+import com.shareApp.Payment.entitites.DailyStorageRollup;
+import com.shareApp.Payment.entitites.StorageUsage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Maintains per-user, per-day totals of completed storage tracking periods, so a month is
+ * billed from about 31 documents however many uploads and deletes it had. Rollups have day
+ * granularity: a range is answered with the whole UTC days it touches.
+ * <p>
+ * A period is added to its days first and marked {@code rolledUp} afterwards. While it is in
+ * between, its id is kept on the day documents so a retry does not add it twice, and
+ * {@link #releasePeriod} removes it once the mark is saved.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DailyRollupService {
+
+    private static final int BACKFILL_BATCH = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final AtomicBoolean backfilling = new AtomicBoolean();
+    private volatile boolean legacyPeriodsMarked;
+
+    /**
+     * Adds a completed period to the days it overlaps. Adding the same period again has no effect.
+     */
+    public void recordPeriod(StorageUsage usage) {
+        long start = usage.getPeriodStart().getEpochSecond();
+        long end = Math.max(start, usage.getPeriodEnd().getEpochSecond());
+        LocalDate day = LocalDate.ofEpochDay(Math.floorDiv(start, 86_400));
+        // A merged period's adjustment covers the few seconds before its start, so it goes to the first day
+        long adjustment = usage.getAdjustmentByteSeconds();
+        do {
+            long dayStart = day.toEpochDay() * 86_400;
+            long sliceStart = Math.max(start, dayStart);
+            long sliceEnd = Math.min(end, dayStart + 86_400);
+            addSlice(usage, day, sliceEnd - sliceStart, adjustment);
+            adjustment = 0;
+            day = day.plusDays(1);
+        } while (day.toEpochDay() * 86_400 < end);
+    }
+
+    /**
+     * Drops the period's in-flight marker from its days. Call once its {@code rolledUp} flag is saved.
+     */
+    public void releasePeriod(StorageUsage usage) {
+        long start = usage.getPeriodStart().getEpochSecond();
+        long end = Math.max(start, usage.getPeriodEnd().getEpochSecond());
+        Query query = Query.query(dayRange(usage.getUserId(), Instant.ofEpochSecond(start), Instant.ofEpochSecond(end + 1))
+                .and("pendingPeriodIds").is(usage.getId()));
+        mongoTemplate.updateMulti(query, new Update().pull("pendingPeriodIds", usage.getId()), DailyStorageRollup.class);
+    }
+
+    /**
+     * True when every completed period overlapping the range has been rolled up, so the rollups
+     * alone give the right answer.
+     */
+    public boolean covers(String userId, Instant start, Instant end) {
+        return !mongoTemplate.exists(Query.query(Criteria.where("userId").is(userId)
+                .and("status").is("COMPLETED")
+                .and("rolledUp").is(false)
+                .and("periodStart").lt(end)
+                .and("periodEnd").gt(start)), StorageUsage.class);
+    }
+
+    /**
+     * Exact usage over the days of the range. Summed here rather than with $sum, which silently
+     * turns an overflowing long total into a double.
+     */
+    public ByteSeconds byteSeconds(String userId, Instant start, Instant end) {
+        Query query = Query.query(dayRange(userId, start, end));
+        query.fields().include("byteSeconds");
+        ByteSeconds usage = new ByteSeconds();
+        for (DailyStorageRollup rollup : mongoTemplate.find(query, DailyStorageRollup.class)) {
+            usage.add(rollup.getByteSeconds());
+        }
+        return usage;
+    }
+
+    public Totals totals(String userId, Instant start, Instant end) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(dayRange(userId, start, end)),
+                Aggregation.group()
+                        .sum("cost").as("cost")
+                        .sum("byteSeconds").as("byteSeconds")
+                        .sum("seconds").as("seconds")
+                        .min("minStorageBytes").as("minStorageBytes")
+                        .max("maxStorageBytes").as("maxStorageBytes")
+                        .sum("periods").as("periods"));
+        Document result = mongoTemplate.aggregate(aggregation, DailyStorageRollup.class, Document.class).getUniqueMappedResult();
+        if (result == null) {
+            return new Totals(0, 0, 0, 0, 0, 0);
+        }
+        return new Totals(
+                ((Number) result.get("cost")).doubleValue(),
+                ((Number) result.get("byteSeconds")).longValue(),
+                ((Number) result.get("seconds")).longValue(),
+                ((Number) result.get("minStorageBytes")).longValue(),
+                ((Number) result.get("maxStorageBytes")).longValue(),
+                ((Number) result.get("periods")).longValue());
+    }
+
+    /**
+     * Rolls up periods completed before rollups existed, or whose rollup was interrupted.
+     */
+    @Scheduled(fixedDelayString = "${billing.rollup.backfill-interval-ms:60000}")
+    public void backfill() {
+        if (!backfilling.compareAndSet(false, true)) {
+            return;
+        }
+        long rolledUp = 0;
+        try {
+            markLegacyPeriods();
+            // Keyset over _id so periods that cannot be rolled up are passed over instead of refetched
+            String lastId = null;
+            List<StorageUsage> batch;
+            do {
+                Criteria criteria = Criteria.where("status").is("COMPLETED").and("rolledUp").is(false);
+                if (lastId != null) {
+                    criteria = criteria.and("_id").gt(lastId);
+                }
+                batch = mongoTemplate.find(Query.query(criteria)
+                        .with(Sort.by(Sort.Direction.ASC, "_id")).limit(BACKFILL_BATCH), StorageUsage.class);
+                for (StorageUsage usage : batch) {
+                    lastId = usage.getId();
+                    if (usage.getPeriodStart() == null || usage.getPeriodEnd() == null) {
+                        continue;
+                    }
+                    try {
+                        recordPeriod(usage);
+                    } catch (ArithmeticException e) {
+                        log.warn("Storage period {} is too large for a daily rollup: {}", usage.getId(), e.getMessage());
+                        continue;
+                    }
+                    mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(usage.getId())),
+                            new Update().set("rolledUp", true), StorageUsage.class);
+                    releasePeriod(usage);
+                    rolledUp++;
+                }
+            } while (batch.size() == BACKFILL_BATCH);
+        } catch (RuntimeException e) {
+            log.error("Daily rollup backfill failed: {}", e.getMessage());
+        } finally {
+            backfilling.set(false);
+        }
+        if (rolledUp > 0) {
+            log.info("Daily rollup backfill added {} storage periods", rolledUp);
+        }
+    }
+
+    // Periods saved before the flag existed have no rolledUp field, which the pending indexes cannot see
+    private void markLegacyPeriods() {
+        if (legacyPeriodsMarked) {
+            return;
+        }
+        long marked = mongoTemplate.updateMulti(Query.query(Criteria.where("status").is("COMPLETED").and("rolledUp").exists(false)),
+                new Update().set("rolledUp", false), StorageUsage.class).getModifiedCount();
+        legacyPeriodsMarked = true;
+        if (marked > 0) {
+            log.info("Marked {} storage periods from before daily rollups as pending", marked);
+        }
+    }
+
+    private Criteria dayRange(String userId, Instant start, Instant end) {
+        String firstDay = LocalDate.ofInstant(start, ZoneOffset.UTC).toString();
+        String lastDay = LocalDate.ofInstant(end.minusNanos(1), ZoneOffset.UTC).toString();
+        return Criteria.where("userId").is(userId).and("day").gte(firstDay).lte(lastDay);
+    }
+
+    private void addSlice(StorageUsage usage, LocalDate day, long seconds, long adjustmentByteSeconds) {
+        String id = usage.getUserId() + ":" + day;
+        long bytes = usage.getStorageUsedInBytes();
+        long byteSeconds = Math.addExact(Math.multiplyExact(bytes, seconds), adjustmentByteSeconds);
+        // Matches only while the period is not yet part of this day; otherwise the upsert collides on _id
+        Query notYetAdded = Query.query(Criteria.where("_id").is(id).and("pendingPeriodIds").ne(usage.getId()));
+        Update update = new Update()
+                .setOnInsert("userId", usage.getUserId())
+                .setOnInsert("day", day.toString())
+                .inc("byteSeconds", byteSeconds)
+                .inc("seconds", seconds)
+                .inc("cost", byteSeconds * usage.getCostPerBytePerSecond())
+                .inc("periods", 1)
+                .min("minStorageBytes", bytes)
+                .max("maxStorageBytes", bytes)
+                .push("pendingPeriodIds", usage.getId())
+                .set("updatedAt", Instant.now());
+        try {
+            mongoTemplate.upsert(notYetAdded, update, DailyStorageRollup.class);
+        } catch (DuplicateKeyException e) {
+            log.debug("Storage period {} already rolled up into {}", usage.getId(), id);
+        }
+    }
+
+    public record Totals(double cost, long byteSeconds, long seconds, long minStorageBytes, long maxStorageBytes,
+                         long periods) {
+    }
+}
@@ -0,0 +1,244 @@
+package com.shareApp.Payment.services;
+
+import com.shareApp.Authentication.entities.User;
+import com.shareApp.Payment.entitites.InvoicingRun;
+import com.shareApp.Payment.repositories.PaymentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Invoices every user for the previous month. Users are read in pages by id and billed in
+ * parallel on a bounded pool, with a separate cap on concurrent Stripe calls. Progress is
+ * checkpointed in {@link InvoicingRun} after each page, and an invoice is created at most once
+ * per user and month, so the run can stop at any point and be resumed by the next trigger.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MonthlyInvoicingService {
+
+    private final MongoTemplate mongoTemplate;
+    private final PaymentRepository paymentRepository;
+    private final PaymentInformationService paymentInformationService;
+    private final StripeService stripeService;
+
+    @Value("${billing.invoicing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${billing.invoicing.page-size:500}")
+    private int pageSize;
+
+    @Value("${billing.invoicing.parallelism:8}")
+    private int parallelism;
+
+    @Value("${billing.invoicing.max-concurrent-provider-calls:4}")
+    private int maxConcurrentProviderCalls;
+
+    @Value("${billing.invoicing.max-passes:3}")
+    private int maxPasses;
+
+    @Value("${billing.invoicing.lease-seconds:300}")
+    private long leaseSeconds;
+
+    // Guards this instance; the lease on the run document guards across instances
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final String instanceId = UUID.randomUUID().toString();
+
+    // Runs hourly; once the previous month's run is complete this is a single read
+    @Scheduled(cron = "${billing.invoicing.cron:0 15 * * * *}", zone = "UTC")
+    public void scheduledRun() {
+        if (enabled) {
+            invoiceMonth(YearMonth.now(ZoneOffset.UTC).minusMonths(1));
+        }
+    }
+
+    public InvoicingRun invoiceMonth(YearMonth month) {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Invoicing run already in progress, skipping");
+            return null;
+        }
+        try {
+            return run(month);
+        } catch (RuntimeException e) {
+            log.error("Invoicing run for {} failed: {}", month, e.getMessage());
+            return null;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private InvoicingRun run(YearMonth month) {
+        InvoicingRun existing = mongoTemplate.findById(month.toString(), InvoicingRun.class);
+        if (existing != null && "COMPLETED".equals(existing.getStatus())) {
+            return existing;
+        }
+        InvoicingRun run = claim(month);
+        if (run == null) {
+            log.info("Invoicing {} is being run by another instance", month);
+            return null;
+        }
+        log.info("Invoicing {} (pass {}), resuming after user {}", month, run.getPass(), run.getLastUserId());
+
+        Semaphore providerCalls = new Semaphore(maxConcurrentProviderCalls);
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "Invoicing-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<String> userIds;
+            do {
+                userIds = nextUserIds(run.getLastUserId());
+                if (userIds.isEmpty()) {
+                    break;
+                }
+
+                LongAdder invoiced = new LongAdder();
+                LongAdder skipped = new LongAdder();
+                LongAdder failed = new LongAdder();
+                List<Future<?>> invoices = new ArrayList<>(userIds.size());
+                for (String userId : userIds) {
+                    invoices.add(workers.submit(() -> invoiceUser(userId, month, providerCalls, invoiced, skipped, failed)));
+                }
+                for (Future<?> invoice : invoices) {
+                    try {
+                        invoice.get();
+                    } catch (ExecutionException e) {
+                        failed.increment();
+                        log.error("Invoicing task failed: {}", e.getCause().getMessage());
+                    }
+                }
+
+                InvoicingRun checkpoint = mongoTemplate.findAndModify(leased(run.getId()),
+                        new Update().set("lastUserId", userIds.get(userIds.size() - 1))
+                                .inc("invoiced", invoiced.sum())
+                                .inc("skipped", skipped.sum())
+                                .inc("failed", failed.sum())
+                                .set("updatedAt", Instant.now())
+                                .set("leaseExpiresAt", Instant.now().plusSeconds(leaseSeconds)),
+                        FindAndModifyOptions.options().returnNew(true),
+                        InvoicingRun.class);
+                if (checkpoint == null) {
+                    // Took longer than the lease; another instance has resumed from the previous page
+                    log.warn("Lost the lease on invoicing run {}, stopping", run.getId());
+                    return run;
+                }
+                run = checkpoint;
+            } while (userIds.size() == pageSize);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return run;
+        } finally {
+            workers.shutdownNow();
+        }
+        return finishPass(run);
+    }
+
+    private void invoiceUser(String userId, YearMonth month, Semaphore providerCalls,
+                             LongAdder invoiced, LongAdder skipped, LongAdder failed) {
+        try {
+            if (paymentRepository.existsByInvoiceKey(userId + ":" + month)) {
+                skipped.increment();
+                return;
+            }
+            BigDecimal cost = paymentInformationService.calculateMonthlyStorageAmount(userId, month.getMonthValue(), month.getYear());
+            if (cost.signum() <= 0) {
+                skipped.increment();
+                return;
+            }
+
+            providerCalls.acquire();
+            try {
+                stripeService.createMonthlyInvoice(userId, month, cost);
+            } finally {
+                providerCalls.release();
+            }
+            invoiced.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.increment();
+        } catch (Exception e) {
+            failed.increment();
+            log.warn("Failed to invoice user {} for {}: {}", userId, month, e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the run or takes it over, unless another instance holds an unexpired lease on it.
+     */
+    private InvoicingRun claim(YearMonth month) {
+        Instant now = Instant.now();
+        Query claimable = Query.query(Criteria.where("_id").is(month.toString()).orOperator(
+                Criteria.where("leaseExpiresAt").exists(false),
+                Criteria.where("leaseExpiresAt").lt(now),
+                Criteria.where("leaseOwner").is(instanceId)));
+        try {
+            return mongoTemplate.findAndModify(claimable,
+                    new Update().setOnInsert("status", "RUNNING")
+                            .setOnInsert("pass", 1)
+                            .setOnInsert("startedAt", now)
+                            .set("updatedAt", now)
+                            .set("leaseOwner", instanceId)
+                            .set("leaseExpiresAt", now.plusSeconds(leaseSeconds)),
+                    FindAndModifyOptions.options().upsert(true).returnNew(true),
+                    InvoicingRun.class);
+        } catch (DuplicateKeyException e) {
+            // The run exists and its lease is held elsewhere, so the upsert tried to insert a second one
+            return null;
+        }
+    }
+
+    private Query leased(String runId) {
+        return Query.query(Criteria.where("_id").is(runId).and("leaseOwner").is(instanceId));
+    }
+
+    private InvoicingRun finishPass(InvoicingRun run) {
+        Update update = new Update().set("updatedAt", Instant.now()).unset("leaseOwner").unset("leaseExpiresAt");
+        if (run.getFailed() == 0 || run.getPass() >= maxPasses) {
+            update.set("status", "COMPLETED").set("completedAt", Instant.now());
+            log.info("Invoicing {} completed: {} invoiced, {} skipped, {} failed",
+                    run.getId(), run.getInvoiced(), run.getSkipped(), run.getFailed());
+        } else {
+            // Another pass over all users; those already invoiced are skipped by their invoice key
+            update.unset("lastUserId").set("failed", 0).inc("pass", 1);
+            log.warn("Invoicing {} pass {} had {} failures, retrying on the next run",
+                    run.getId(), run.getPass(), run.getFailed());
+        }
+        return mongoTemplate.findAndModify(leased(run.getId()), update,
+                FindAndModifyOptions.options().returnNew(true), InvoicingRun.class);
+    }
+
+    private List<String> nextUserIds(String lastUserId) {
+        Criteria criteria = lastUserId == null ? new Criteria() : Criteria.where("_id").gt(lastUserId);
+        Query query = Query.query(criteria).with(Sort.by(Sort.Direction.ASC, "_id")).limit(pageSize);
+        query.fields().include("_id");
+        return mongoTemplate.find(query, User.class).stream().map(User::getId).toList();
+    }
+}
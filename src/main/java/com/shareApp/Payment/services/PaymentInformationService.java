@@ -1,8 +1,9 @@
 package com.shareApp.Payment.services;
 
-import com.shareApp.Media.repository.MediaRepository;
+import com.shareApp.Media.service.StorageCounterService;
 import com.shareApp.Payment.entitites.PaymentInformation;
 import com.shareApp.Payment.entitites.StorageUsage;
+import com.shareApp.Payment.entitites.StorageUsageEvent;
 import com.shareApp.Payment.repositories.PaymentInformationRepository;
 import com.shareApp.Payment.repositories.StorageUsageRepository;
 import lombok.RequiredArgsConstructor;
@@ -11,7 +12,9 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.YearMonth;
 import java.util.*;
 
 @Service
@@ -21,57 +24,80 @@ public class PaymentInformationService {
 
     private final PaymentInformationRepository paymentInfoRepository;
     private final StorageUsageRepository storageUsageRepository;
-    private final MediaRepository mediaRepository;
-
-    // Cost per byte per second (adjust as needed)
-    private static final double COST_PER_BYTE_PER_SECOND = 0.000000001; // Very small cost
-
-    public PaymentInformation recordStorageChange(String userId, String mediaId,
-                                                  String fileName, long fileSizeBytes,
-                                                  String actionType) {
-        try {
-            // Get current total storage for user
-            long currentTotalStorage = calculateTotalUserStorage(userId);
-
-            // Get previous storage amount
-            long previousStorage = getCurrentUserStorage(userId);
-
-            // Calculate change based on action type
-            long changeInStorage = actionType.equals("UPLOAD") ? fileSizeBytes : -fileSizeBytes;
-
-            PaymentInformation paymentInfo = PaymentInformation.builder()
-                    .id(UUID.randomUUID().toString())
-                    .userId(userId)
-                    .timestamp(Instant.now())
-                    .totalStorageUsedInBytes(currentTotalStorage)
-                    .previousStorageInBytes(previousStorage)
-                    .changeInStorageBytes(changeInStorage)
-                    .actionType(actionType)
-                    .mediaId(mediaId)
-                    .fileName(fileName)
-                    .build();
-
-            PaymentInformation saved = paymentInfoRepository.save(paymentInfo);
-            log.info("Storage change recorded for user {}: {} bytes ({})",
-                    userId, changeInStorage, actionType);
-
-            // Start new storage tracking period with updated storage amount
-            startStorageTracking(userId, currentTotalStorage);
-
-            return saved;
+    private final StorageCounterService storageCounterService;
+    private final DailyRollupService dailyRollupService;
+    private final BillingEngine billingEngine;
+    private final BillingResultCache billingResultCache;
+
+    /**
+     * Applies consecutive ledger events of one user as a single period transition. Event times
+     * are clamped so they never go back before the active period's start; on that timeline the
+     * running period ends at the first event and one period starts at the last, and the
+     * byte-seconds of the intermediate totals go into its adjustment. The result bills exactly
+     * what applying the events one at a time would. Everything is keyed by event id, so applying
+     * the same events again leaves the views unchanged.
+     */
+    public void applyUsageEvents(List<StorageUsageEvent> events) {
+        String userId = events.get(0).getUserId();
+        paymentInfoRepository.saveAll(events.stream().map(this::toPaymentInformation).toList());
+
+        List<StorageUsageEvent> pending = events;
+        Instant floor;
+        Optional<StorageUsage> active = storageUsageRepository.findFirstByUserIdAndStatusOrderByTimestampDesc(userId, "ACTIVE");
+        if (active.isPresent()) {
+            long appliedThrough = active.get().getSequence();
+            if (appliedThrough >= events.get(events.size() - 1).getSequence()) {
+                return;
+            }
+            // An interrupted application may have got part way through these events; carry on after it
+            pending = events.stream().filter(event -> event.getSequence() > appliedThrough).toList();
+            floor = active.get().getPeriodStart();
+        } else {
+            // A first change, or one interrupted between ending a period and starting the next
+            floor = storageUsageRepository.findByUserIdOrderByTimestampDesc(userId, PageRequest.of(0, 1))
+                    .stream().findFirst().map(StorageUsage::getPeriodEnd).orElse(null);
+        }
 
-        } catch (Exception e) {
-            log.error("Failed to record storage change for user {}: {}", userId, e.getMessage());
-            throw new RuntimeException("Failed to record storage information", e);
+        StorageUsageEvent first = pending.get(0);
+        StorageUsageEvent last = pending.get(pending.size() - 1);
+        Instant start = later(first.getOccurredAt(), floor);
+        Instant time = start;
+        long adjustment = 0;
+        for (int i = 1; i < pending.size(); i++) {
+            Instant next = later(pending.get(i).getOccurredAt(), time);
+            adjustment += pending.get(i - 1).getTotalBytesAfter() * (next.getEpochSecond() - time.getEpochSecond());
+            time = next;
         }
+
+        // Periods are bounded by event times, not projection times, so projection lag is not billed
+        endActiveStorageTracking(userId, start);
+        startStorageTracking(last.getId(), userId, last.getTotalBytesAfter(), time, adjustment, last.getSequence());
+        billingResultCache.invalidate(userId);
+        log.info("Storage changes applied for user {}: events {}..{} ({} changes), now {} bytes",
+                userId, first.getSequence(), last.getSequence(), pending.size(), last.getTotalBytesAfter());
+    }
+
+    private static Instant later(Instant time, Instant floor) {
+        return floor != null && floor.isAfter(time) ? floor : time;
+    }
+
+    private PaymentInformation toPaymentInformation(StorageUsageEvent event) {
+        return PaymentInformation.builder()
+                .id(event.getId())
+                .userId(event.getUserId())
+                .timestamp(event.getOccurredAt())
+                .totalStorageUsedInBytes(event.getTotalBytesAfter())
+                .previousStorageInBytes(event.getTotalBytesAfter() - event.getChangeInBytes())
+                .changeInStorageBytes(event.getChangeInBytes())
+                .actionType(event.getActionType())
+                .mediaId(event.getMediaId())
+                .fileName(event.getFileName())
+                .build();
     }
 
     public long calculateTotalUserStorage(String userId) {
-        return mediaRepository.findByUserId(userId, PageRequest.of(0, Integer.MAX_VALUE))
-                .getContent()
-                .stream()
-                .mapToLong(media -> media.getSizeInBytes())
-                .sum();
+        // Single document read; the counter is maintained by uploads and deletes
+        return storageCounterService.getTotalBytes(userId);
     }
 
     public long getCurrentUserStorage(String userId) {
@@ -91,17 +117,21 @@ public class PaymentInformationService {
     }
 
     // Time-based storage tracking methods
-    public StorageUsage startStorageTracking(String userId, long storageBytes) {
-        // End any active tracking period first
-        endActiveStorageTracking(userId);
+    public StorageUsage startStorageTracking(String id, String userId, long storageBytes, Instant start) {
+        return startStorageTracking(id, userId, storageBytes, start, 0, 0);
+    }
 
+    public StorageUsage startStorageTracking(String id, String userId, long storageBytes, Instant start,
+                                             long adjustmentByteSeconds, long sequence) {
         StorageUsage usage = StorageUsage.builder()
-                .id(UUID.randomUUID().toString())
+                .id(id)
                 .userId(userId)
-                .timestamp(Instant.now())
+                .timestamp(start)
                 .storageUsedInBytes(storageBytes)
-                .periodStart(Instant.now())
-                .costPerBytePerSecond(COST_PER_BYTE_PER_SECOND)
+                .adjustmentByteSeconds(adjustmentByteSeconds)
+                .sequence(sequence)
+                .periodStart(start)
+                .costPerBytePerSecond(billingEngine.costPerBytePerSecond())
                 .status("ACTIVE")
                 .build();
 
@@ -110,20 +140,36 @@ public class PaymentInformationService {
         return saved;
     }
 
-    public StorageUsage endActiveStorageTracking(String userId) {
+    public StorageUsage endActiveStorageTracking(String userId, Instant end) {
         Optional<StorageUsage> activeUsage = storageUsageRepository
                 .findFirstByUserIdAndStatusOrderByTimestampDesc(userId, "ACTIVE");
 
         if (activeUsage.isPresent()) {
             StorageUsage usage = activeUsage.get();
-            Instant now = Instant.now();
 
-            usage.setPeriodEnd(now);
-            usage.setDurationInSeconds(now.getEpochSecond() - usage.getPeriodStart().getEpochSecond());
-            usage.setCalculatedCost(calculateStorageCost(usage.getStorageUsedInBytes(), usage.getDurationInSeconds()));
+            usage.setPeriodEnd(end);
+            usage.setDurationInSeconds(Math.max(0, end.getEpochSecond() - usage.getPeriodStart().getEpochSecond()));
+            usage.setCalculatedCost(calculateStorageCost(usage.getStorageUsedInBytes(), usage.getDurationInSeconds())
+                    + usage.getAdjustmentByteSeconds() * billingEngine.costPerBytePerSecond());
             usage.setStatus("COMPLETED");
 
+            // Rolled up before the status change is saved; if this fails the backfill picks the period up
+            try {
+                dailyRollupService.recordPeriod(usage);
+                usage.setRolledUp(true);
+            } catch (RuntimeException e) {
+                log.warn("Failed to roll up storage period {}: {}", usage.getId(), e.getMessage());
+            }
+
             StorageUsage saved = storageUsageRepository.save(usage);
+            if (saved.isRolledUp()) {
+                try {
+                    dailyRollupService.releasePeriod(saved);
+                } catch (RuntimeException e) {
+                    // Only leaves a stale marker on the day; the totals are already right
+                    log.warn("Failed to release rollup marker of storage period {}: {}", usage.getId(), e.getMessage());
+                }
+            }
             log.info("Ended storage tracking for user {}: {} bytes for {} seconds, cost: ${}",
                     userId, usage.getStorageUsedInBytes(), usage.getDurationInSeconds(),
                     usage.getCalculatedCost());
@@ -133,26 +179,80 @@ public class PaymentInformationService {
     }
 
     public double calculateStorageCost(long storageBytes, long durationSeconds) {
-        return storageBytes * durationSeconds * COST_PER_BYTE_PER_SECOND;
+        return storageBytes * durationSeconds * billingEngine.costPerBytePerSecond();
     }
 
     public double getTotalCostForPeriod(String userId, Instant start, Instant end) {
-        List<StorageUsage> usages = storageUsageRepository.findByUserIdAndPeriodBetween(userId, start, end);
-        return usages.stream()
-                .mapToDouble(StorageUsage::getCalculatedCost)
-                .sum();
+        return billingEngine.cost(getUsageForPeriod(userId, start, end)).doubleValue();
+    }
+
+    /**
+     * Exact byte-seconds used in the range, from the daily rollups when they cover it and from
+     * the completed periods otherwise, plus what the open period has accrued inside the range.
+     * Both sources answer for the whole UTC days the range touches and bill a period crossing
+     * their edge pro rata, so it makes no difference which one is used.
+     */
+    public ByteSeconds getUsageForPeriod(String userId, Instant start, Instant end) {
+        ByteSeconds usage;
+        if (dailyRollupService.covers(userId, start, end)) {
+            usage = dailyRollupService.byteSeconds(userId, start, end);
+        } else {
+            usage = new ByteSeconds();
+            long from = Math.floorDiv(start.getEpochSecond(), 86_400) * 86_400;
+            long to = (Math.floorDiv(end.minusNanos(1).getEpochSecond(), 86_400) + 1) * 86_400;
+            for (StorageUsage period : storageUsageRepository.findCompletedOverlapping(userId,
+                    Instant.ofEpochSecond(from), Instant.ofEpochSecond(to))) {
+                long periodStart = period.getPeriodStart().getEpochSecond();
+                long periodEnd = Math.max(periodStart, period.getPeriodEnd().getEpochSecond());
+                long seconds = Math.min(periodEnd, to) - Math.max(periodStart, from);
+                if (seconds > 0) {
+                    usage.add(period.getStorageUsedInBytes(), seconds);
+                }
+                // Like the rollups, the adjustment belongs to the day the period starts
+                if (periodStart >= from) {
+                    usage.add(period.getAdjustmentByteSeconds());
+                }
+            }
+        }
+
+        // Without this a user whose storage has not changed since before the range would not be billed for it
+        storageUsageRepository.findFirstByUserIdAndStatusOrderByTimestampDesc(userId, "ACTIVE").ifPresent(active -> {
+            long from = Math.max(start.getEpochSecond(), active.getPeriodStart().getEpochSecond());
+            long to = Math.min(end.getEpochSecond(), Instant.now().getEpochSecond());
+            if (to > from) {
+                usage.add(active.getStorageUsedInBytes(), to - from);
+            }
+            if (!active.getPeriodStart().isBefore(start) && active.getPeriodStart().isBefore(end)) {
+                usage.add(active.getAdjustmentByteSeconds());
+            }
+        });
+        return usage;
     }
 
     public double getCurrentDailyCost(String userId) {
-        Instant dayStart = Instant.now().minus(24, java.time.temporal.ChronoUnit.HOURS);
-        return getTotalCostForPeriod(userId, dayStart, Instant.now());
+        // The current UTC day, so the answer is a single rollup
+        Instant now = Instant.now();
+        Instant dayStart = now.truncatedTo(java.time.temporal.ChronoUnit.DAYS);
+        return getTotalCostForPeriod(userId, dayStart, now);
     }
 
     public Page<StorageUsage> getUserStorageUsageHistory(String userId, int page, int size) {
         return storageUsageRepository.findByUserIdOrderByTimestampDesc(userId, PageRequest.of(page, size));
     }
 
+    public Map<String, Object> getMonthlyStorageStats(String userId, int month, int year) {
+        YearMonth yearMonth = YearMonth.of(year, month);
+        return billingResultCache.get(userId, yearMonth, BillingResultCache.Kind.MONTHLY_STATS,
+                () -> Collections.unmodifiableMap(getMonthlyStorageStats(userId, monthStart(yearMonth), monthEnd(yearMonth))));
+    }
+
     public Map<String, Object> getMonthlyStorageStats(String userId, Instant monthStart, Instant monthEnd) {
+        if (dailyRollupService.covers(userId, monthStart, monthEnd)) {
+            DailyRollupService.Totals totals = dailyRollupService.totals(userId, monthStart, monthEnd);
+            double avgStorage = totals.seconds() > 0 ? (double) totals.byteSeconds() / totals.seconds() : 0.0;
+            return storageStats(totals.cost(), totals.maxStorageBytes(),
+                    totals.periods() > 0 ? totals.minStorageBytes() : Long.MAX_VALUE, avgStorage, totals.periods());
+        }
         List<StorageUsage> monthlyUsages = storageUsageRepository.findByUserIdAndTimestampBetween(userId, monthStart, monthEnd);
 
         double totalCost = 0.0;
@@ -167,7 +267,8 @@ public class PaymentInformationService {
                     .sum();
 
             totalStorageSeconds = monthlyUsages.stream()
-                    .mapToLong(usage -> usage.getStorageUsedInBytes() * usage.getDurationInSeconds())
+                    .mapToLong(usage -> usage.getStorageUsedInBytes() * usage.getDurationInSeconds()
+                            + usage.getAdjustmentByteSeconds())
                     .sum();
 
             maxStorage = monthlyUsages.stream()
@@ -185,6 +286,11 @@ public class PaymentInformationService {
             avgStorage = totalSeconds > 0 ? (double) totalStorageSeconds / totalSeconds : 0.0;
         }
 
+        return storageStats(totalCost, maxStorage, minStorage, avgStorage, monthlyUsages.size());
+    }
+
+    private Map<String, Object> storageStats(double totalCost, long maxStorage, long minStorage, double avgStorage,
+                                             long usagePeriods) {
         Map<String, Object> stats = new HashMap<>();
         stats.put("totalCost", totalCost);
         stats.put("maxStorageBytes", maxStorage);
@@ -193,7 +299,7 @@ public class PaymentInformationService {
         stats.put("maxStorageMB", maxStorage / (1024.0 * 1024.0));
         stats.put("minStorageMB", minStorage / (1024.0 * 1024.0));
         stats.put("avgStorageMB", avgStorage / (1024.0 * 1024.0));
-        stats.put("totalUsagePeriods", monthlyUsages.size());
+        stats.put("totalUsagePeriods", usagePeriods);
         stats.put("costPerMBPerDay", calculateCostPerMBPerDay());
 
         return stats;
@@ -202,16 +308,27 @@ public class PaymentInformationService {
     public double calculateCostPerMBPerDay() {
         long bytesPerMB = 1024 * 1024;
         long secondsPerDay = 24 * 60 * 60;
-        return COST_PER_BYTE_PER_SECOND * bytesPerMB * secondsPerDay;
+        return billingEngine.costPerBytePerSecond() * bytesPerMB * secondsPerDay;
     }
 
     public double calculateMonthlyStorageCost(String userId, int month, int year) {
-        java.time.LocalDate startOfMonth = java.time.LocalDate.of(year, month, 1);
-        java.time.LocalDate endOfMonth = startOfMonth.plusMonths(1).minusDays(1);
+        return calculateMonthlyStorageAmount(userId, month, year).doubleValue();
+    }
 
-        Instant start = startOfMonth.atStartOfDay(java.time.ZoneOffset.UTC).toInstant();
-        Instant end = endOfMonth.atTime(23, 59, 59).atZone(java.time.ZoneOffset.UTC).toInstant();
+    /**
+     * Exact, unrounded cost of the month; the invoice rounds it to cents once.
+     */
+    public BigDecimal calculateMonthlyStorageAmount(String userId, int month, int year) {
+        YearMonth yearMonth = YearMonth.of(year, month);
+        return billingResultCache.get(userId, yearMonth, BillingResultCache.Kind.MONTHLY_COST,
+                () -> billingEngine.cost(getUsageForPeriod(userId, monthStart(yearMonth), monthEnd(yearMonth))));
+    }
+
+    private static Instant monthStart(YearMonth month) {
+        return month.atDay(1).atStartOfDay(java.time.ZoneOffset.UTC).toInstant();
+    }
 
-        return getTotalCostForPeriod(userId, start, end);
+    private static Instant monthEnd(YearMonth month) {
+        return month.atEndOfMonth().atTime(23, 59, 59).atZone(java.time.ZoneOffset.UTC).toInstant();
     }
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+package com.shareApp.Payment.services;
+
+import com.shareApp.Media.model.UserStorageCounter;
+import com.shareApp.Payment.entitites.StorageUsageEvent;
+import com.shareApp.Payment.repositories.StorageUsageEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+
+/**
+ * Appends storage usage events. Recording a change costs the request a single insert; the
+ * billing views are derived from the ledger afterwards by {@link StorageUsageProjector}. An
+ * event that cannot be appended fails the append, so the caller can undo the change instead of
+ * leaving it unbilled.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StorageLedgerService {
+
+    private final StorageUsageEventRepository eventRepository;
+
+    /**
+     * Appends the change that produced {@code counter}, which must be the counter state returned
+     * by the update that applied it.
+     *
+     * @throws RuntimeException if the event could not be stored
+     */
+    public void append(UserStorageCounter counter, String mediaId, String fileName, long changeInBytes, String actionType) {
+        StorageUsageEvent event = StorageUsageEvent.builder()
+                .id(counter.getId() + ":" + counter.getEventSequence())
+                .userId(counter.getId())
+                .sequence(counter.getEventSequence())
+                .actionType(actionType)
+                .mediaId(mediaId)
+                .fileName(fileName)
+                .changeInBytes(changeInBytes)
+                .totalBytesAfter(counter.getTotalBytes())
+                .occurredAt(Instant.now())
+                .projected(false)
+                .build();
+        try {
+            eventRepository.insert(event);
+        } catch (DuplicateKeyException e) {
+            log.debug("Usage event {} already appended", event.getId());
+        } catch (RuntimeException e) {
+            // The projector skips the missing sequence after its gap timeout once the caller has undone the change
+            log.error("Failed to append usage event {} ({} bytes, {}): {}",
+                    event.getId(), changeInBytes, actionType, e.getMessage());
+            throw new RuntimeException("Failed to record storage change", e);
+        }
+    }
+}
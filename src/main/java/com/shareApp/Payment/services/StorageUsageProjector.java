@@ -0,0 +1,200 @@
+package com.shareApp.Payment.services;
+
+import com.shareApp.Payment.entitites.StorageProjectionCheckpoint;
+import com.shareApp.Payment.entitites.StorageProjectionLease;
+import com.shareApp.Payment.entitites.StorageUsageEvent;
+import com.shareApp.Payment.repositories.StorageUsageEventRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies pending storage usage events to the {@code PaymentInformation} and {@code StorageUsage}
+ * views, in sequence order per user. An event whose predecessor is missing is held back until
+ * the gap timeout, since concurrent uploads may append out of order; after that the gap is
+ * skipped, which is safe because every event carries the user's absolute total. Applying an
+ * event is idempotent, so a crash between steps only causes the event to be applied again.
+ * <p>
+ * The ledger also serves as a write-behind buffer: a user's consecutive events are held until
+ * the oldest is older than the coalesce window and then applied as one period transition, so a
+ * burst of uploads produces one tracking period instead of one per file. Held events are
+ * already durable, and anything still held at shutdown is flushed.
+ * <p>
+ * Only the instance holding the {@link StorageProjectionLease} projects, so two instances never
+ * apply the same user's events concurrently.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StorageUsageProjector {
+
+    private final StorageUsageEventRepository eventRepository;
+    private final PaymentInformationService paymentInformationService;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${billing.ledger.batch-size:500}")
+    private int batchSize;
+
+    @Value("${billing.ledger.gap-timeout-seconds:30}")
+    private long gapTimeoutSeconds;
+
+    @Value("${billing.ledger.coalesce-window-ms:5000}")
+    private long coalesceWindowMs;
+
+    @Value("${billing.ledger.lease-seconds:60}")
+    private long leaseSeconds;
+
+    private static final String LEASE_ID = "projector";
+
+    // Guards this instance; the lease guards across instances
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean holding = new AtomicBoolean();
+    private final String instanceId = UUID.randomUUID().toString();
+
+    @Scheduled(fixedDelayString = "${billing.ledger.projection-interval-ms:1000}")
+    public void project() {
+        if (running.compareAndSet(false, true)) {
+            project(false);
+        }
+    }
+
+    @PreDestroy
+    public void flush() throws InterruptedException {
+        if (!holding.get()) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!running.compareAndSet(false, true)) {
+            if (System.nanoTime() - deadline > 0) {
+                log.warn("Storage usage projection still running, held events are applied after restart");
+                return;
+            }
+            Thread.sleep(50);
+        }
+        log.info("Flushing held storage usage events");
+        project(true);
+    }
+
+    private void project(boolean flushAll) {
+        holding.set(false);
+        try {
+            if (!claimLease()) {
+                log.debug("Storage usage projection is being run by another instance");
+                return;
+            }
+            try {
+                projectBatches(flushAll);
+            } finally {
+                releaseLease();
+            }
+        } catch (RuntimeException e) {
+            log.error("Storage usage projection failed: {}", e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void projectBatches(boolean flushAll) {
+        List<StorageUsageEvent> batch;
+        int applied;
+        do {
+            batch = eventRepository.findPending(PageRequest.of(0, batchSize));
+            Map<String, List<StorageUsageEvent>> byUser = new LinkedHashMap<>();
+            for (StorageUsageEvent event : batch) {
+                byUser.computeIfAbsent(event.getUserId(), user -> new ArrayList<>()).add(event);
+            }
+            applied = 0;
+            for (Map.Entry<String, List<StorageUsageEvent>> entry : byUser.entrySet()) {
+                applied += projectUser(entry.getKey(), entry.getValue(), flushAll);
+            }
+            // Renewing also tells whether the lease expired and was taken over meanwhile
+        } while (batch.size() == batchSize && applied > 0 && claimLease());
+    }
+
+    // Takes the lease, or renews it if this instance already holds it
+    private boolean claimLease() {
+        Instant now = Instant.now();
+        Query claimable = Query.query(Criteria.where("_id").is(LEASE_ID).orOperator(
+                Criteria.where("leaseExpiresAt").exists(false),
+                Criteria.where("leaseExpiresAt").lt(now),
+                Criteria.where("leaseOwner").is(instanceId)));
+        try {
+            return mongoTemplate.findAndModify(claimable,
+                    new Update().set("leaseOwner", instanceId).set("leaseExpiresAt", now.plusSeconds(leaseSeconds)),
+                    FindAndModifyOptions.options().upsert(true).returnNew(true),
+                    StorageProjectionLease.class) != null;
+        } catch (DuplicateKeyException e) {
+            // The lease document exists and another instance holds it
+            return false;
+        }
+    }
+
+    private void releaseLease() {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(LEASE_ID).and("leaseOwner").is(instanceId)),
+                new Update().unset("leaseOwner").unset("leaseExpiresAt"), StorageProjectionLease.class);
+    }
+
+    private int projectUser(String userId, List<StorageUsageEvent> events, boolean flushAll) {
+        StorageProjectionCheckpoint checkpoint = mongoTemplate.findById(userId, StorageProjectionCheckpoint.class);
+        long lastSequence = checkpoint != null ? checkpoint.getLastSequence() : 0;
+        Instant gapDeadline = Instant.now().minus(Duration.ofSeconds(gapTimeoutSeconds));
+        List<StorageUsageEvent> run = new ArrayList<>();
+
+        for (StorageUsageEvent event : events) {
+            if (event.getSequence() <= lastSequence) {
+                markProjected(List.of(event));
+                continue;
+            }
+            if (event.getSequence() > lastSequence + 1) {
+                if (event.getOccurredAt().isAfter(gapDeadline)) {
+                    // The missing events may still be on their way
+                    break;
+                }
+                log.warn("Skipping usage events {}..{} of user {}: never appended",
+                        lastSequence + 1, event.getSequence() - 1, userId);
+            }
+            run.add(event);
+            lastSequence = event.getSequence();
+        }
+        if (run.isEmpty()) {
+            return 0;
+        }
+        if (!flushAll && run.get(0).getOccurredAt().plusMillis(coalesceWindowMs).isAfter(Instant.now())) {
+            // More changes of the same burst may follow; they are merged into one transition
+            holding.set(true);
+            return 0;
+        }
+
+        paymentInformationService.applyUsageEvents(run);
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(userId)),
+                new Update().max("lastSequence", lastSequence).set("updatedAt", Instant.now()),
+                StorageProjectionCheckpoint.class);
+        markProjected(run);
+        return run.size();
+    }
+
+    private void markProjected(List<StorageUsageEvent> events) {
+        mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(events.stream().map(StorageUsageEvent::getId).toList())),
+                new Update().set("projected", true).set("projectedAt", Instant.now()), StorageUsageEvent.class);
+    }
+}
@@ -7,15 +7,18 @@ import com.shareApp.Payment.services.PaymentInformationService;
 import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.model.checkout.Session;
+import com.stripe.net.RequestOptions;
 import com.stripe.param.checkout.SessionCreateParams;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.time.YearMonth;
 
 @Service
 @Slf4j
@@ -42,14 +45,8 @@ public class StripeService {
             int targetYear = year != null ? year : now.getYear();
 
             // Get monthly storage cost from PaymentInformationService
-            double monthlyStorageCost = paymentInformationService.calculateMonthlyStorageCost(userId, targetMonth, targetYear);
-            BigDecimal totalAmount = new BigDecimal(monthlyStorageCost).setScale(2, RoundingMode.HALF_UP);
-
-            // Apply minimum charge if necessary (Stripe requirement)
-            if (totalAmount.compareTo(MINIMUM_CHARGE) < 0) {
-                log.info("Monthly cost ${} is below minimum, applying minimum charge of ${}", totalAmount, MINIMUM_CHARGE);
-                totalAmount = MINIMUM_CHARGE;
-            }
+            BigDecimal monthlyStorageCost = paymentInformationService.calculateMonthlyStorageAmount(userId, targetMonth, targetYear);
+            BigDecimal totalAmount = applyMinimumCharge(monthlyStorageCost.setScale(2, RoundingMode.HALF_UP));
 
             // Get current storage for display
             long currentStorageBytes = paymentInformationService.calculateTotalUserStorage(userId);
@@ -59,59 +56,8 @@ public class StripeService {
             log.info("User: {}, Month: {}/{}, Storage Cost: ${}, Current Storage: {:.2f}MB",
                     userId, targetMonth, targetYear, totalAmount, currentStorageMB);
 
-            // Convert to cents for Stripe (round to avoid precision issues)
-            Long amountInCents = totalAmount.multiply(new BigDecimal("100"))
-                    .setScale(0, RoundingMode.HALF_UP)
-                    .longValue();
-
-            log.info("Amount in cents for Stripe: {}", amountInCents);
-
-            // Validate minimum amount (Stripe requires at least 50 cents)
-            if (amountInCents < 50) {
-                throw new IllegalArgumentException("Amount must be at least $0.50 USD");
-            }
-
-            // Set Stripe API key
-            Stripe.apiKey = secretKey;
-
-            // Create product data
-            SessionCreateParams.LineItem.PriceData.ProductData productData =
-                    SessionCreateParams.LineItem.PriceData.ProductData.builder()
-                            .setName(String.format("Cloud Storage Bill - %s %d",
-                                    LocalDate.of(targetYear, targetMonth, 1).getMonth().toString(), targetYear))
-                            .setDescription(String.format("Monthly storage usage bill (%.2f MB used)", currentStorageMB))
-                            .build();
-
-            // Create price data
-            SessionCreateParams.LineItem.PriceData priceData =
-                    SessionCreateParams.LineItem.PriceData.builder()
-                            .setCurrency("usd") // Default to USD
-                            .setUnitAmount(amountInCents)
-                            .setProductData(productData)
-                            .build();
-
-            // Create line item
-            SessionCreateParams.LineItem lineItem =
-                    SessionCreateParams.LineItem.builder()
-                            .setQuantity(1L)
-                            .setPriceData(priceData)
-                            .build();
-
-            // Create session parameters
-            SessionCreateParams params = SessionCreateParams.builder()
-                    .setMode(SessionCreateParams.Mode.PAYMENT)
-                    .setSuccessUrl(baseUrl + "/payment/success?session_id={CHECKOUT_SESSION_ID}")
-                    .setCancelUrl(baseUrl + "/payment/cancel")
-                    .addLineItem(lineItem)
-                    .putMetadata("userId", userId)
-                    .putMetadata("month", String.valueOf(targetMonth))
-                    .putMetadata("year", String.valueOf(targetYear))
-                    .putMetadata("storageBytes", String.valueOf(currentStorageBytes))
-                    .putMetadata("originalCost", String.valueOf(monthlyStorageCost))
-                    .build();
-
-            // Create Stripe session
-            Session session = Session.create(params);
+            Session session = createSession(userId, YearMonth.of(targetYear, targetMonth), monthlyStorageCost,
+                    totalAmount, currentStorageBytes, null);
 
             // Save payment record to database
             Payment payment = Payment.builder()
@@ -121,6 +67,7 @@ public class StripeService {
                     .amount(totalAmount)
                     .currency("USD")
                     .status(Payment.PaymentStatus.PENDING)
+                    .billingPeriod(YearMonth.of(targetYear, targetMonth).toString())
                     .build();
 
             paymentRepository.save(payment);
@@ -146,6 +93,108 @@ public class StripeService {
         }
     }
 
+    /**
+     * Creates the month-end invoice of one user: a checkout session and its PENDING payment. The
+     * Stripe idempotency key and the unique invoice key make a retry after a crash reuse the
+     * session instead of billing twice.
+     */
+    public Payment createMonthlyInvoice(String userId, YearMonth month, BigDecimal monthlyStorageCost) throws StripeException {
+        String invoiceKey = userId + ":" + month;
+        BigDecimal totalAmount = applyMinimumCharge(monthlyStorageCost.setScale(2, RoundingMode.HALF_UP));
+        long currentStorageBytes = paymentInformationService.calculateTotalUserStorage(userId);
+
+        Session session = createSession(userId, month, monthlyStorageCost, totalAmount, currentStorageBytes,
+                "invoice-" + invoiceKey);
+
+        Payment payment = Payment.builder()
+                .userId(userId)
+                .stripeSessionId(session.getId())
+                .storageGb((long) Math.ceil(currentStorageBytes / (1024.0 * 1024.0 * 1024.0)))
+                .amount(totalAmount)
+                .currency("USD")
+                .status(Payment.PaymentStatus.PENDING)
+                .billingPeriod(month.toString())
+                .invoiceKey(invoiceKey)
+                .build();
+        try {
+            return paymentRepository.save(payment);
+        } catch (DuplicateKeyException e) {
+            log.info("Invoice {} already exists", invoiceKey);
+            return paymentRepository.findByStripeSessionId(session.getId()).orElse(payment);
+        }
+    }
+
+    private BigDecimal applyMinimumCharge(BigDecimal totalAmount) {
+        // Apply minimum charge if necessary (Stripe requirement)
+        if (totalAmount.compareTo(MINIMUM_CHARGE) < 0) {
+            log.info("Monthly cost ${} is below minimum, applying minimum charge of ${}", totalAmount, MINIMUM_CHARGE);
+            return MINIMUM_CHARGE;
+        }
+        return totalAmount;
+    }
+
+    private Session createSession(String userId, YearMonth month, BigDecimal monthlyStorageCost, BigDecimal totalAmount,
+                                  long currentStorageBytes, String idempotencyKey) throws StripeException {
+        double currentStorageMB = currentStorageBytes / (1024.0 * 1024.0);
+
+        // Convert to cents for Stripe (round to avoid precision issues)
+        Long amountInCents = totalAmount.multiply(new BigDecimal("100"))
+                .setScale(0, RoundingMode.HALF_UP)
+                .longValue();
+
+        log.info("Amount in cents for Stripe: {}", amountInCents);
+
+        // Validate minimum amount (Stripe requires at least 50 cents)
+        if (amountInCents < 50) {
+            throw new IllegalArgumentException("Amount must be at least $0.50 USD");
+        }
+
+        // Set Stripe API key
+        Stripe.apiKey = secretKey;
+
+        // Create product data
+        SessionCreateParams.LineItem.PriceData.ProductData productData =
+                SessionCreateParams.LineItem.PriceData.ProductData.builder()
+                        .setName(String.format("Cloud Storage Bill - %s %d",
+                                month.getMonth().toString(), month.getYear()))
+                        .setDescription(String.format("Monthly storage usage bill (%.2f MB used)", currentStorageMB))
+                        .build();
+
+        // Create price data
+        SessionCreateParams.LineItem.PriceData priceData =
+                SessionCreateParams.LineItem.PriceData.builder()
+                        .setCurrency("usd") // Default to USD
+                        .setUnitAmount(amountInCents)
+                        .setProductData(productData)
+                        .build();
+
+        // Create line item
+        SessionCreateParams.LineItem lineItem =
+                SessionCreateParams.LineItem.builder()
+                        .setQuantity(1L)
+                        .setPriceData(priceData)
+                        .build();
+
+        // Create session parameters
+        SessionCreateParams params = SessionCreateParams.builder()
+                .setMode(SessionCreateParams.Mode.PAYMENT)
+                .setSuccessUrl(baseUrl + "/payment/success?session_id={CHECKOUT_SESSION_ID}")
+                .setCancelUrl(baseUrl + "/payment/cancel")
+                .addLineItem(lineItem)
+                .putMetadata("userId", userId)
+                .putMetadata("month", String.valueOf(month.getMonthValue()))
+                .putMetadata("year", String.valueOf(month.getYear()))
+                .putMetadata("storageBytes", String.valueOf(currentStorageBytes))
+                .putMetadata("originalCost", monthlyStorageCost.stripTrailingZeros().toPlainString())
+                .build();
+
+        // Create Stripe session
+        if (idempotencyKey == null) {
+            return Session.create(params);
+        }
+        return Session.create(params, RequestOptions.builder().setIdempotencyKey(idempotencyKey).build());
+    }
+
     // Method to handle webhook and update payment status
     public void updatePaymentStatus(String sessionId, Payment.PaymentStatus status) {
         paymentRepository.findByStripeSessionId(sessionId)
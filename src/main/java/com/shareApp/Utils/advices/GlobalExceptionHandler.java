@@ -1,8 +1,13 @@
 package com.shareApp.Utils.advices;
 
+import com.shareApp.Utils.exceptions.BadRequestException;
+import com.shareApp.Utils.exceptions.InsufficientStorageException;
 import com.shareApp.Utils.exceptions.ResourceNotFoundException;
 import com.shareApp.Utils.exceptions.RuntimeConflictException;
+import com.shareApp.Utils.exceptions.ServiceUnavailableException;
+import com.shareApp.Utils.exceptions.TooManyRequestsException;
 import io.jsonwebtoken.JwtException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -35,6 +40,44 @@ public class GlobalExceptionHandler {
         return buildErrorResponseEntity(apiError);
     }
 
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<ApiResponse<?>> handleBadRequestException(BadRequestException exception) {
+        ApiError apiError = ApiError.builder()
+                .status(HttpStatus.BAD_REQUEST)
+                .message(exception.getMessage())
+                .build();
+        return buildErrorResponseEntity(apiError);
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ApiResponse<?>> handleServiceUnavailableException(ServiceUnavailableException exception) {
+        ApiError apiError = ApiError.builder()
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .message(exception.getMessage())
+                .build();
+        return buildErrorResponseEntity(apiError);
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ApiResponse<?>> handleTooManyRequestsException(TooManyRequestsException exception) {
+        ApiError apiError = ApiError.builder()
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .message(exception.getMessage())
+                .build();
+        return ResponseEntity.status(apiError.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()))
+                .body(new ApiResponse<>(apiError));
+    }
+
+    @ExceptionHandler(InsufficientStorageException.class)
+    public ResponseEntity<ApiResponse<?>> handleInsufficientStorageException(InsufficientStorageException exception) {
+        ApiError apiError = ApiError.builder()
+                .status(HttpStatus.INSUFFICIENT_STORAGE)
+                .message(exception.getMessage())
+                .build();
+        return buildErrorResponseEntity(apiError);
+    }
+
     @ExceptionHandler(AuthenticationException.class)
     public ResponseEntity<ApiResponse<?>> handleAuthenticationException(AuthenticationException ex) {
         ApiError apiError = ApiError.builder()
@@ -1,5 +1,6 @@
 package com.shareApp.Utils.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -23,4 +24,17 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
-}
\ No newline at end of file
+
+    @Bean(name = "thumbnailTaskExecutor")
+    public Executor thumbnailTaskExecutor(
+            @Value("${media.thumbnail.workers:2}") int workers,
+            @Value("${media.thumbnail.queue-capacity:64}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("Thumbnail-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,60 @@
+package com.shareApp.Utils.config;
+
+import com.shareApp.Media.model.Media;
+import com.shareApp.Media.model.UploadSession;
+import com.shareApp.Payment.entitites.DailyStorageRollup;
+import com.shareApp.Payment.entitites.Payment;
+import com.shareApp.Payment.entitites.StorageUsage;
+import com.shareApp.Payment.entitites.StorageUsageEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Creates the annotated indexes of the entities below. Automatic index creation is off, so
+ * without this the annotations are documentation only. Runs in the background and retries
+ * until the database is reachable, so startup never waits on MongoDB.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexInitializer {
+
+    // Entities whose queries depend on their indexes
+    private static final List<Class<?>> INDEXED_ENTITIES = List.of(
+            Media.class,
+            UploadSession.class,
+            StorageUsageEvent.class,
+            StorageUsage.class,
+            DailyStorageRollup.class,
+            Payment.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    private volatile boolean complete;
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${mongo.index-init.retry-interval-ms:60000}")
+    public void ensureIndexes() {
+        if (complete) {
+            return;
+        }
+        try {
+            IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+            for (Class<?> entity : INDEXED_ENTITIES) {
+                IndexOperations indexOps = mongoTemplate.indexOps(entity);
+                resolver.resolveIndexFor(entity).forEach(indexOps::ensureIndex);
+            }
+            complete = true;
+            log.info("MongoDB indexes ensured for {} collections", INDEXED_ENTITIES.size());
+        } catch (RuntimeException e) {
+            log.warn("Failed to ensure MongoDB indexes, retrying later: {}", e.getMessage());
+        }
+    }
+}
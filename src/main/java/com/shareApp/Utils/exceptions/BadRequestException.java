@@ -0,0 +1,7 @@
+package com.shareApp.Utils.exceptions;
+
+public class BadRequestException extends RuntimeException {
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.shareApp.Utils.exceptions;
+
+public class InsufficientStorageException extends RuntimeException {
+    public InsufficientStorageException(String message) {
+        super(message);
+    }
+}
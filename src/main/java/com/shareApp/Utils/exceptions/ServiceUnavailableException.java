@@ -0,0 +1,7 @@
+package com.shareApp.Utils.exceptions;
+
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,143 @@
+package com.shareApp.Media.metadata;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Mp4MetadataParserTest {
+
+    @TempDir
+    Path dir;
+
+    private MediaMetadataExtractor extractor;
+
+    @BeforeEach
+    void setUp() {
+        extractor = new MediaMetadataExtractor();
+        ReflectionTestUtils.setField(extractor, "imageHeaderLimit", 262144);
+        ReflectionTestUtils.setField(extractor, "moovLimit", 1 << 20);
+    }
+
+    @Test
+    void readsDurationDimensionsAndCodec() throws Exception {
+        MediaMetadata metadata = extractor.extract(write(mp4(movieHeaderV0(600, 6000))));
+
+        assertEquals(10_000L, metadata.getDurationMillis());
+        assertEquals("VIDEO", metadata.getMediaType());
+        assertEquals(1920, metadata.getWidth());
+        assertEquals(1080, metadata.getHeight());
+        assertEquals("avc1", metadata.getCodec());
+    }
+
+    @Test
+    void longDurationDoesNotOverflow() throws Exception {
+        // 2^60 ticks at 90 kHz: duration * 1000 exceeds a long
+        long duration = 1L << 60;
+        MediaMetadata metadata = extractor.extract(write(mp4(movieHeaderV1(90_000, duration))));
+
+        assertEquals(duration / 90_000 * 1000 + duration % 90_000 * 1000 / 90_000, metadata.getDurationMillis());
+        assertTrue(metadata.getDurationMillis() > 0);
+    }
+
+    @Test
+    void durationBeyondLongMillisIsLeftOut() throws Exception {
+        MediaMetadata metadata = extractor.extract(write(mp4(movieHeaderV1(1, Long.MAX_VALUE))));
+
+        assertNull(metadata.getDurationMillis());
+        assertEquals("VIDEO", metadata.getMediaType());
+    }
+
+    @Test
+    void truncatedFileYieldsNoMetadata() throws Exception {
+        // Ends partway through moov, which comes last
+        byte[] file = concat(box("ftyp", "isom".getBytes(StandardCharsets.ISO_8859_1)), moov(movieHeaderV0(600, 6000)));
+        byte[] truncated = Arrays.copyOf(file, file.length - 10);
+
+        assertNull(extractor.extract(write(truncated)));
+        assertNull(capture(truncated));
+    }
+
+    @Test
+    void oversizedTopLevelBoxYieldsNoMetadata() throws Exception {
+        // A 64-bit size near Long.MAX_VALUE used to overflow the bounds check and seek backwards
+        byte[] file = concat(box("ftyp", "isom".getBytes(StandardCharsets.ISO_8859_1)),
+                largeBox("mdat", Long.MAX_VALUE - 4), moov(movieHeaderV0(600, 6000)));
+
+        assertNull(extractor.extract(write(file)));
+        assertNull(capture(file));
+    }
+
+    @Test
+    void oversizedChildBoxIsSkipped() throws Exception {
+        byte[] forged = concat(largeBox("udta", Long.MAX_VALUE), new byte[8]);
+        byte[] file = concat(box("ftyp", "isom".getBytes(StandardCharsets.ISO_8859_1)),
+                box("moov", concat(movieHeaderV0(600, 6000), forged)));
+
+        MediaMetadata metadata = extractor.extract(write(file));
+
+        assertEquals(10_000L, metadata.getDurationMillis());
+        assertEquals(10_000L, capture(file).getDurationMillis());
+    }
+
+    private MediaMetadata capture(byte[] file) throws Exception {
+        MetadataCaptureInputStream in = extractor.capture(new ByteArrayInputStream(file));
+        assertArrayEquals(file, in.readAllBytes());
+        return in.getMetadata();
+    }
+
+    private Path write(byte[] content) throws Exception {
+        Path file = Files.createTempFile(dir, "fixture", ".mp4");
+        return Files.write(file, content);
+    }
+
+    private static byte[] mp4(byte[] movieHeader) {
+        return concat(box("ftyp", "isom".getBytes(StandardCharsets.ISO_8859_1)), moov(movieHeader),
+                box("mdat", new byte[32]));
+    }
+
+    private static byte[] moov(byte[] movieHeader) {
+        byte[] handler = ByteBuffer.allocate(24).put(8, "vide".getBytes(StandardCharsets.ISO_8859_1)).array();
+        byte[] sampleDescription = ByteBuffer.allocate(16).putInt(4, 1).put(12, "avc1".getBytes(StandardCharsets.ISO_8859_1)).array();
+        byte[] trackHeader = ByteBuffer.allocate(84).putInt(76, 1920 << 16).putInt(80, 1080 << 16).array();
+        byte[] track = box("trak", concat(box("tkhd", trackHeader),
+                box("mdia", concat(box("hdlr", handler), box("minf", box("stbl", box("stsd", sampleDescription)))))));
+        return box("moov", concat(movieHeader, track));
+    }
+
+    private static byte[] movieHeaderV0(int timescale, int duration) {
+        return box("mvhd", ByteBuffer.allocate(100).putInt(12, timescale).putInt(16, duration).array());
+    }
+
+    private static byte[] movieHeaderV1(int timescale, long duration) {
+        return box("mvhd", ByteBuffer.allocate(112).put(0, (byte) 1).putInt(20, timescale).putLong(24, duration).array());
+    }
+
+    private static byte[] box(String type, byte[] payload) {
+        return ByteBuffer.allocate(8 + payload.length).putInt(8 + payload.length)
+                .put(type.getBytes(StandardCharsets.ISO_8859_1)).put(payload).array();
+    }
+
+    private static byte[] largeBox(String type, long size) {
+        return ByteBuffer.allocate(16).putInt(1).put(type.getBytes(StandardCharsets.ISO_8859_1)).putLong(size).array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,140 @@
+package com.shareApp.Media.service;
+
+import com.shareApp.Media.model.UploadSession;
+import com.shareApp.Media.repository.UploadSessionRepository;
+import com.shareApp.Utils.exceptions.BadRequestException;
+import com.shareApp.Utils.exceptions.RuntimeConflictException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ChunkedUploadServiceTest {
+
+    @TempDir
+    Path stagingPath;
+
+    private UploadSessionRepository repository;
+    private MediaService mediaService;
+    private ChunkedUploadService service;
+    private Path stagingFile;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        repository = mock(UploadSessionRepository.class);
+        mediaService = mock(MediaService.class);
+        service = new ChunkedUploadService(repository, mediaService);
+        ReflectionTestUtils.setField(service, "stagingPath", stagingPath.toString());
+
+        UploadSession session = UploadSession.builder()
+                .id("s1").userId("u1").fileName("a.jpg").fileType("image/jpeg")
+                .totalSize(3).chunkSize(3).totalChunks(1).receivedChunks(Set.of(0)).status("ACTIVE")
+                .build();
+        when(repository.findById("s1")).thenReturn(Optional.of(session));
+        when(repository.transitionStatus(eq("s1"), eq("ACTIVE"), eq("COMPLETING"), any())).thenReturn(1L);
+        stagingFile = stagingPath.resolve("s1.part");
+        Files.writeString(stagingFile, "abc");
+    }
+
+    @Test
+    void failureBeforeStorageReopensSession() {
+        when(mediaService.importFile(any(), any(), any(), any()))
+                .thenThrow(new MediaImportException("metadata", new RuntimeException(), false));
+
+        assertThrows(RuntimeException.class, () -> service.completeSession("u1", "s1"));
+        verify(repository).transitionStatus(eq("s1"), eq("COMPLETING"), eq("ACTIVE"), any());
+    }
+
+    @Test
+    void failureAfterStorageTookTheFileFailsSession() {
+        when(mediaService.importFile(any(), any(), any(), any())).thenAnswer(invocation -> {
+            Files.writeString(stagingFile, "compressed");
+            throw new MediaImportException("save", new RuntimeException(), true);
+        });
+
+        assertThrows(RuntimeException.class, () -> service.completeSession("u1", "s1"));
+        verify(repository).transitionStatus(eq("s1"), eq("COMPLETING"), eq("FAILED"), any());
+        verify(repository, never()).transitionStatus(eq("s1"), eq("COMPLETING"), eq("ACTIVE"), any());
+        assertFalse(Files.exists(stagingFile));
+    }
+
+    @Test
+    void chunkIsCopiedIntoPlaceUnderAClaim() throws Exception {
+        twoChunkSession(Set.of(0));
+        when(repository.claimChunkWrite(eq("s2"), eq(1), any())).thenReturn(1L);
+        when(repository.markChunkReceived(eq("s2"), eq(1), any(), any(), any())).thenReturn(1L);
+
+        service.writeChunk("u1", "s2", 1, new ByteArrayInputStream("def".getBytes()));
+
+        assertEquals("abcdef", Files.readString(stagingPath.resolve("s2.part")));
+        InOrder order = inOrder(repository);
+        order.verify(repository).claimChunkWrite(eq("s2"), eq(1), any());
+        order.verify(repository).markChunkReceived(eq("s2"), eq(1), any(), any(), any());
+        assertChunkFilesRemoved();
+    }
+
+    @Test
+    void reSentChunkWithABadBodyLeavesReceivedBytesAlone() throws Exception {
+        twoChunkSession(Set.of(0));
+
+        assertThrows(RuntimeConflictException.class,
+                () -> service.writeChunk("u1", "s2", 0, new ByteArrayInputStream("x".getBytes())));
+
+        assertEquals("abc\0\0\0", Files.readString(stagingPath.resolve("s2.part")));
+        verify(repository, never()).claimChunkWrite(any(), anyInt(), any());
+    }
+
+    @Test
+    void chunkOfTheWrongLengthIsNeverCopiedIntoPlace() throws Exception {
+        twoChunkSession(Set.of());
+
+        assertThrows(BadRequestException.class,
+                () -> service.writeChunk("u1", "s2", 0, new ByteArrayInputStream("xyzw".getBytes())));
+
+        assertEquals("abc\0\0\0", Files.readString(stagingPath.resolve("s2.part")));
+        verify(repository, never()).claimChunkWrite(any(), anyInt(), any());
+        assertChunkFilesRemoved();
+    }
+
+    @Test
+    void chunkIsNotWrittenWithoutAClaim() throws Exception {
+        // The session stopped being active, or another writer holds the chunk, after it was read
+        twoChunkSession(Set.of(0));
+        when(repository.claimChunkWrite(eq("s2"), eq(1), any())).thenReturn(0L);
+
+        assertThrows(RuntimeConflictException.class,
+                () -> service.writeChunk("u1", "s2", 1, new ByteArrayInputStream("def".getBytes())));
+
+        assertEquals("abc\0\0\0", Files.readString(stagingPath.resolve("s2.part")));
+        verify(repository, never()).markChunkReceived(any(), anyInt(), any(), any(), any());
+        assertChunkFilesRemoved();
+    }
+
+    private void twoChunkSession(Set<Integer> received) throws Exception {
+        UploadSession session = UploadSession.builder()
+                .id("s2").userId("u1").fileName("b.jpg").fileType("image/jpeg")
+                .totalSize(6).chunkSize(3).totalChunks(2).receivedChunks(new HashSet<>(received)).status("ACTIVE")
+                .build();
+        when(repository.findById("s2")).thenReturn(Optional.of(session));
+        Files.writeString(stagingPath.resolve("s2.part"), "abc\0\0\0");
+    }
+
+    private void assertChunkFilesRemoved() throws Exception {
+        try (Stream<Path> files = Files.list(stagingPath)) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".chunk")));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.shareApp.Media.service;
+
+import com.shareApp.Media.metadata.MediaMetadataExtractor;
+import com.shareApp.Media.model.Media;
+import com.shareApp.Media.model.MediaLibraryVersion;
+import com.shareApp.Media.model.UserStorageCounter;
+import com.shareApp.Media.repository.MediaLibraryVersionRepository;
+import com.shareApp.Media.repository.MediaRepository;
+import com.shareApp.Media.storage.ContentCompressor;
+import com.shareApp.Media.storage.MediaStorage;
+import com.shareApp.Media.storage.StoredObject;
+import com.shareApp.Payment.services.StorageLedgerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MediaServiceTest {
+
+    private MediaRepository mediaRepository;
+    private MongoTemplate mongoTemplate;
+    private StorageCounterService storageCounterService;
+    private MediaStatsService mediaStatsService;
+    private MediaStorage mediaStorage;
+    private StorageLedgerService storageLedgerService;
+    private MediaMetadataExtractor metadataExtractor;
+    private MediaService mediaService;
+
+    @BeforeEach
+    void setUp() {
+        mediaRepository = mock(MediaRepository.class);
+        mongoTemplate = mock(MongoTemplate.class);
+        storageCounterService = mock(StorageCounterService.class);
+        mediaStatsService = mock(MediaStatsService.class);
+        mediaStorage = mock(MediaStorage.class);
+        storageLedgerService = mock(StorageLedgerService.class);
+        metadataExtractor = mock(MediaMetadataExtractor.class);
+        mediaService = new MediaService(mediaRepository, mock(MediaLibraryVersionRepository.class), mongoTemplate,
+                mediaStorage, storageLedgerService, mock(ThumbnailService.class),
+                metadataExtractor, mock(ContentCompressor.class), storageCounterService, mediaStatsService);
+    }
+
+    @Test
+    void uploadIsAppendedToTheLedgerRightAfterTheInsert(@TempDir Path staging) throws Exception {
+        Path source = Files.writeString(staging.resolve("a.part"), "abc");
+        when(mediaStorage.store(eq("user"), eq("a.jpg"), eq("image/jpeg"), eq(source)))
+                .thenReturn(StoredObject.builder().storageKey("user/a.jpg").sizeInBytes(3).storedSizeInBytes(3).build());
+        when(mediaRepository.save(any(Media.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        UserStorageCounter counter = UserStorageCounter.builder().id("user").totalBytes(3).eventSequence(7).build();
+        when(storageCounterService.add("user", 3, 1)).thenReturn(counter);
+
+        mediaService.importFile("user", "a.jpg", "image/jpeg", source);
+
+        InOrder order = inOrder(mediaRepository, storageCounterService, storageLedgerService, mediaStatsService, mongoTemplate);
+        order.verify(mediaRepository).save(any(Media.class));
+        order.verify(storageCounterService).add("user", 3, 1);
+        order.verify(storageLedgerService).append(eq(counter), any(), eq("a.jpg"), eq(3L), eq("UPLOAD"));
+        order.verify(mediaStatsService).recordUpload(anyList());
+        order.verify(mongoTemplate).upsert(any(Query.class), any(Update.class), eq(MediaLibraryVersion.class));
+    }
+
+    @Test
+    void uploadThatCannotBeBilledIsUndone(@TempDir Path staging) throws Exception {
+        Path source = Files.writeString(staging.resolve("a.part"), "abc");
+        when(mediaStorage.store(eq("user"), eq("a.jpg"), eq("image/jpeg"), eq(source)))
+                .thenReturn(StoredObject.builder().storageKey("user/a.jpg").sizeInBytes(3).storedSizeInBytes(3).build());
+        when(mediaRepository.save(any(Media.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        doThrow(new RuntimeException("ledger down")).when(storageLedgerService).append(any(), any(), any(), anyLong(), any());
+
+        MediaImportException failure = assertThrows(MediaImportException.class,
+                () -> mediaService.importFile("user", "a.jpg", "image/jpeg", source));
+
+        assertTrue(failure.isSourceHandedToStorage());
+        verify(mediaRepository).deleteAll(anyList());
+        verify(storageCounterService).add("user", -3, -1);
+        verify(mediaStorage).delete("user/a.jpg");
+        verify(mediaStatsService, never()).recordUpload(anyList());
+    }
+
+    @Test
+    void deleteThatCannotBeBilledIsRestored() {
+        Media media = Media.builder().id("m1").userId("user").fileName("a.jpg").sizeInBytes(10).s3Key("user/a.jpg").build();
+        when(mediaRepository.findById("m1")).thenReturn(Optional.of(media));
+        doThrow(new RuntimeException("ledger down")).when(storageLedgerService).append(any(), any(), any(), anyLong(), any());
+
+        assertThrows(RuntimeException.class, () -> mediaService.deleteMedia("user", "m1"));
+
+        verify(mediaRepository).insert(media);
+        verify(storageCounterService).add("user", 10, 1);
+        verify(mediaStorage, never()).delete(any());
+        verify(mediaStatsService, never()).recordDelete(any());
+    }
+
+    @Test
+    void deleteBumpsTheLibraryVersionAfterTheStats() {
+        Media media = Media.builder().id("m1").userId("user").fileName("a.jpg").sizeInBytes(10).s3Key("user/a.jpg").build();
+        when(mediaRepository.findById("m1")).thenReturn(Optional.of(media));
+
+        mediaService.deleteMedia("user", "m1");
+
+        InOrder order = inOrder(mediaRepository, storageCounterService, storageLedgerService, mediaStatsService, mongoTemplate);
+        order.verify(storageCounterService).beginChange("user");
+        order.verify(mediaStatsService).ensureStats("user");
+        order.verify(mediaRepository).delete(media);
+        order.verify(storageCounterService).add("user", -10, -1);
+        order.verify(storageLedgerService).append(any(), eq("m1"), eq("a.jpg"), eq(-10L), eq("DELETE"));
+        order.verify(mediaStatsService).recordDelete(media);
+        order.verify(mongoTemplate).upsert(any(Query.class), any(Update.class), eq(MediaLibraryVersion.class));
+    }
+
+    @Test
+    void libraryTagsDifferAcrossUsersAtTheSameVersion() {
+        MediaLibraryVersion version = MediaLibraryVersion.builder().version(3).build();
+
+        String alice = mediaService.libraryEntityTag("alice", version);
+
+        assertTrue(alice.startsWith("W/\""));
+        assertEquals(alice, mediaService.libraryEntityTag("alice", version));
+        assertNotEquals(alice, mediaService.libraryEntityTag("bob", version));
+        assertNotEquals(alice, mediaService.libraryEntityTag("alice", MediaLibraryVersion.builder().version(4).build()));
+    }
+}
@@ -0,0 +1,72 @@
+package com.shareApp.Media.service;
+
+import com.mongodb.client.result.UpdateResult;
+import com.shareApp.Media.dto.MediaStatsDTO;
+import com.shareApp.Media.model.Media;
+import com.shareApp.Media.model.MediaStats;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MediaStatsServiceTest {
+
+    private MongoTemplate mongoTemplate;
+    private MediaStatsService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        service = new MediaStatsService(mongoTemplate);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(MediaStats.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    }
+
+    @Test
+    void unknownFileTypesShareOneBucket() {
+        service.recordUpload(List.of(media("image/JPEG; charset=binary", 10), media("made/up-" + "x".repeat(100), 20),
+                media("image/png", 30), media(null, 40)));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(MediaStats.class));
+        Document increments = (Document) update.getValue().getUpdateObject().get("$inc");
+        assertEquals(10L, increments.get("byFileType.image/jpeg.bytes"));
+        assertEquals(30L, increments.get("byFileType.image/png.bytes"));
+        assertEquals(60L, increments.get("byFileType.other.bytes"));
+        assertEquals(2L, increments.get("byFileType.other.count"));
+        assertEquals(3, increments.keySet().stream().filter(key -> key.startsWith("byFileType.") && key.endsWith(".count")).count());
+    }
+
+    @Test
+    void arbitraryStoredFileTypesAreReportedAsOther() {
+        Map<String, MediaStats.Bucket> byFileType = new HashMap<>();
+        byFileType.put("image/jpeg", new MediaStats.Bucket(1, 10));
+        byFileType.put("application/x．custom", new MediaStats.Bucket(2, 20));
+        byFileType.put("whatever", new MediaStats.Bucket(3, 30));
+        when(mongoTemplate.findById("user", MediaStats.class))
+                .thenReturn(MediaStats.builder().id("user").byFileType(byFileType).build());
+
+        MediaStatsDTO stats = service.getStats("user");
+
+        assertEquals(Map.of("image/jpeg", new MediaStats.Bucket(1, 10), "other", new MediaStats.Bucket(5, 50)),
+                stats.getByFileType());
+    }
+
+    private static Media media(String fileType, long size) {
+        return Media.builder().userId("user").fileType(fileType).mediaType("PHOTO")
+                .sizeInBytes(size).uploadedAt(Instant.parse("2026-09-01T00:00:00Z")).build();
+    }
+}
@@ -0,0 +1,158 @@
+package com.shareApp.Media.service;
+
+import com.mongodb.client.result.UpdateResult;
+import com.shareApp.Media.model.Media;
+import com.shareApp.Media.model.UserStorageCounter;
+import com.shareApp.Payment.services.StorageLedgerService;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StorageCounterServiceTest {
+
+    private MongoTemplate mongoTemplate;
+    private StorageLedgerService ledger;
+    private StorageCounterService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        ledger = mock(StorageLedgerService.class);
+        service = new StorageCounterService(mongoTemplate, ledger);
+        // The media collection already holds the change being added: 150 bytes in 2 files
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Media.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(new Document("totalBytes", 150L).append("mediaCount", 2)), new Document()));
+    }
+
+    @Test
+    void seedsWithoutTheChangeAndThenAppliesIt() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserStorageCounter.class)))
+                .thenReturn(null, UserStorageCounter.builder().id("user").totalBytes(150).build());
+        when(mongoTemplate.insert(any(UserStorageCounter.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        service.add("user", 50, 1);
+
+        ArgumentCaptor<UserStorageCounter> seeded = ArgumentCaptor.forClass(UserStorageCounter.class);
+        verify(mongoTemplate).insert(seeded.capture());
+        assertEquals(100, seeded.getValue().getTotalBytes());
+        assertEquals(1, seeded.getValue().getMediaCount());
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), updates.capture(), any(FindAndModifyOptions.class), eq(UserStorageCounter.class));
+        assertEquals(updates.getAllValues().get(0).getUpdateObject(), updates.getAllValues().get(1).getUpdateObject());
+    }
+
+    @Test
+    void appliesTheChangeWhenAConcurrentSeedWon() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserStorageCounter.class)))
+                .thenReturn(null, UserStorageCounter.builder().id("user").build());
+        when(mongoTemplate.insert(any(UserStorageCounter.class))).thenThrow(new DuplicateKeyException("counter exists"));
+
+        service.add("user", 50, 1);
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), updates.capture(), any(FindAndModifyOptions.class), eq(UserStorageCounter.class));
+        Document increments = (Document) updates.getAllValues().get(1).getUpdateObject().get("$inc");
+        assertEquals(50L, increments.get("totalBytes"));
+        assertEquals(1L, increments.get("mediaCount"));
+    }
+
+    @Test
+    void beginChangeSeedsOnlyWhenMissing() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(UserStorageCounter.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null), UpdateResult.acknowledged(0, 0L, null));
+        when(mongoTemplate.insert(any(UserStorageCounter.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        service.beginChange("user");
+        verify(mongoTemplate, never()).insert(any(UserStorageCounter.class));
+
+        service.beginChange("user");
+        ArgumentCaptor<UserStorageCounter> seeded = ArgumentCaptor.forClass(UserStorageCounter.class);
+        verify(mongoTemplate).insert(seeded.capture());
+        assertEquals(150, seeded.getValue().getTotalBytes());
+        assertEquals(2, seeded.getValue().getMediaCount());
+        assertEquals(0, seeded.getValue().getPendingChanges());
+        // Registered after the seed, so it is still pending once the counter exists
+        verify(mongoTemplate, times(3)).updateFirst(any(Query.class), any(Update.class), eq(UserStorageCounter.class));
+    }
+
+    @Test
+    void reconcileLeavesAnUploadSavedButNotYetAddedAlone() {
+        // The media collection holds 150 bytes; the counter has not been given the last 50 yet
+        reconcileSettings();
+        counters(UserStorageCounter.builder().id("user").totalBytes(100).mediaCount(1).version(3)
+                .pendingChanges(1).changeStartedAt(Instant.now().minusSeconds(120))
+                .updatedAt(Instant.now().minusSeconds(3600)).build());
+
+        service.reconcile();
+
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserStorageCounter.class));
+        verify(ledger, never()).append(any(), any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void reconcileOnlyCorrectsWhenNoChangeBeganMeanwhile() {
+        reconcileSettings();
+        counters(UserStorageCounter.builder().id("user").totalBytes(100).mediaCount(1).version(3)
+                .updatedAt(Instant.now().minusSeconds(3600)).build());
+        // An upload registered after the counter was read: the fence no longer matches
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserStorageCounter.class)))
+                .thenReturn(null);
+
+        service.reconcile();
+
+        ArgumentCaptor<Query> compareAndSet = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndModify(compareAndSet.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(UserStorageCounter.class));
+        Document condition = compareAndSet.getValue().getQueryObject();
+        assertEquals(3L, condition.get("version"));
+        assertTrue(condition.get("$or").toString().contains("pendingChanges"));
+        verify(ledger, never()).append(any(), any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void reconcileTakesOverAChangeWhoseWriterDied() {
+        reconcileSettings();
+        counters(UserStorageCounter.builder().id("user").totalBytes(100).mediaCount(1).version(3)
+                .pendingChanges(1).changeStartedAt(Instant.now().minus(Duration.ofHours(2)))
+                .updatedAt(Instant.now().minus(Duration.ofHours(2))).build());
+        UserStorageCounter corrected = UserStorageCounter.builder().id("user").totalBytes(150).mediaCount(2).build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserStorageCounter.class)))
+                .thenReturn(corrected);
+
+        service.reconcile();
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), update.capture(), any(FindAndModifyOptions.class), eq(UserStorageCounter.class));
+        assertEquals(0, ((Document) update.getValue().getUpdateObject().get("$set")).get("pendingChanges"));
+        verify(ledger).append(corrected, null, null, 50, "ADJUSTMENT");
+    }
+
+    private void reconcileSettings() {
+        ReflectionTestUtils.setField(service, "reconcileEnabled", true);
+        ReflectionTestUtils.setField(service, "quietPeriodSeconds", 60L);
+        ReflectionTestUtils.setField(service, "pendingChangeTimeoutMinutes", 60L);
+    }
+
+    private void counters(UserStorageCounter... counters) {
+        when(mongoTemplate.stream(any(Query.class), eq(UserStorageCounter.class))).thenReturn(Stream.of(counters));
+    }
+}
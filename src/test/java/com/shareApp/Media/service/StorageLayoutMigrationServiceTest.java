@@ -0,0 +1,137 @@
+package com.shareApp.Media.service;
+
+import com.mongodb.client.result.UpdateResult;
+import com.shareApp.Media.model.Media;
+import com.shareApp.Media.storage.LocalMediaStorage;
+import com.shareApp.Media.storage.StorageLayout;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StorageLayoutMigrationServiceTest {
+
+    private MongoTemplate mongoTemplate;
+    private LocalMediaStorage storage;
+    private ObjectProvider<LocalMediaStorage> storageProvider;
+    private StorageLayoutMigrationService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws IOException {
+        mongoTemplate = mock(MongoTemplate.class);
+        storage = mock(LocalMediaStorage.class);
+        storageProvider = mock(ObjectProvider.class);
+        when(storageProvider.getIfAvailable()).thenReturn(storage);
+
+        StorageLayout layout = new StorageLayout();
+        ReflectionTestUtils.setField(layout, "levels", 2);
+        ReflectionTestUtils.setField(layout, "width", 2);
+        service = new StorageLayoutMigrationService(mongoTemplate, layout, storageProvider);
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+
+        when(storage.relocate(any())).thenAnswer(invocation -> "moved/" + invocation.getArgument(0));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Media.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    }
+
+    @Test
+    void movesLegacyFilesAndRewritesTheirKeys() throws IOException {
+        when(mongoTemplate.find(any(Query.class), eq(Media.class)))
+                .thenReturn(List.of(media("m1", "user/a.jpg"), media("m2", "user/b.jpg")))
+                .thenReturn(List.of());
+
+        service.migrateBatch();
+
+        ArgumentCaptor<Query> record = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(record.capture(), update.capture(), eq(Media.class));
+        // Only rewritten if the record still points at the file that was moved
+        assertEquals("user/a.jpg", record.getAllValues().get(0).getQueryObject().get("s3Key"));
+        assertEquals(new Document("s3Key", "moved/user/a.jpg"), update.getAllValues().get(0).getUpdateObject().get("$set"));
+        assertEquals(2L, ReflectionTestUtils.getField(service, "migratedCount"));
+    }
+
+    @Test
+    void nextBatchResumesAfterTheLastRecordAndStopsWhenDone() {
+        when(mongoTemplate.find(any(Query.class), eq(Media.class)))
+                .thenReturn(List.of(media("m1", "user/a.jpg")))
+                .thenReturn(List.of());
+
+        service.migrateBatch();
+        service.migrateBatch();
+        service.migrateBatch();
+
+        ArgumentCaptor<Query> batch = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(batch.capture(), eq(Media.class));
+        assertFalse(batch.getAllValues().get(0).getQueryObject().toString().contains("$gt"));
+        assertTrue(batch.getAllValues().get(1).getQueryObject().toString().contains("$gt=m1"));
+        assertEquals(2, batch.getAllValues().get(1).getLimit());
+    }
+
+    @Test
+    void failedMoveDoesNotStopTheBatch() throws IOException {
+        when(storage.relocate("user/a.jpg")).thenThrow(new NoSuchFileException("user/a.jpg"));
+        when(mongoTemplate.find(any(Query.class), eq(Media.class)))
+                .thenReturn(List.of(media("m1", "user/a.jpg"), media("m2", "user/b.jpg")));
+
+        service.migrateBatch();
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(Media.class));
+        assertEquals(new Document("s3Key", "moved/user/b.jpg"), update.getValue().getUpdateObject().get("$set"));
+    }
+
+    @Test
+    void fileOfRecordDeletedDuringTheMoveIsRemoved() {
+        when(mongoTemplate.find(any(Query.class), eq(Media.class))).thenReturn(List.of(media("m1", "user/a.jpg")));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Media.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        when(mongoTemplate.exists(any(Query.class), eq(Media.class))).thenReturn(false);
+
+        service.migrateBatch();
+
+        verify(storage).delete("moved/user/a.jpg");
+        assertEquals(0L, ReflectionTestUtils.getField(service, "migratedCount"));
+    }
+
+    @Test
+    void keyAlreadyInPlaceIsLeftAlone() throws IOException {
+        when(storage.relocate("user/a.jpg")).thenReturn("user/a.jpg");
+        when(mongoTemplate.find(any(Query.class), eq(Media.class))).thenReturn(List.of(media("m1", "user/a.jpg")));
+
+        service.migrateBatch();
+
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(Media.class));
+    }
+
+    @Test
+    void idleWithoutLocalStorage() {
+        when(storageProvider.getIfAvailable()).thenReturn(null);
+
+        service.migrateBatch();
+
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    private static Media media(String id, String key) {
+        Media media = new Media();
+        media.setId(id);
+        media.setS3Key(key);
+        return media;
+    }
+}
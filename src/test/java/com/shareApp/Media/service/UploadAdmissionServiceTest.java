@@ -0,0 +1,60 @@
+package com.shareApp.Media.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadAdmissionServiceTest {
+
+    private static final long MIB = 1024 * 1024;
+
+    private UploadAdmissionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new UploadAdmissionService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "storageBackend", "s3");
+        ReflectionTestUtils.setField(service, "initialLimit", 8);
+        ReflectionTestUtils.setField(service, "minLimit", 2);
+        ReflectionTestUtils.setField(service, "maxLimit", 64);
+        ReflectionTestUtils.setField(service, "perUserLimit", 8);
+        ReflectionTestUtils.setField(service, "maxQueue", 0);
+        ReflectionTestUtils.setField(service, "latencyTolerance", 2.0);
+        ReflectionTestUtils.setField(service, "backoffFactor", 0.5);
+        ReflectionTestUtils.setField(service, "backoffIntervalMs", 0L);
+        ReflectionTestUtils.setField(service, "minSampleBytes", MIB);
+        service.init();
+    }
+
+    @Test
+    void slowStorageWritesShrinkTheLimit() {
+        service.onWrite(MIB, 1_000_000);
+        for (int i = 0; i < 10; i++) {
+            service.onWrite(MIB, 100_000_000);
+        }
+
+        assertTrue(service.getLimit() < 8, "limit was " + service.getLimit());
+    }
+
+    @Test
+    void releasingAPermitLeavesTheLimitAlone() throws Exception {
+        service.onWrite(MIB, 1_000_000);
+        UploadAdmissionService.Permit permit = service.acquire("user", 100 * MIB);
+        // A slow client holds the permit for a long time; only storage writes are samples
+        Thread.sleep(20);
+        permit.release();
+
+        assertEquals(8, service.getLimit());
+    }
+
+    @Test
+    void smallWritesAreNotSamples() {
+        service.onWrite(MIB - 1, 1_000_000);
+        service.onWrite(MIB - 1, 1_000_000_000);
+
+        assertEquals(8, service.getLimit());
+    }
+}
@@ -0,0 +1,130 @@
+package com.shareApp.Media.storage;
+
+import com.shareApp.Media.model.MediaBlob;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ContentAddressedMediaStorageTest {
+
+    private static final String DIGEST = "ab".repeat(32);
+    private static final String KEY = "blobs/ab/ab/" + DIGEST;
+
+    @TempDir
+    Path root;
+
+    private MongoTemplate mongoTemplate;
+    private ContentAddressedMediaStorage storage;
+    private Path blob;
+    private Instant cutoff;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        mongoTemplate = mock(MongoTemplate.class);
+        storage = new ContentAddressedMediaStorage(mongoTemplate, mock(ContentCompressor.class), mock(DurableFileWriter.class));
+        ReflectionTestUtils.setField(storage, "rootPath", root.toString());
+        ReflectionTestUtils.setField(storage, "purgeTimeoutSeconds", 60L);
+
+        blob = root.resolve(KEY);
+        Files.createDirectories(blob.getParent());
+        Files.writeString(blob, "content");
+        cutoff = Instant.now().minus(Duration.ofHours(1));
+        Files.setLastModifiedTime(blob, FileTime.from(cutoff.minus(Duration.ofHours(1))));
+    }
+
+    @Test
+    void purgeRemovesUnreferencedOldBlob() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(MediaBlob.class)))
+                .thenReturn(new MediaBlob());
+
+        assertTrue(storage.purge(KEY, cutoff));
+        assertFalse(Files.exists(blob));
+        ArgumentCaptor<Query> claim = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(claim.capture(), update.capture(), any(FindAndModifyOptions.class), eq(MediaBlob.class));
+        assertEquals(new Document("$lte", 0), claim.getValue().getQueryObject().get("refCount"));
+        // Blobs without bookkeeping get a placeholder so a concurrent upload sees the claim
+        assertEquals(0L, ((Document) update.getValue().getUpdateObject().get("$setOnInsert")).get("refCount"));
+        Object claimedAt = ((Document) update.getValue().getUpdateObject().get("$set")).get("purgingSince");
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(removed.capture(), eq(MediaBlob.class));
+        assertEquals(claimedAt, removed.getValue().getQueryObject().get("purgingSince"));
+    }
+
+    @Test
+    void purgeKeepsBlobReferencedOrClaimedElsewhere() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(MediaBlob.class)))
+                .thenThrow(new DuplicateKeyException("E11000"));
+
+        assertFalse(storage.purge(KEY, cutoff));
+        assertTrue(Files.exists(blob));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(MediaBlob.class));
+    }
+
+    @Test
+    void purgeKeepsBlobTouchedSinceTheScan() throws Exception {
+        Files.setLastModifiedTime(blob, FileTime.from(Instant.now()));
+
+        assertFalse(storage.purge(KEY, cutoff));
+        assertTrue(Files.exists(blob));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void deleteOfLastReferenceUnlinksOnlyUnderAClaim() {
+        MediaBlob unreferenced = MediaBlob.builder().id(DIGEST).refCount(0).build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(MediaBlob.class)))
+                .thenReturn(unreferenced)
+                .thenThrow(new DuplicateKeyException("E11000"));
+
+        storage.delete(KEY);
+
+        // Referenced again before the claim: the file stays
+        assertTrue(Files.exists(blob));
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(MediaBlob.class));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(MediaBlob.class));
+    }
+
+    @Test
+    void newReferenceWaitsForPurgeInProgress() throws Exception {
+        Path source = root.resolve("upload");
+        Files.writeString(source, "content");
+        // Deduplicates against a blob that stays on disk once the purge gives way
+        String digest = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest("content".getBytes()));
+        Path existing = root.resolve("blobs/" + digest.substring(0, 2) + "/" + digest.substring(2, 4) + "/" + digest);
+        Files.createDirectories(existing.getParent());
+        Files.writeString(existing, "content");
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(MediaBlob.class)))
+                .thenThrow(new DuplicateKeyException("E11000"))
+                .thenReturn(MediaBlob.builder().refCount(1).build());
+
+        StoredObject stored = storage.store("user", "a.txt", "text/plain", source);
+
+        assertEquals("blobs/" + root.relativize(existing).toString().substring("blobs/".length()), stored.getStorageKey());
+        assertFalse(Files.exists(source));
+        ArgumentCaptor<Query> reference = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).findAndModify(reference.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(MediaBlob.class));
+        assertTrue(reference.getValue().getQueryObject().containsKey("$or"));
+    }
+}
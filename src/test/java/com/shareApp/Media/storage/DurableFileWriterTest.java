@@ -0,0 +1,140 @@
+package com.shareApp.Media.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DurableFileWriterTest {
+
+    @TempDir
+    Path root;
+
+    private final List<long[]> samples = new ArrayList<>();
+
+    @SuppressWarnings("unchecked")
+    private DurableFileWriter writer(String durability) {
+        ObjectProvider<StorageWriteListener> listeners = mock(ObjectProvider.class);
+        when(listeners.orderedStream()).thenAnswer(invocation ->
+                Stream.<StorageWriteListener>of((bytes, elapsedNanos) -> samples.add(new long[]{bytes, elapsedNanos})));
+        DurableFileWriter writer = new DurableFileWriter(listeners);
+        ReflectionTestUtils.setField(writer, "bufferSize", 64 * 1024);
+        ReflectionTestUtils.setField(writer, "bufferPoolSize", 2);
+        ReflectionTestUtils.setField(writer, "preallocateMinBytes", 1024 * 1024L);
+        ReflectionTestUtils.setField(writer, "durabilitySetting", durability);
+        ReflectionTestUtils.setField(writer, "groupCommitIntervalMs", 2L);
+        ReflectionTestUtils.setField(writer, "groupCommitMaxBatch", 8);
+        writer.init();
+        return writer;
+    }
+
+    @Test
+    void reportsStorageTimeWithoutSourceReads() throws Exception {
+        byte[] content = new byte[256 * 1024];
+        Path target = root.resolve("user/file.bin");
+
+        long written = writer("fsync").write(new SlowInputStream(content, Duration.ofMillis(50)), target, content.length);
+
+        assertEquals(content.length, written);
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(1, samples.size());
+        assertEquals(content.length, samples.get(0)[0]);
+        // Every read sleeps 50 ms; none of it may count as storage time
+        assertTrue(samples.get(0)[1] < Duration.ofMillis(50).toNanos(), "storage time was " + samples.get(0)[1]);
+    }
+
+    @Test
+    void failedWritesAreNotReported() {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("client went away");
+            }
+        };
+
+        assertThrows(IOException.class, () -> writer("none").write(failing, root.resolve("user/file.bin"), -1));
+        assertTrue(samples.isEmpty());
+    }
+
+    @Test
+    void interruptedGroupCommitIsCancelled() throws Exception {
+        DurableFileWriter writer = writer("group-commit");
+        // Keep the batch open long enough for the writer to be interrupted while it waits
+        ReflectionTestUtils.setField(writer, "groupCommitIntervalMs", 300L);
+        Path target = root.resolve("user/file.bin");
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread uploader = new Thread(() -> {
+            try {
+                writer.write(new ByteArrayInputStream(new byte[1024]), target, -1);
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        uploader.start();
+        Thread.sleep(100);
+        uploader.interrupt();
+        uploader.join();
+
+        assertInstanceOf(InterruptedIOException.class, failure.get());
+        // Past the end of the batch the writer was waiting for: the flusher must have skipped it
+        Thread.sleep(500);
+        writer.shutdown();
+        assertFalse(Files.exists(target));
+        try (Stream<Path> files = Files.list(target.getParent())) {
+            assertEquals(List.of(), files.toList());
+        }
+    }
+
+    @Test
+    void groupCommitLandsTheFile() throws Exception {
+        DurableFileWriter writer = writer("group-commit");
+        Path target = root.resolve("user/file.bin");
+
+        long written = writer.write(new ByteArrayInputStream(new byte[1024]), target, -1);
+        writer.shutdown();
+
+        assertEquals(1024, written);
+        assertEquals(1024, Files.size(target));
+        try (Stream<Path> files = Files.list(target.getParent())) {
+            assertEquals(List.of(target), files.toList());
+        }
+    }
+
+    // Stalls before every read, like a client sending slowly
+    private static final class SlowInputStream extends FilterInputStream {
+        private final Duration delay;
+
+        SlowInputStream(byte[] content, Duration delay) {
+            super(new ByteArrayInputStream(content));
+            this.delay = delay;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                Thread.sleep(delay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            return super.read(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.shareApp.Media.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the S3 backend through the real SDK client against {@link LocalS3Server}.
+ */
+class S3MediaStorageTest {
+
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private LocalS3Server server;
+    private S3Client s3Client;
+    private ExecutorService transferExecutor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new LocalS3Server("media");
+        s3Client = S3Client.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("test", "test")))
+                .endpointOverride(server.endpoint())
+                .forcePathStyle(true)
+                .httpClientBuilder(ApacheHttpClient.builder())
+                .overrideConfiguration(configuration -> configuration.retryPolicy(RetryPolicy.none()))
+                .build();
+        transferExecutor = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transferExecutor.shutdownNow();
+        s3Client.close();
+        server.close();
+    }
+
+    private S3MediaStorage storage(int transferThreads) throws Exception {
+        StorageLayout layout = mock(StorageLayout.class);
+        when(layout.objectKey(anyString(), anyString()))
+                .thenAnswer(invocation -> invocation.getArgument(0) + "/" + invocation.getArgument(1));
+        ContentCompressor compressor = mock(ContentCompressor.class);
+        when(compressor.encode(any(), any(InputStream.class)))
+                .thenAnswer(invocation -> new EncodedContent(invocation.getArgument(1), null, null));
+        when(compressor.encode(any(), any(Path.class))).thenReturn(null);
+
+        S3MediaStorage storage = new S3MediaStorage(s3Client, transferExecutor, layout, compressor);
+        ReflectionTestUtils.setField(storage, "bucket", "media");
+        ReflectionTestUtils.setField(storage, "partSize", PART_SIZE);
+        ReflectionTestUtils.setField(storage, "uploadConcurrency", 4);
+        ReflectionTestUtils.setField(storage, "downloadChunkSize", CHUNK_SIZE);
+        ReflectionTestUtils.setField(storage, "downloadConcurrency", 4);
+        ReflectionTestUtils.setField(storage, "transferThreads", transferThreads);
+        storage.validate();
+        return storage;
+    }
+
+    @Test
+    void multipartUploadRoundTripsThroughRangedAndParallelReads() throws Exception {
+        S3MediaStorage storage = storage(8);
+        byte[] content = content(2 * PART_SIZE + 123_456);
+
+        StoredObject stored = storage.store("user", "video.mp4", "video/mp4", new ByteArrayInputStream(content));
+
+        assertEquals(content.length, stored.getSizeInBytes());
+        assertArrayEquals(content, server.objects.get(stored.getStorageKey()));
+        assertEquals(3, server.requests.stream().filter(request -> request.contains(" part ")).count());
+        assertTrue(server.uploads.isEmpty());
+
+        RangedResource resource = (RangedResource) storage.download(stored.getStorageKey());
+        assertTrue(resource.exists());
+        assertEquals(content.length, resource.contentLength());
+        try (InputStream in = resource.getInputStream()) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+
+        // Within one chunk: a single ranged GET
+        server.requests.clear();
+        try (InputStream in = resource.getInputStream(100, 1000)) {
+            assertArrayEquals(Arrays.copyOfRange(content, 100, 1100), in.readAllBytes());
+        }
+        assertEquals(List.of("GET " + stored.getStorageKey() + " bytes=100-1099"), server.requests);
+
+        // Across chunks: consecutive ranged GETs fetched in parallel
+        server.requests.clear();
+        long start = 3L * CHUNK_SIZE + 5;
+        try (InputStream in = resource.getInputStream(start, 4L * CHUNK_SIZE)) {
+            assertArrayEquals(Arrays.copyOfRange(content, (int) start, (int) start + 4 * CHUNK_SIZE), in.readAllBytes());
+        }
+        assertEquals(4, server.requests.size());
+        assertTrue(server.requests.contains("GET " + stored.getStorageKey() + " bytes=" + start + "-" + (start + CHUNK_SIZE - 1)));
+    }
+
+    @Test
+    void failedPartAbortsTheMultipartUpload() throws Exception {
+        S3MediaStorage storage = storage(8);
+        server.failingPart = 2;
+
+        assertThrows(RuntimeException.class,
+                () -> storage.store("user", "video.mp4", "video/mp4", new ByteArrayInputStream(content(3 * PART_SIZE))));
+
+        assertEquals(1, server.abortedUploads.size());
+        assertTrue(server.uploads.isEmpty());
+        assertTrue(server.objects.isEmpty());
+        // Every part buffer went back to the pool
+        assertEquals(8, ((Semaphore) ReflectionTestUtils.getField(storage, "partBuffers")).availablePermits());
+    }
+
+    @Test
+    void smallUploadIsOnePutAndDeleteRemovesIt() throws Exception {
+        S3MediaStorage storage = storage(8);
+        byte[] content = content(4096);
+
+        StoredObject stored = storage.store("user", "../photo.jpg", "image/jpeg", new ByteArrayInputStream(content));
+
+        assertTrue(stored.getStorageKey().startsWith("user/") && stored.getStorageKey().endsWith("-photo.jpg"));
+        assertEquals(List.of("PUT " + stored.getStorageKey()), server.requests);
+        Resource resource = storage.download(stored.getStorageKey());
+        try (InputStream in = resource.getInputStream()) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+
+        storage.delete(stored.getStorageKey());
+
+        assertFalse(storage.download(stored.getStorageKey()).exists());
+        assertTrue(server.objects.isEmpty());
+    }
+
+    @Test
+    void partBuffersAreSharedByAllUploads() throws Exception {
+        // Two permits for two uploads that would each keep four parts in flight on their own
+        S3MediaStorage storage = storage(2);
+        server.partDelayMillis = 100;
+        ExecutorService uploaders = Executors.newFixedThreadPool(2);
+        try {
+            Future<StoredObject> first = uploaders.submit(() ->
+                    storage.store("user", "a.mp4", "video/mp4", new ByteArrayInputStream(content(4 * PART_SIZE))));
+            Future<StoredObject> second = uploaders.submit(() ->
+                    storage.store("user", "b.mp4", "video/mp4", new ByteArrayInputStream(content(4 * PART_SIZE))));
+            assertEquals(4L * PART_SIZE, first.get().getSizeInBytes());
+            assertEquals(4L * PART_SIZE, second.get().getSizeInBytes());
+        } finally {
+            uploaders.shutdownNow();
+        }
+
+        assertTrue(server.maxPartsInFlight.get() <= 2, "parts in flight: " + server.maxPartsInFlight.get());
+        assertEquals(2, server.objects.size());
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+}
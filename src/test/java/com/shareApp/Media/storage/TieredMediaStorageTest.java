@@ -0,0 +1,65 @@
+package com.shareApp.Media.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TieredMediaStorageTest {
+
+    private static final String KEY = "user/photo.jpg";
+
+    @TempDir
+    Path hot;
+
+    @TempDir
+    Path cold;
+
+    private LocalMediaStorage hotTier;
+    private StorageLayout storageLayout;
+    private TieredMediaStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        hotTier = mock(LocalMediaStorage.class);
+        storageLayout = mock(StorageLayout.class);
+        when(storageLayout.canonicalKey(KEY)).thenReturn(KEY);
+        storage = new TieredMediaStorage(hotTier, storageLayout);
+        ReflectionTestUtils.setField(storage, "hotPath", hot.toString());
+        ReflectionTestUtils.setField(storage, "coldPath", cold.toString());
+    }
+
+    @Test
+    void readDuringPromotionFindsTheHotCopy() throws Exception {
+        Path hotFile = hot.resolve(KEY);
+        Resource beforePromotion = mock(Resource.class);
+        when(beforePromotion.exists()).thenReturn(false);
+        // The object is still cold when the hot tier is checked, and promoted before the cold tier is
+        when(hotTier.download(KEY)).thenReturn(beforePromotion).thenAnswer(invocation -> {
+            Files.createDirectories(hotFile.getParent());
+            Files.writeString(hotFile, "content");
+            return new FileSystemResource(hotFile);
+        });
+
+        Resource resource = storage.download(KEY);
+
+        assertTrue(resource.exists());
+        assertEquals(hotFile, resource.getFile().toPath());
+        verify(hotTier, times(2)).download(KEY);
+    }
+
+    @Test
+    void missingObjectStaysMissing() {
+        when(hotTier.download(KEY)).thenReturn(new FileSystemResource(hot.resolve(KEY)));
+
+        assertFalse(storage.download(KEY).exists());
+    }
+}
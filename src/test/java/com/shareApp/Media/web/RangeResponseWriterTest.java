@@ -0,0 +1,122 @@
+package com.shareApp.Media.web;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeResponseWriterTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final Instant LAST_MODIFIED = Instant.parse("2026-09-01T12:00:00Z");
+
+    private final byte[] content = new byte[100];
+    private RangeResponseWriter writer;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        writer = new RangeResponseWriter();
+        request = new MockHttpServletRequest("GET", "/media/1/download");
+        response = new MockHttpServletResponse();
+    }
+
+    private void write() throws Exception {
+        writer.write(request, response, new ByteArrayResource(content), "file.bin", "application/octet-stream",
+                ETAG, LAST_MODIFIED);
+    }
+
+    @Test
+    void suffixRangeServesTheTail() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=-10");
+
+        write();
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 90-99/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(content, 90, 100), response.getContentAsByteArray());
+    }
+
+    @Test
+    void disjointRangesAreSentAsMultipart() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-9,50-59");
+
+        write();
+
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        String body = response.getContentAsString();
+        assertTrue(body.contains("Content-Range: bytes 0-9/100"));
+        assertTrue(body.contains("Content-Range: bytes 50-59/100"));
+        assertEquals(response.getContentAsByteArray().length, response.getContentLengthLong());
+    }
+
+    @Test
+    void overlappingRangesLongerThanTheResourceAreSentWhole() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-69,30-99");
+
+        write();
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(100, response.getContentLengthLong());
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void unsatisfiableRangeIsRejected() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=200-299");
+
+        write();
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void ifRangeMismatchSendsTheWholeResource() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"v0\"");
+
+        write();
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void ifRangeMatchingEtagOrDateHonoursTheRange() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-19");
+        request.addHeader(HttpHeaders.IF_RANGE, ETAG);
+
+        write();
+
+        assertEquals(206, response.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(content, 10, 20), response.getContentAsByteArray());
+
+        request = new MockHttpServletRequest("GET", "/media/1/download");
+        response = new MockHttpServletResponse();
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-19");
+        request.addHeader(HttpHeaders.IF_RANGE,
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(LAST_MODIFIED.atOffset(ZoneOffset.UTC)));
+
+        write();
+
+        assertEquals(206, response.getStatus());
+    }
+}
@@ -0,0 +1,76 @@
+package com.shareApp.Payment;
+
+import com.shareApp.Payment.services.BillingEngine;
+import com.shareApp.Payment.services.ByteSeconds;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares billing a month of tracking periods with the previous double arithmetic against
+ * {@link BillingEngine}. Not run by the test suite; start {@link #main} from the IDE or with
+ * {@code java -cp target/test-classes:<test classpath> com.shareApp.Payment.BillingEngineBenchmark}.
+ * The GC profiler reports allocation per operation next to throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BillingEngineBenchmark {
+
+    private static final double COST_PER_BYTE_PER_SECOND = 0.000000001;
+
+    @Param({"31", "1000", "10000"})
+    private int periods;
+
+    private long[] bytes;
+    private long[] seconds;
+    private BillingEngine billingEngine;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        bytes = new long[periods];
+        seconds = new long[periods];
+        for (int i = 0; i < periods; i++) {
+            bytes[i] = random.nextLong(1L << 20, 1L << 40);
+            seconds[i] = random.nextLong(1, 86_400);
+        }
+        billingEngine = new BillingEngine(new BigDecimal("0.000000001"));
+    }
+
+    @Benchmark
+    public long doubleSum() {
+        // Per-period double cost summed, then rebuilt from the double as StripeService used to
+        double total = 0;
+        for (int i = 0; i < periods; i++) {
+            total += bytes[i] * seconds[i] * COST_PER_BYTE_PER_SECOND;
+        }
+        return new BigDecimal(total).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    @Benchmark
+    public long fixedPoint() {
+        ByteSeconds usage = new ByteSeconds();
+        for (int i = 0; i < periods; i++) {
+            usage.add(bytes[i], seconds[i]);
+        }
+        return billingEngine.invoiceAmount(usage).unscaledValue().longValue();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BillingEngineBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,66 @@
+package com.shareApp.Payment.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BillingEngineTest {
+
+    private static final BigDecimal RATE = new BigDecimal("0.000000001");
+
+    private final BillingEngine engine = new BillingEngine(RATE);
+
+    @Test
+    void roundsInvoiceAmountsHalfUp() {
+        // 0.005 USD exactly rounds up, just below rounds down
+        assertEquals(new BigDecimal("0.01"), engine.invoiceAmount(new ByteSeconds().add(5_000_000)));
+        assertEquals(new BigDecimal("0.00"), engine.invoiceAmount(new ByteSeconds().add(4_999_999)));
+        assertEquals(new BigDecimal("-0.01"), engine.invoiceAmount(new ByteSeconds().add(-5_000_000)));
+    }
+
+    @Test
+    void costsUsageBeyondTheLongRange() {
+        ByteSeconds usage = new ByteSeconds().add(Long.MAX_VALUE, 1_000);
+        BigDecimal expected = new BigDecimal(BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.valueOf(1_000))).multiply(RATE);
+
+        assertFalse(usage.fitsInLong());
+        assertEquals(0, expected.compareTo(engine.cost(usage)));
+    }
+
+    @Test
+    void costsUsageWhoseProductOverflowsALong() {
+        // Fits in a long, but times the rate units it does not
+        ByteSeconds usage = new ByteSeconds().add(Long.MAX_VALUE / 2);
+        BigDecimal expected = BigDecimal.valueOf(Long.MAX_VALUE / 2).multiply(RATE);
+
+        assertTrue(usage.fitsInLong());
+        assertEquals(0, expected.compareTo(engine.cost(usage)));
+    }
+
+    @Test
+    void invoiceAmountsMatchBigDecimal() {
+        Random random = new Random(7);
+        BillingEngine oddRate = new BillingEngine(new BigDecimal("0.000000000123456789"));
+        for (int i = 0; i < 10_000; i++) {
+            long bytes = random.nextLong() >> random.nextInt(64);
+            long seconds = random.nextInt(86_400 * 31);
+            ByteSeconds usage = new ByteSeconds().add(bytes, seconds);
+            BigDecimal exact = new BigDecimal(BigInteger.valueOf(bytes).multiply(BigInteger.valueOf(seconds)));
+
+            assertEquals(exact.multiply(RATE).setScale(2, RoundingMode.HALF_UP), engine.invoiceAmount(usage));
+            assertEquals(exact.multiply(new BigDecimal("0.000000000123456789")).setScale(2, RoundingMode.HALF_UP),
+                    oddRate.invoiceAmount(usage));
+        }
+    }
+
+    @Test
+    void rejectsRatesFinerThanTheScale() {
+        assertThrows(IllegalStateException.class, () -> new BillingEngine(new BigDecimal("0.0000000000000000001")));
+        assertThrows(IllegalStateException.class, () -> new BillingEngine(new BigDecimal("-0.000000001")));
+    }
+}
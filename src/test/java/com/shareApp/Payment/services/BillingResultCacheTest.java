@@ -0,0 +1,102 @@
+package com.shareApp.Payment.services;
+
+import com.shareApp.Payment.repositories.StorageUsageEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BillingResultCacheTest {
+
+    private static final YearMonth CURRENT = YearMonth.now(ZoneOffset.UTC);
+    private static final YearMonth CLOSED = CURRENT.minusMonths(2);
+
+    private DailyRollupService dailyRollupService;
+    private StorageUsageEventRepository eventRepository;
+    private BillingResultCache cache;
+    private AtomicInteger computations;
+
+    @BeforeEach
+    void setUp() {
+        dailyRollupService = mock(DailyRollupService.class);
+        eventRepository = mock(StorageUsageEventRepository.class);
+        cache = new BillingResultCache(dailyRollupService, eventRepository);
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        // Anything not cached for good is recomputed on every lookup
+        ReflectionTestUtils.setField(cache, "openMonthTtlSeconds", 0L);
+        ReflectionTestUtils.setField(cache, "closedMonthGraceMinutes", 60L);
+        computations = new AtomicInteger();
+        when(dailyRollupService.covers(anyString(), any(), any())).thenReturn(true);
+    }
+
+    private int lookup(String userId, YearMonth month) {
+        return cache.get(userId, month, BillingResultCache.Kind.MONTHLY_COST, computations::incrementAndGet);
+    }
+
+    @Test
+    void finalMonthIsComputedOnce() {
+        lookup("user-1", CLOSED);
+        lookup("user-1", CLOSED);
+        cache.invalidate("user-1");
+
+        assertEquals(1, lookup("user-1", CLOSED));
+        assertEquals(1, computations.get());
+        Instant end = CLOSED.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        verify(dailyRollupService).covers("user-1", CLOSED.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant(), end);
+        verify(eventRepository).existsByProjectedFalseAndUserIdAndOccurredAtBefore("user-1", end);
+    }
+
+    @Test
+    void closedMonthNotYetRolledUpIsNotFrozen() {
+        when(dailyRollupService.covers(anyString(), any(), any())).thenReturn(false);
+
+        lookup("user-1", CLOSED);
+        lookup("user-1", CLOSED);
+
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    void closedMonthWithUnprojectedEventsIsNotFrozen() {
+        when(eventRepository.existsByProjectedFalseAndUserIdAndOccurredAtBefore(eq("user-1"), any())).thenReturn(true);
+
+        lookup("user-1", CLOSED);
+        lookup("user-1", CLOSED);
+
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    void openMonthExpiresAndIsNeverCheckedForFinality() {
+        ReflectionTestUtils.setField(cache, "openMonthTtlSeconds", 3600L);
+
+        lookup("user-1", CURRENT);
+        lookup("user-1", CURRENT);
+        cache.invalidate("user-1");
+        lookup("user-1", CURRENT);
+
+        assertEquals(2, computations.get());
+        verifyNoInteractions(dailyRollupService, eventRepository);
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        lookup("user-1", CLOSED);
+        lookup("user-2", CLOSED);
+        lookup("user-1", CLOSED);
+        lookup("user-3", CLOSED);
+
+        lookup("user-1", CLOSED);
+        lookup("user-2", CLOSED);
+
+        assertEquals(4, computations.get());
+    }
+}
@@ -0,0 +1,77 @@
+package com.shareApp.Payment.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteSecondsTest {
+
+    @Test
+    void carriesFromTheLowWordIntoTheHighWord() {
+        ByteSeconds usage = new ByteSeconds().add(Long.MAX_VALUE).add(Long.MAX_VALUE).add(2);
+
+        assertEquals(BigInteger.ONE.shiftLeft(64), usage.toBigInteger());
+        assertFalse(usage.fitsInLong());
+    }
+
+    @Test
+    void multipliesPastTheLongRange() {
+        ByteSeconds usage = new ByteSeconds().add(Long.MAX_VALUE, 1_000_000);
+
+        assertEquals(BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.valueOf(1_000_000)), usage.toBigInteger());
+        assertThrows(ArithmeticException.class, usage::longValueExact);
+    }
+
+    @Test
+    void negativeAdjustmentsBorrowAcrossWords() {
+        ByteSeconds usage = new ByteSeconds().add(Long.MAX_VALUE, 4).add(-1).add(-3, Long.MAX_VALUE);
+
+        assertEquals(BigInteger.valueOf(Long.MAX_VALUE).subtract(BigInteger.ONE), usage.toBigInteger());
+        assertTrue(usage.fitsInLong());
+        assertEquals(Long.MAX_VALUE - 1, usage.longValueExact());
+    }
+
+    @Test
+    void staysExactBelowZero() {
+        ByteSeconds usage = new ByteSeconds().add(10, 5).add(-20, 5);
+
+        assertEquals(-50, usage.longValueExact());
+        assertEquals(BigInteger.valueOf(-50), usage.toBigInteger());
+
+        usage.add(Long.MIN_VALUE, 2);
+        assertFalse(usage.fitsInLong());
+        assertEquals(BigInteger.valueOf(Long.MIN_VALUE).multiply(BigInteger.TWO).subtract(BigInteger.valueOf(50)), usage.toBigInteger());
+    }
+
+    @Test
+    void addingTotalsMatchesAddingTheirParts() {
+        ByteSeconds first = new ByteSeconds().add(Long.MAX_VALUE, 3);
+        ByteSeconds second = new ByteSeconds().add(-7, Long.MAX_VALUE).add(Long.MIN_VALUE);
+
+        BigInteger expected = first.toBigInteger().add(second.toBigInteger());
+        assertEquals(expected, first.add(second).toBigInteger());
+    }
+
+    @Test
+    void matchesBigIntegerArithmetic() {
+        Random random = new Random(42);
+        ByteSeconds usage = new ByteSeconds();
+        BigInteger expected = BigInteger.ZERO;
+        for (int i = 0; i < 10_000; i++) {
+            long bytes = random.nextLong();
+            long seconds = random.nextInt(3) == 0 ? random.nextLong() : random.nextInt(86_400 * 31);
+            usage.add(bytes, seconds);
+            expected = expected.add(BigInteger.valueOf(bytes).multiply(BigInteger.valueOf(seconds)));
+            // Stay within 128 bits so the reference and the accumulator agree
+            if (expected.bitLength() > 120) {
+                usage.add(new ByteSeconds().add(bytes, -seconds));
+                expected = expected.subtract(BigInteger.valueOf(bytes).multiply(BigInteger.valueOf(seconds)));
+            }
+            assertEquals(expected, usage.toBigInteger());
+            assertEquals(expected.bitLength() < 64, usage.fitsInLong());
+        }
+    }
+}
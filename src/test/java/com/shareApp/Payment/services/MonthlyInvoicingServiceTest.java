@@ -0,0 +1,77 @@
+package com.shareApp.Payment.services;
+
+import com.shareApp.Authentication.entities.User;
+import com.shareApp.Payment.entitites.InvoicingRun;
+import com.shareApp.Payment.repositories.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MonthlyInvoicingServiceTest {
+
+    private static final YearMonth MONTH = YearMonth.of(2026, 9);
+
+    private MongoTemplate mongoTemplate;
+    private PaymentInformationService paymentInformationService;
+    private StripeService stripeService;
+    private MonthlyInvoicingService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        paymentInformationService = mock(PaymentInformationService.class);
+        stripeService = mock(StripeService.class);
+        service = new MonthlyInvoicingService(mongoTemplate, mock(PaymentRepository.class), paymentInformationService, stripeService);
+        ReflectionTestUtils.setField(service, "pageSize", 2);
+        ReflectionTestUtils.setField(service, "parallelism", 2);
+        ReflectionTestUtils.setField(service, "maxConcurrentProviderCalls", 1);
+        ReflectionTestUtils.setField(service, "maxPasses", 3);
+        ReflectionTestUtils.setField(service, "leaseSeconds", 300L);
+        when(paymentInformationService.calculateMonthlyStorageAmount(anyString(), anyInt(), anyInt())).thenReturn(BigDecimal.ONE);
+    }
+
+    @Test
+    void runLeasedByAnotherInstanceIsLeftAlone() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(InvoicingRun.class)))
+                .thenThrow(new DuplicateKeyException("lease held"));
+
+        assertNull(service.invoiceMonth(MONTH));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(User.class));
+        verifyNoInteractions(stripeService);
+    }
+
+    @Test
+    void stopsWhenTheLeaseIsLost() throws Exception {
+        InvoicingRun claimed = InvoicingRun.builder().id(MONTH.toString()).status("RUNNING").pass(1).build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(InvoicingRun.class)))
+                .thenReturn(claimed)
+                .thenReturn(null);
+        when(mongoTemplate.find(any(Query.class), eq(User.class))).thenReturn(List.of(user("a"), user("b")));
+
+        service.invoiceMonth(MONTH);
+
+        verify(stripeService, times(2)).createMonthlyInvoice(anyString(), eq(MONTH), any());
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(User.class));
+        // Claim and the failed checkpoint only, no completion
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(InvoicingRun.class));
+    }
+
+    private static User user(String id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,252 @@
+package com.shareApp.Payment.services;
+
+import com.shareApp.Media.service.StorageCounterService;
+import com.shareApp.Payment.entitites.DailyStorageRollup;
+import com.shareApp.Payment.entitites.PaymentInformation;
+import com.shareApp.Payment.entitites.StorageUsage;
+import com.shareApp.Payment.entitites.StorageUsageEvent;
+import com.shareApp.Payment.repositories.PaymentInformationRepository;
+import com.shareApp.Payment.repositories.StorageUsageRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PaymentInformationServiceTest {
+
+    private static final Instant T0 = Instant.parse("2026-03-01T00:00:00Z");
+
+    @Test
+    void coalescedRunBillsLikeSingleEvents() {
+        List<StorageUsageEvent> run = List.of(event(2, 250, 10), event(3, 200, 12), event(4, 500, 30));
+        Views coalesced = new Views();
+        Views single = new Views();
+
+        coalesced.apply(event(1, 100, 0)).apply(run).apply(event(5, 0, 100));
+        single.apply(event(1, 100, 0));
+        run.forEach(single::apply);
+        single.apply(event(5, 0, 100));
+
+        assertEquals(100 * 10 + 250 * 2 + 200 * 18 + 500 * 70, single.billedByteSeconds());
+        assertEquals(single.billedByteSeconds(), coalesced.billedByteSeconds());
+        assertEquals(single.active().getPeriodStart(), coalesced.active().getPeriodStart());
+        assertEquals(single.history, coalesced.history);
+    }
+
+    @Test
+    void outOfOrderTimesBillLikeSingleEvents() {
+        // Appended by instances whose clocks disagree: times go back inside the run and after it
+        List<StorageUsageEvent> run = List.of(event(2, 250, 10), event(3, 200, 4), event(4, 500, 30), event(5, 300, 25));
+        Views coalesced = new Views();
+        Views single = new Views();
+
+        coalesced.apply(event(1, 100, 0)).apply(run).apply(event(6, 0, 20));
+        single.apply(event(1, 100, 0));
+        run.forEach(single::apply);
+        single.apply(event(6, 0, 20));
+
+        // Times never go back: 200 bytes from 10 to 30, nothing billed for the later stragglers
+        assertEquals(100 * 10 + 200 * 20, single.billedByteSeconds());
+        assertEquals(single.billedByteSeconds(), coalesced.billedByteSeconds());
+        assertEquals(T0.plusSeconds(30), coalesced.active().getPeriodStart());
+        assertEquals(single.active().getPeriodStart(), coalesced.active().getPeriodStart());
+    }
+
+    @Test
+    void reapplyingARunOrItsPrefixChangesNothing() {
+        List<StorageUsageEvent> run = List.of(event(2, 250, 10), event(3, 200, 12), event(4, 500, 30));
+        Views views = new Views().apply(event(1, 100, 0)).apply(run);
+        List<String> periods = views.snapshot();
+        Map<String, PaymentInformation> history = new LinkedHashMap<>(views.history);
+
+        views.apply(run).apply(run.subList(0, 2)).apply(event(2, 250, 10));
+
+        assertEquals(periods, views.snapshot());
+        assertEquals(history, views.history);
+    }
+
+    @Test
+    void continuesAfterAnInterruptedPrefix() {
+        List<StorageUsageEvent> run = List.of(event(2, 250, 10), event(3, 200, 12), event(4, 500, 30));
+        Views interrupted = new Views();
+        Views clean = new Views();
+
+        // The first two were applied but the checkpoint was never written, so the whole run comes again
+        interrupted.apply(event(1, 100, 0)).apply(run.subList(0, 2)).apply(run).apply(event(5, 0, 100));
+        clean.apply(event(1, 100, 0)).apply(run).apply(event(5, 0, 100));
+
+        assertEquals(clean.billedByteSeconds(), interrupted.billedByteSeconds());
+        assertEquals(clean.active().getPeriodStart(), interrupted.active().getPeriodStart());
+    }
+
+    @Test
+    void resumesFromTheLastPeriodWhenNoneIsActive() {
+        List<StorageUsageEvent> run = List.of(event(2, 250, -5), event(3, 200, 12));
+        Views interrupted = new Views().apply(event(1, 100, 0));
+        Views clean = new Views().apply(event(1, 100, 0));
+
+        // Stopped after ending the active period but before starting the next one
+        interrupted.service.endActiveStorageTracking("user", T0);
+        interrupted.apply(run).apply(event(4, 0, 100));
+        clean.apply(run).apply(event(4, 0, 100));
+
+        assertEquals(clean.snapshot(), interrupted.snapshot());
+        assertEquals(250 * 12 + 200 * 88, clean.billedByteSeconds());
+    }
+
+    @Test
+    void billsAPeriodAcrossAMonthEdgeTheSameFromRollupsAndPeriods() {
+        StorageUsage period = StorageUsage.builder()
+                .id("user:7")
+                .userId("user")
+                .status("COMPLETED")
+                .storageUsedInBytes(1000)
+                .adjustmentByteSeconds(500)
+                .periodStart(Instant.parse("2026-01-31T12:00:00Z"))
+                .periodEnd(Instant.parse("2026-02-01T12:00:00Z"))
+                .durationInSeconds(86_400)
+                .build();
+        DailyRollupService rollups = spy(new DailyRollupService(rollupTemplate()));
+        rollups.recordPeriod(period);
+
+        StorageUsageRepository storageUsageRepository = mock(StorageUsageRepository.class);
+        when(storageUsageRepository.findCompletedOverlapping(eq("user"), any(Instant.class), any(Instant.class)))
+                .thenAnswer(invocation -> period.getPeriodStart().isBefore(invocation.getArgument(2))
+                        && !period.getPeriodEnd().isBefore(invocation.getArgument(1)) ? List.of(period) : List.of());
+        when(storageUsageRepository.findFirstByUserIdAndStatusOrderByTimestampDesc("user", "ACTIVE")).thenReturn(Optional.empty());
+        PaymentInformationService service = new PaymentInformationService(mock(PaymentInformationRepository.class),
+                storageUsageRepository, mock(StorageCounterService.class), rollups,
+                new BillingEngine(new BigDecimal("0.000000001")), mock(BillingResultCache.class));
+
+        Map<YearMonth, Long> expected = Map.of(YearMonth.of(2026, 1), 1000L * 43_200 + 500, YearMonth.of(2026, 2), 1000L * 43_200);
+        expected.forEach((month, byteSeconds) -> {
+            Instant start = month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+            Instant end = month.atEndOfMonth().atTime(23, 59, 59).atZone(ZoneOffset.UTC).toInstant();
+
+            doReturn(true).when(rollups).covers("user", start, end);
+            BigInteger fromRollups = service.getUsageForPeriod("user", start, end).toBigInteger();
+            doReturn(false).when(rollups).covers("user", start, end);
+            BigInteger fromPeriods = service.getUsageForPeriod("user", start, end).toBigInteger();
+
+            assertEquals(BigInteger.valueOf(byteSeconds), fromRollups, month.toString());
+            assertEquals(fromRollups, fromPeriods, month.toString());
+        });
+    }
+
+    // Day documents held in memory: byte-seconds per <userId>:<day>
+    private static MongoTemplate rollupTemplate() {
+        Map<String, Long> days = new HashMap<>();
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(DailyStorageRollup.class))).thenAnswer(invocation -> {
+            String id = ((Query) invocation.getArgument(0)).getQueryObject().getString("_id");
+            Document increments = (Document) ((Update) invocation.getArgument(1)).getUpdateObject().get("$inc");
+            days.merge(id, ((Number) increments.get("byteSeconds")).longValue(), Long::sum);
+            return null;
+        });
+        when(mongoTemplate.find(any(Query.class), eq(DailyStorageRollup.class))).thenAnswer(invocation -> {
+            Document range = (Document) ((Query) invocation.getArgument(0)).getQueryObject().get("day");
+            return days.entrySet().stream()
+                    .filter(day -> day.getKey().substring("user:".length()).compareTo(range.getString("$gte")) >= 0
+                            && day.getKey().substring("user:".length()).compareTo(range.getString("$lte")) <= 0)
+                    .map(day -> DailyStorageRollup.builder().byteSeconds(day.getValue()).build())
+                    .toList();
+        });
+        return mongoTemplate;
+    }
+
+    private static StorageUsageEvent event(long sequence, long totalBytesAfter, long secondsAfterStart) {
+        return StorageUsageEvent.builder()
+                .id("user:" + sequence)
+                .userId("user")
+                .sequence(sequence)
+                .actionType("UPLOAD")
+                .totalBytesAfter(totalBytesAfter)
+                .occurredAt(T0.plusSeconds(secondsAfterStart))
+                .build();
+    }
+
+    // One user's billing views held in memory
+    private static final class Views {
+        private final Map<String, StorageUsage> periods = new LinkedHashMap<>();
+        private final Map<String, PaymentInformation> history = new LinkedHashMap<>();
+        private final PaymentInformationService service;
+
+        @SuppressWarnings("unchecked")
+        Views() {
+            PaymentInformationRepository paymentInfoRepository = mock(PaymentInformationRepository.class);
+            when(paymentInfoRepository.saveAll(any(Iterable.class))).thenAnswer(invocation -> {
+                Iterable<PaymentInformation> saved = invocation.getArgument(0);
+                saved.forEach(info -> history.put(info.getId(), info));
+                return saved;
+            });
+            StorageUsageRepository storageUsageRepository = mock(StorageUsageRepository.class);
+            when(storageUsageRepository.save(any(StorageUsage.class))).thenAnswer(invocation -> {
+                StorageUsage usage = invocation.getArgument(0);
+                periods.put(usage.getId(), usage);
+                return usage;
+            });
+            when(storageUsageRepository.findFirstByUserIdAndStatusOrderByTimestampDesc(anyString(), anyString()))
+                    .thenAnswer(invocation -> periods.values().stream()
+                            .filter(usage -> usage.getStatus().equals(invocation.getArgument(1)))
+                            .max(Comparator.comparing(StorageUsage::getTimestamp)));
+            when(storageUsageRepository.findByUserIdOrderByTimestampDesc(anyString(), any(Pageable.class)))
+                    .thenAnswer(invocation -> new PageImpl<>(periods.values().stream()
+                            .sorted(Comparator.comparing(StorageUsage::getTimestamp).reversed())
+                            .limit(((Pageable) invocation.getArgument(1)).getPageSize())
+                            .toList()));
+            service = new PaymentInformationService(paymentInfoRepository, storageUsageRepository,
+                    mock(StorageCounterService.class), mock(DailyRollupService.class),
+                    new BillingEngine(new BigDecimal("0.000000001")), mock(BillingResultCache.class));
+        }
+
+        Views apply(StorageUsageEvent event) {
+            return apply(List.of(event));
+        }
+
+        Views apply(List<StorageUsageEvent> events) {
+            service.applyUsageEvents(events);
+            return this;
+        }
+
+        StorageUsage active() {
+            return periods.values().stream().filter(usage -> usage.getStatus().equals("ACTIVE")).findFirst().orElseThrow();
+        }
+
+        // Everything billed up to the active period's start
+        long billedByteSeconds() {
+            ByteSeconds billed = new ByteSeconds();
+            for (StorageUsage usage : periods.values()) {
+                if (usage.getStatus().equals("COMPLETED")) {
+                    billed.add(usage.getStorageUsedInBytes(), usage.getDurationInSeconds());
+                }
+                billed.add(usage.getAdjustmentByteSeconds());
+            }
+            return billed.longValueExact();
+        }
+
+        List<String> snapshot() {
+            return periods.values().stream().map(StorageUsage::toString).toList();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.shareApp.Payment.services;
+
+import com.shareApp.Payment.entitites.StorageProjectionCheckpoint;
+import com.shareApp.Payment.entitites.StorageProjectionLease;
+import com.shareApp.Payment.entitites.StorageUsageEvent;
+import com.shareApp.Payment.repositories.StorageUsageEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StorageUsageProjectorTest {
+
+    private StorageUsageEventRepository eventRepository;
+    private PaymentInformationService paymentInformationService;
+    private MongoTemplate mongoTemplate;
+    private StorageUsageProjector projector;
+    private final Instant now = Instant.now();
+
+    @BeforeEach
+    void setUp() {
+        eventRepository = mock(StorageUsageEventRepository.class);
+        paymentInformationService = mock(PaymentInformationService.class);
+        mongoTemplate = mock(MongoTemplate.class);
+        projector = new StorageUsageProjector(eventRepository, paymentInformationService, mongoTemplate);
+        ReflectionTestUtils.setField(projector, "batchSize", 500);
+        ReflectionTestUtils.setField(projector, "gapTimeoutSeconds", 30L);
+        ReflectionTestUtils.setField(projector, "coalesceWindowMs", 5000L);
+        ReflectionTestUtils.setField(projector, "leaseSeconds", 60L);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(StorageProjectionLease.class))).thenReturn(new StorageProjectionLease());
+        checkpointAt(1);
+    }
+
+    @Test
+    void leavesProjectionToTheInstanceHoldingTheLease() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(StorageProjectionLease.class))).thenThrow(new DuplicateKeyException("lease held"));
+        pending(List.of(event(2, 10)));
+
+        projector.project();
+
+        verifyNoInteractions(eventRepository, paymentInformationService);
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(StorageProjectionLease.class));
+    }
+
+    @Test
+    void releasesTheLeaseAfterAPass() {
+        pending(List.of(event(2, 10)));
+
+        projector.project();
+
+        verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(StorageProjectionLease.class));
+    }
+
+    @Test
+    void appliesARunOnceTheCoalesceWindowHasPassed() {
+        List<StorageUsageEvent> events = List.of(event(2, 10), event(3, 9), event(4, 8));
+        pending(events);
+
+        projector.project();
+
+        verify(paymentInformationService).applyUsageEvents(events);
+        verify(mongoTemplate).upsert(any(Query.class), any(Update.class), eq(StorageProjectionCheckpoint.class));
+        verify(mongoTemplate).updateMulti(any(Query.class), any(Update.class), eq(StorageUsageEvent.class));
+    }
+
+    @Test
+    void holdsARecentRunUntilFlushed() throws Exception {
+        List<StorageUsageEvent> events = List.of(event(2, 2), event(3, 1));
+        pending(events);
+
+        projector.project();
+        verify(paymentInformationService, never()).applyUsageEvents(anyList());
+
+        projector.flush();
+        verify(paymentInformationService).applyUsageEvents(events);
+    }
+
+    @Test
+    void flushWithNothingHeldDoesNotProject() throws Exception {
+        projector.flush();
+
+        verifyNoInteractions(eventRepository, paymentInformationService);
+    }
+
+    @Test
+    void skipsAGapOnceItTimesOut() {
+        List<StorageUsageEvent> events = List.of(event(4, 60), event(5, 59));
+        pending(events);
+
+        projector.project();
+
+        verify(paymentInformationService).applyUsageEvents(events);
+    }
+
+    @Test
+    void waitsForMissingEventsWithinTheGapTimeout() throws Exception {
+        // Event 3 may still be on its way; 4 and 5 wait for it even when flushing
+        pending(List.of(event(2, 20), event(4, 10), event(5, 9)));
+
+        projector.project();
+        verify(paymentInformationService).applyUsageEvents(List.of(event(2, 20)));
+
+        reset(paymentInformationService);
+        checkpointAt(2);
+        pending(List.of(event(4, 10), event(5, 9)));
+        projector.project();
+        projector.flush();
+        verify(paymentInformationService, never()).applyUsageEvents(anyList());
+    }
+
+    @Test
+    void onlyMarksEventsThatWereAlreadyApplied() {
+        checkpointAt(3);
+        pending(List.of(event(2, 20), event(3, 19)));
+
+        projector.project();
+
+        verify(paymentInformationService, never()).applyUsageEvents(anyList());
+        verify(mongoTemplate, times(2)).updateMulti(any(Query.class), any(Update.class), eq(StorageUsageEvent.class));
+    }
+
+    private void pending(List<StorageUsageEvent> events) {
+        when(eventRepository.findPending(any(Pageable.class))).thenReturn(events);
+    }
+
+    private void checkpointAt(long sequence) {
+        when(mongoTemplate.findById("user", StorageProjectionCheckpoint.class))
+                .thenReturn(StorageProjectionCheckpoint.builder().id("user").lastSequence(sequence).build());
+    }
+
+    private StorageUsageEvent event(long sequence, long secondsAgo) {
+        return StorageUsageEvent.builder()
+                .id("user:" + sequence)
+                .userId("user")
+                .sequence(sequence)
+                .totalBytesAfter(sequence * 100)
+                .occurredAt(now.minus(Duration.ofSeconds(secondsAgo)))
+                .build();
+    }
+}
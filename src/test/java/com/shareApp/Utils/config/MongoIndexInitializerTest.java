@@ -0,0 +1,123 @@
+package com.shareApp.Utils.config;
+
+import com.shareApp.Media.model.Media;
+import com.shareApp.Media.model.UploadSession;
+import com.shareApp.Payment.entitites.DailyStorageRollup;
+import com.shareApp.Payment.entitites.Payment;
+import com.shareApp.Payment.entitites.StorageUsage;
+import com.shareApp.Payment.entitites.StorageUsageEvent;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MongoIndexInitializerTest {
+
+    private MongoTemplate mongoTemplate;
+    private final Map<Class<?>, IndexOperations> indexOps = new HashMap<>();
+    private boolean reachable = true;
+
+    @BeforeEach
+    void setUp() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext));
+        when(mongoTemplate.indexOps(any(Class.class))).thenAnswer(invocation -> {
+            if (!reachable) {
+                throw new RuntimeException("unreachable");
+            }
+            return indexOps.computeIfAbsent(invocation.getArgument(0), type -> mock(IndexOperations.class));
+        });
+    }
+
+    @Test
+    void createsMediaIndexes() {
+        new MongoIndexInitializer(mongoTemplate).ensureIndexes();
+
+        Map<String, Document> created = ensured(Media.class);
+        assertTrue(created.containsKey("user_uploaded_id"));
+        assertTrue(created.containsKey("s3Key"));
+    }
+
+    @Test
+    void createsRollupAndSessionIndexes() {
+        new MongoIndexInitializer(mongoTemplate).ensureIndexes();
+
+        assertTrue(ensured(DailyStorageRollup.class).containsKey("user_day"));
+        assertTrue(ensured(UploadSession.class).containsKey("expiresAt"));
+        Map<String, Document> periods = ensured(StorageUsage.class);
+        assertTrue(periods.containsKey("user_status_timestamp"));
+        for (String pending : List.of("pending_rollup_user", "pending_rollup")) {
+            Document filter = (Document) periods.get(pending).get("partialFilterExpression");
+            assertEquals(new Document("status", "COMPLETED").append("rolledUp", false), filter);
+        }
+    }
+
+    @Test
+    void createsLedgerIndexes() {
+        new MongoIndexInitializer(mongoTemplate).ensureIndexes();
+
+        Map<String, Document> created = ensured(StorageUsageEvent.class);
+        assertTrue(created.containsKey("pending_user_sequence"));
+        assertEquals(30L * 24 * 60 * 60, ((Number) created.get("projected_ttl").get("expireAfterSeconds")).longValue());
+    }
+
+    @Test
+    void createsUniqueInvoiceKeyIndex() {
+        new MongoIndexInitializer(mongoTemplate).ensureIndexes();
+
+        Document invoiceKey = ensured(Payment.class).get("invoice_key");
+        assertNotNull(invoiceKey);
+        assertEquals(Boolean.TRUE, invoiceKey.get("unique"));
+        assertEquals(Boolean.TRUE, invoiceKey.get("sparse"));
+    }
+
+    @Test
+    void retriesUntilIndexesAreCreated() {
+        reachable = false;
+        MongoIndexInitializer initializer = new MongoIndexInitializer(mongoTemplate);
+        initializer.ensureIndexes();
+        assertTrue(indexOps.isEmpty());
+
+        reachable = true;
+        initializer.ensureIndexes();
+        int ensured = ensuredBy(indexOps.get(StorageUsageEvent.class)).size();
+        initializer.ensureIndexes();
+        assertEquals(ensured, ensuredBy(indexOps.get(StorageUsageEvent.class)).size());
+        verify(mongoTemplate, times(2)).indexOps(Media.class);
+        verify(mongoTemplate, times(1)).indexOps(StorageUsageEvent.class);
+    }
+
+    private static Map<String, Document> ensuredBy(IndexOperations operations) {
+        ArgumentCaptor<IndexDefinition> definitions = ArgumentCaptor.forClass(IndexDefinition.class);
+        verify(operations, atLeastOnce()).ensureIndex(definitions.capture());
+        Map<String, Document> byName = new HashMap<>();
+        for (IndexDefinition definition : definitions.getAllValues()) {
+            byName.put(definition.getIndexOptions().getString("name"), definition.getIndexOptions());
+        }
+        return byName;
+    }
+
+    private Map<String, Document> ensured(Class<?> entity) {
+        IndexOperations operations = indexOps.get(entity);
+        assertNotNull(operations, "No indexes ensured for " + entity.getSimpleName());
+        return ensuredBy(operations);
+    }
+}